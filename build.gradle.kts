@@ -15,6 +15,8 @@ plugins {
 
     id("nebula.javadoc-jar") version "18.4.0"
     id("nebula.source-jar") version "18.4.0"
+
+    id("me.champeau.jmh") version "0.6.8"
 }
 
 apply(plugin = "nebula.publish-verification")
@@ -60,12 +62,36 @@ dependencies {
     implementation("org.openrewrite:rewrite-java")
     runtimeOnly("org.openrewrite:rewrite-java-17")
 
+    implementation(platform("com.fasterxml.jackson:jackson-bom:latest.release"))
+    implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-smile")
+    implementation("com.fasterxml.jackson.module:jackson-module-parameter-names")
+
     testImplementation("org.junit.jupiter:junit-jupiter-api:latest.release")
     testImplementation("org.junit.jupiter:junit-jupiter-params:latest.release")
     testRuntimeOnly("org.junit.jupiter:junit-jupiter-engine:latest.release")
 
     testImplementation("org.openrewrite:rewrite-test")
     testImplementation("org.assertj:assertj-core:latest.release")
+
+    jmh("com.google.guava:guava:latest.release")
+}
+
+// Results of every run are kept outside of the build directory, so that they survive a clean and can be compared
+val jmhResultsDir = layout.projectDirectory.dir("jmh-results")
+
+jmh {
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    resultsFile.set(jmhResultsDir.file("results-" +
+            java.time.LocalDateTime.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json"))
+}
+
+tasks.register<JavaExec>("jmhCompare") {
+    group = "benchmark"
+    description = "Compares the two most recent JMH results, or those given as -Pbaseline=<file> and -Pcurrent=<file>."
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("org.openrewrite.java.JmhResultsComparison")
+    args = listOfNotNull(jmhResultsDir.asFile.path, findProperty("baseline")?.toString(), findProperty("current")?.toString())
 }
 
 tasks.named<Test>("test") {
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Prints how the scores and allocation rates of two JMH JSON result files differ, by default the two most recent
+ * ones written by {@code ./gradlew jmh}. Run with {@code ./gradlew jmhCompare}, optionally passing
+ * {@code -Pbaseline=<file>} and {@code -Pcurrent=<file>}.
+ */
+public class JmhResultsComparison {
+    private static final String ALLOCATION_RATE = "·gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws IOException {
+        File baseline;
+        File current;
+        if (args.length >= 3) {
+            baseline = new File(args[1]);
+            current = new File(args[2]);
+        } else {
+            File[] results = new File(args[0]).listFiles((dir, name) -> name.startsWith("results-") && name.endsWith(".json"));
+            if (results == null || results.length < 2) {
+                System.out.println("At least two results are needed in " + args[0] + ", run ./gradlew jmh first");
+                return;
+            }
+            // the timestamps in the file names sort chronologically
+            Arrays.sort(results);
+            baseline = results[results.length - 2];
+            current = results[results.length - 1];
+        }
+
+        Map<String, JsonNode> baselineResults = read(baseline);
+        Map<String, JsonNode> currentResults = read(current);
+        System.out.printf("Baseline: %s%nCurrent:  %s%n%n", baseline.getName(), current.getName());
+        System.out.printf("%-100s %14s %14s %8s %14s%n", "Benchmark", "Baseline", "Current", "Change", "Alloc change");
+        for (Map.Entry<String, JsonNode> result : currentResults.entrySet()) {
+            JsonNode before = baselineResults.get(result.getKey());
+            JsonNode after = result.getValue();
+            double score = after.path("primaryMetric").path("score").asDouble();
+            if (before == null) {
+                System.out.printf("%-100s %14s %14.3f%n", result.getKey(), "-", score);
+                continue;
+            }
+
+            double baselineScore = before.path("primaryMetric").path("score").asDouble();
+            System.out.printf("%-100s %14.3f %14.3f %7.1f%% %13s%n",
+                    result.getKey(),
+                    baselineScore,
+                    score,
+                    change(baselineScore, score),
+                    allocationChange(before, after));
+        }
+    }
+
+    /**
+     * @return The results in the file keyed by benchmark name and parameters.
+     */
+    private static Map<String, JsonNode> read(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(result.path("benchmark").asText()
+                    .replace(RecipeBenchmark.class.getPackage().getName() + ".", ""));
+            for (Iterator<Map.Entry<String, JsonNode>> params = result.path("params").fields(); params.hasNext(); ) {
+                Map.Entry<String, JsonNode> param = params.next();
+                key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText());
+            }
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+
+    private static String allocationChange(JsonNode before, JsonNode after) {
+        JsonNode baselineAllocation = before.path("secondaryMetrics").path(ALLOCATION_RATE).path("score");
+        JsonNode allocation = after.path("secondaryMetrics").path(ALLOCATION_RATE).path("score");
+        if (baselineAllocation.isMissingNode() || allocation.isMissingNode()) {
+            return "-";
+        }
+        return String.format("%.1f%%", change(baselineAllocation.asDouble(), allocation.asDouble()));
+    }
+
+    private static double change(double before, double after) {
+        return before == 0 ? 0 : (after - before) / before * 100;
+    }
+}
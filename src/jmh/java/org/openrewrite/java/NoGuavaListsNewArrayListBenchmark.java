@@ -0,0 +1,88 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.java.tree.J;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-replacement latency of {@link NoGuavaListsNewArrayList}, with replacements built directly and with every
+ * replacement going through {@code JavaTemplate}.
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class NoGuavaListsNewArrayListBenchmark {
+    private static final int REPLACEMENTS = 300;
+
+    @Param({"true", "false"})
+    boolean directConstruction;
+
+    J.CompilationUnit cu;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        StringBuilder source = new StringBuilder()
+                .append("import com.google.common.collect.Lists;\n")
+                .append("import java.util.Collections;\n")
+                .append("import java.util.List;\n")
+                .append("class Test {\n")
+                .append("    List<Integer> source = Collections.emptyList();\n");
+        for (int i = 0; i < REPLACEMENTS; i++) {
+            switch (i % 3) {
+                case 0:
+                    source.append("    List<Integer> l").append(i).append(" = Lists.newArrayList();\n");
+                    break;
+                case 1:
+                    source.append("    List<Integer> l").append(i).append(" = Lists.newArrayList(source);\n");
+                    break;
+                default:
+                    source.append("    List<Integer> l").append(i).append(" = Lists.newArrayListWithCapacity(").append(i).append(");\n");
+            }
+        }
+        source.append("}\n");
+
+        cu = JavaParser.fromJavaVersion()
+                .classpath("guava")
+                .build()
+                .parse(source.toString())
+                .get(0);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REPLACEMENTS)
+    public J replace() {
+        return new NoGuavaListsNewArrayList.NewArrayListVisitor(directConstruction)
+                .visit(cu, new InMemoryExecutionContext());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(NoGuavaListsNewArrayListBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
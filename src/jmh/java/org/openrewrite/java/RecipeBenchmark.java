@@ -0,0 +1,153 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.Recipe;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.java.tree.J;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput in files per second of the recipes on synthetic sources (see {@link SyntheticSources}), end to end and
+ * separately for cold and warm parsing, the applicability test, the visitor and the search-only estimate of the sites
+ * it would change. Run with {@code ./gradlew jmh}, which also reports the allocation rate through the GC profiler and
+ * keeps the results of every run under {@code jmh-results/}.
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class RecipeBenchmark {
+    private static final int FILES = 20;
+
+    @Param({"MakeNonOverridableMethodsWithoutInstanceDataStatic", "NoGuavaListsNewArrayList"})
+    String recipeName;
+
+    @Param({"5"})
+    int fieldCount;
+
+    @Param({"20"})
+    int methodCount;
+
+    @Param({"4"})
+    int statementsPerBlock;
+
+    @Param({"3"})
+    int bodyDepth;
+
+    @Param({"0.1"})
+    double guavaCallDensity;
+
+    Recipe recipe;
+    List<String> sources;
+    List<J.CompilationUnit> compilationUnits;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        recipe = "NoGuavaListsNewArrayList".equals(recipeName) ?
+                new NoGuavaListsNewArrayList() :
+                new MakeNonOverridableMethodsWithoutInstanceDataStatic();
+        sources = new SyntheticSources(fieldCount, methodCount, statementsPerBlock, bodyDepth, guavaCallDensity)
+                .generate(FILES, 42);
+        compilationUnits = parser().parse(sources.toArray(new String[0]));
+    }
+
+    private static JavaParser parser() {
+        return JavaParser.fromJavaVersion()
+                .classpath("guava")
+                .build();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILES)
+    public List<J.CompilationUnit> parse() {
+        return parser().parse(sources.toArray(new String[0]));
+    }
+
+    /**
+     * Parsing with a warm {@link ParserSession}, as every batch but the first on a thread does.
+     */
+    @Benchmark
+    @OperationsPerInvocation(FILES)
+    public List<J.CompilationUnit> parseWarm() {
+        return ParserSession.shared("guava").parse(new InMemoryExecutionContext(), sources.toArray(new String[0]));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILES)
+    public void applicabilityTest(Blackhole blackhole) {
+        TreeVisitor<?, ExecutionContext> applicabilityTest = recipe instanceof NoGuavaListsNewArrayList ?
+                ((NoGuavaListsNewArrayList) recipe).getSingleSourceApplicableTest() :
+                ((MakeNonOverridableMethodsWithoutInstanceDataStatic) recipe).getSingleSourceApplicableTest();
+        ExecutionContext ctx = new InMemoryExecutionContext();
+        for (J.CompilationUnit cu : compilationUnits) {
+            blackhole.consume(applicabilityTest.visit(cu, ctx));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILES)
+    public void visitor(Blackhole blackhole) {
+        ExecutionContext ctx = new InMemoryExecutionContext();
+        for (J.CompilationUnit cu : compilationUnits) {
+            // a new visitor per file, as the recipe scheduler does
+            TreeVisitor<?, ExecutionContext> visitor = recipe instanceof NoGuavaListsNewArrayList ?
+                    ((NoGuavaListsNewArrayList) recipe).getVisitor() :
+                    ((MakeNonOverridableMethodsWithoutInstanceDataStatic) recipe).getVisitor();
+            blackhole.consume(visitor.visit(cu, ctx));
+        }
+    }
+
+    /**
+     * The search-only counterpart of {@link #visitor(Blackhole)}, as done by {@link EstimateMigrationCandidates}.
+     */
+    @Benchmark
+    @OperationsPerInvocation(FILES)
+    public void estimate(Blackhole blackhole) {
+        ExecutionContext ctx = new InMemoryExecutionContext();
+        for (J.CompilationUnit cu : compilationUnits) {
+            blackhole.consume(recipe instanceof NoGuavaListsNewArrayList ?
+                    ((NoGuavaListsNewArrayList) recipe).findReplaceableInvocations(cu) :
+                    ((MakeNonOverridableMethodsWithoutInstanceDataStatic) recipe).findMethodsToMakeStatic(cu, ctx));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILES)
+    public Object endToEnd() {
+        return recipe.run(parse(), new InMemoryExecutionContext());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(RecipeBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.java.metrics.InMemoryRecipeMetrics;
+import org.openrewrite.java.metrics.RecipeMetrics;
+import org.openrewrite.java.tree.J;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The overhead of {@link RecipeMetrics} on the applicability test and visitor of the recipes, comparing the same
+ * work with metrics disabled, which should cost nothing, and enabled, which should cost less than 2% of throughput.
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class RecipeMetricsBenchmark {
+    private static final int FILES = 20;
+
+    @Param({"MakeNonOverridableMethodsWithoutInstanceDataStatic", "NoGuavaListsNewArrayList"})
+    String recipeName;
+
+    @Param({"false", "true"})
+    boolean metricsEnabled;
+
+    List<J.CompilationUnit> compilationUnits;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        List<String> sources = new SyntheticSources(5, 20, 4, 3, 0.1).generate(FILES, 42);
+        compilationUnits = JavaParser.fromJavaVersion()
+                .classpath("guava")
+                .build()
+                .parse(sources.toArray(new String[0]));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILES)
+    public void applicabilityTestAndVisitor(Blackhole blackhole) {
+        ExecutionContext ctx = new InMemoryExecutionContext();
+        if (metricsEnabled) {
+            RecipeMetrics.enable(ctx, new InMemoryRecipeMetrics());
+        }
+        for (J.CompilationUnit cu : compilationUnits) {
+            TreeVisitor<?, ExecutionContext> applicabilityTest;
+            TreeVisitor<?, ExecutionContext> visitor;
+            if ("NoGuavaListsNewArrayList".equals(recipeName)) {
+                NoGuavaListsNewArrayList recipe = new NoGuavaListsNewArrayList();
+                applicabilityTest = recipe.getSingleSourceApplicableTest();
+                visitor = recipe.getVisitor();
+            } else {
+                MakeNonOverridableMethodsWithoutInstanceDataStatic recipe = new MakeNonOverridableMethodsWithoutInstanceDataStatic();
+                applicabilityTest = recipe.getSingleSourceApplicableTest();
+                visitor = recipe.getVisitor();
+            }
+            blackhole.consume(applicabilityTest.visit(cu, ctx));
+            blackhole.consume(visitor.visit(cu, ctx));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(RecipeMetricsBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
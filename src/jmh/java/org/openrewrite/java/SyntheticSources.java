@@ -0,0 +1,134 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates Java sources of a configurable shape for benchmarks. The same shape and seed always produce the same
+ * sources, so results of different runs are comparable.
+ * <p>
+ * Every generated class declares a mix of methods which only use their parameters, methods which read instance
+ * fields, and methods which call each other, so that {@link MakeNonOverridableMethodsWithoutInstanceDataStatic} has
+ * both candidates and non-candidates to analyze. A fraction of the statements are calls to Guava's
+ * {@code Lists.newArrayList(..)} factories.
+ */
+public final class SyntheticSources {
+    private final int fieldCount;
+    private final int methodCount;
+    private final int statementsPerBlock;
+    private final int bodyDepth;
+    private final double guavaCallDensity;
+
+    /**
+     * @param fieldCount         The number of instance fields per class.
+     * @param methodCount        The number of methods per class.
+     * @param statementsPerBlock The number of statements in every block of a method body, which together with
+     *                           {@code bodyDepth} determines the class size.
+     * @param bodyDepth          How deeply the blocks of a method body are nested, counting the body itself.
+     * @param guavaCallDensity   The fraction of statements, between 0 and 1, that call a Guava list factory.
+     */
+    public SyntheticSources(int fieldCount, int methodCount, int statementsPerBlock, int bodyDepth, double guavaCallDensity) {
+        this.fieldCount = Math.max(1, fieldCount);
+        this.methodCount = Math.max(1, methodCount);
+        this.statementsPerBlock = Math.max(1, statementsPerBlock);
+        this.bodyDepth = Math.max(1, bodyDepth);
+        this.guavaCallDensity = guavaCallDensity;
+    }
+
+    public List<String> generate(int fileCount, long seed) {
+        Random random = new Random(seed);
+        List<String> sources = new ArrayList<>(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            sources.add(generateClass("Synthetic" + i, random));
+        }
+        return sources;
+    }
+
+    private String generateClass(String className, Random random) {
+        StringBuilder source = new StringBuilder()
+                .append("package org.openrewrite.synthetic;\n\n")
+                .append("import com.google.common.collect.Lists;\n\n")
+                .append("import java.util.List;\n\n")
+                .append("class ").append(className).append(" {\n");
+
+        for (int i = 0; i < fieldCount; i++) {
+            source.append("    private int field").append(i).append(" = ").append(i).append(";\n");
+        }
+
+        for (int i = 0; i < methodCount; i++) {
+            // a third of the methods are overridable, the rest are candidates for being made static
+            String modifier = i % 3 == 0 ? "public" : i % 3 == 1 ? "private" : "final";
+            source.append("\n    ").append(modifier).append(" int method").append(i).append("(int p) {\n")
+                    .append("        int local = p;\n");
+            appendBlock(source, random, i, 2, bodyDepth);
+            source.append("        return local;\n")
+                    .append("    }\n");
+        }
+
+        return source.append("}\n").toString();
+    }
+
+    private void appendBlock(StringBuilder source, Random random, int method, int indent, int depth) {
+        for (int i = 0; i < statementsPerBlock; i++) {
+            indent(source, indent);
+            if (random.nextDouble() < guavaCallDensity) {
+                String list = "list" + indent + "_" + i;
+                switch (random.nextInt(3)) {
+                    case 0:
+                        source.append("List<Integer> ").append(list).append(" = Lists.newArrayList();\n");
+                        break;
+                    case 1:
+                        source.append("List<Integer> ").append(list).append(" = Lists.newArrayListWithCapacity(local);\n");
+                        break;
+                    default:
+                        source.append("List<Integer> ").append(list).append(" = Lists.newArrayList(local, p);\n");
+                }
+                continue;
+            }
+
+            switch (random.nextInt(4)) {
+                case 0:
+                    // instance data makes the method ineligible
+                    source.append("local += field").append(random.nextInt(fieldCount)).append(";\n");
+                    break;
+                case 1:
+                    // calls to later methods only, so that the call graph is acyclic and the fixpoint is exercised
+                    int callee = method + 1 + random.nextInt(Math.max(1, methodCount - method - 1));
+                    source.append(callee < methodCount ? "local += method" + callee + "(local);\n" : "local *= 2;\n");
+                    break;
+                default:
+                    source.append("local = local * 31 + p;\n");
+            }
+        }
+
+        if (depth > 1) {
+            indent(source, indent);
+            source.append(depth % 2 == 0 ? "if (local > p) {\n" : "for (int i" + depth + " = 0; i" + depth + " < p; i" + depth + "++) {\n");
+            appendBlock(source, random, method, indent + 1, depth - 1);
+            indent(source, indent);
+            source.append("}\n");
+        }
+    }
+
+    private static void indent(StringBuilder source, int indent) {
+        for (int i = 0; i < indent; i++) {
+            source.append("    ");
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.tree.Expression;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.JContainer;
+import org.openrewrite.java.tree.JRightPadded;
+import org.openrewrite.java.tree.JavaType;
+import org.openrewrite.java.tree.Space;
+import org.openrewrite.java.tree.TypeUtils;
+import org.openrewrite.marker.Markers;
+
+import java.util.List;
+
+import static java.util.Collections.singletonList;
+import static org.openrewrite.Tree.randomId;
+
+/**
+ * Replaces a factory method invocation with a constructor call of the class it returns, built directly from the type
+ * attribution of the invocation rather than by compiling a {@link JavaTemplate} stub.
+ */
+final class DirectConstruction {
+    private DirectConstruction() {
+    }
+
+    /**
+     * @param method        The invocation to replace, whose arguments are moved to the constructor call as they are.
+     * @param className     The fully qualified name of the class to construct, which the invocation must return.
+     * @param parameterType The fully qualified name of the type of the constructor's single parameter, {@code int},
+     *                      or {@code null} for the no-argument constructor. Naming it selects the same overload as
+     *                      the compiler would for a template declaring the argument as that type.
+     * @return {@code new ClassName<>(..)} attributed with the matching constructor, or {@code null} if the invocation's
+     * type is not {@code className} or does not provide such a constructor.
+     */
+    @Nullable
+    static J.NewClass newInstance(J.MethodInvocation method, String className, @Nullable String parameterType) {
+        JavaType.FullyQualified classType = TypeUtils.asFullyQualified(method.getType());
+        if (classType instanceof JavaType.Parameterized) {
+            classType = ((JavaType.Parameterized) classType).getType();
+        }
+        if (classType == null || !className.equals(classType.getFullyQualifiedName())) {
+            return null;
+        }
+
+        JavaType.Method constructorType = null;
+        for (JavaType.Method candidate : classType.getMethods()) {
+            if ("<constructor>".equals(candidate.getName()) && hasParameter(candidate, parameterType)) {
+                constructorType = candidate;
+                break;
+            }
+        }
+        if (constructorType == null) {
+            return null;
+        }
+
+        J.Identifier name = new J.Identifier(randomId(), Space.EMPTY, Markers.EMPTY, classType.getClassName(), classType, null);
+        JContainer<Expression> diamond = JContainer.build(Space.EMPTY,
+                singletonList(JRightPadded.build(new J.Empty(randomId(), Space.EMPTY, Markers.EMPTY))),
+                Markers.EMPTY);
+
+        return new J.NewClass(
+                randomId(),
+                method.getPrefix(),
+                method.getMarkers(),
+                null,
+                Space.EMPTY,
+                new J.ParameterizedType(randomId(), Space.format(" "), Markers.EMPTY, name, diamond),
+                method.getPadding().getArguments(),
+                null,
+                constructorType
+        );
+    }
+
+    private static boolean hasParameter(JavaType.Method constructor, @Nullable String parameterType) {
+        List<JavaType> parameterTypes = constructor.getParameterTypes();
+        if (parameterType == null) {
+            return parameterTypes.isEmpty();
+        } else if (parameterTypes.size() != 1) {
+            return false;
+        } else if ("int".equals(parameterType)) {
+            return parameterTypes.get(0) == JavaType.Primitive.Int;
+        }
+        return TypeUtils.isOfClassType(parameterTypes.get(0), parameterType);
+    }
+}
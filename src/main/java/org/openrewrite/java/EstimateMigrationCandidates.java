@@ -0,0 +1,146 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import lombok.EqualsAndHashCode;
+import lombok.Value;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.Option;
+import org.openrewrite.Recipe;
+import org.openrewrite.SourceFile;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.table.MigrationCandidatesPerFile;
+import org.openrewrite.java.table.MigrationCandidatesPerPackage;
+import org.openrewrite.java.tree.Expression;
+import org.openrewrite.java.tree.J;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Counts the sites that {@link NoGuavaListsNewArrayList} and {@link MakeNonOverridableMethodsWithoutInstanceDataStatic}
+ * would change, using their own matching and analysis, but without building any replacement. Nothing is changed, and
+ * the counts are reported per source file and per package.
+ */
+@Value
+@EqualsAndHashCode(callSuper = true)
+public class EstimateMigrationCandidates extends Recipe {
+    @Option(displayName = "Exclude generated sources",
+            description = "Passed on to `MakeNonOverridableMethodsWithoutInstanceDataStatic`. Defaults to `true`.",
+            required = false)
+    @Nullable
+    Boolean excludeGeneratedSources;
+
+    @Option(displayName = "Excluded method patterns",
+            description = "Passed on to `MakeNonOverridableMethodsWithoutInstanceDataStatic`.",
+            example = "* setUp()",
+            required = false)
+    @Nullable
+    List<String> excludedMethodPatterns;
+
+    transient MigrationCandidatesPerFile perFile = new MigrationCandidatesPerFile(this);
+    transient MigrationCandidatesPerPackage perPackage = new MigrationCandidatesPerPackage(this);
+
+    public EstimateMigrationCandidates() {
+        this(null, null);
+    }
+
+    @JsonCreator
+    public EstimateMigrationCandidates(@Nullable Boolean excludeGeneratedSources,
+                                       @Nullable List<String> excludedMethodPatterns) {
+        this.excludeGeneratedSources = excludeGeneratedSources;
+        this.excludedMethodPatterns = excludedMethodPatterns;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Estimate the sites changed by the Guava and `static` method migrations";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Counts the `Lists.newArrayList` invocations that `NoGuavaListsNewArrayList` would replace and the " +
+               "methods that `MakeNonOverridableMethodsWithoutInstanceDataStatic` would make `static`, per source " +
+               "file and per package, without changing anything.";
+    }
+
+    /**
+     * Works on all sources at once, so that the counts of every package are complete before they are reported.
+     */
+    @Override
+    protected List<SourceFile> visit(List<SourceFile> before, ExecutionContext ctx) {
+        NoGuavaListsNewArrayList newArrayList = new NoGuavaListsNewArrayList();
+        MakeNonOverridableMethodsWithoutInstanceDataStatic makeStatic =
+                new MakeNonOverridableMethodsWithoutInstanceDataStatic(excludeGeneratedSources, excludedMethodPatterns);
+
+        Map<String, int[]> packages = new TreeMap<>();
+        for (SourceFile sourceFile : before) {
+            if (!(sourceFile instanceof J.CompilationUnit)) {
+                continue;
+            }
+            J.CompilationUnit cu = (J.CompilationUnit) sourceFile;
+            String packageName = packageName(cu);
+            count(cu, packageName, newArrayList.getName(),
+                    newArrayList.findReplaceableInvocations(cu).size(), packages, ctx);
+            count(cu, packageName, makeStatic.getName(),
+                    makeStatic.findMethodsToMakeStatic(cu, ctx).size(), packages, ctx);
+        }
+
+        for (Map.Entry<String, int[]> entry : packages.entrySet()) {
+            int separator = entry.getKey().indexOf('\0');
+            perPackage.insertRow(ctx, new MigrationCandidatesPerPackage.Row(
+                    entry.getKey().substring(0, separator),
+                    entry.getKey().substring(separator + 1),
+                    entry.getValue()[0],
+                    entry.getValue()[1]
+            ));
+        }
+        return before;
+    }
+
+    /**
+     * @param packages Files and sites per package and recipe, keyed by both separated by a null character.
+     */
+    private void count(J.CompilationUnit cu, String packageName, String recipe, int candidateSites,
+                       Map<String, int[]> packages, ExecutionContext ctx) {
+        if (candidateSites == 0) {
+            return;
+        }
+        perFile.insertRow(ctx, new MigrationCandidatesPerFile.Row(
+                cu.getSourcePath().toString(),
+                packageName,
+                recipe,
+                candidateSites
+        ));
+        int[] total = packages.computeIfAbsent(packageName + '\0' + recipe, k -> new int[2]);
+        total[0]++;
+        total[1] += candidateSites;
+    }
+
+    private static String packageName(J.CompilationUnit cu) {
+        return cu.getPackageDeclaration() == null ? "" : qualifiedName(cu.getPackageDeclaration().getExpression());
+    }
+
+    private static String qualifiedName(Expression name) {
+        if (name instanceof J.FieldAccess) {
+            J.FieldAccess fieldAccess = (J.FieldAccess) name;
+            return qualifiedName(fieldAccess.getTarget()) + '.' + fieldAccess.getSimpleName();
+        }
+        return name instanceof J.Identifier ? ((J.Identifier) name).getSimpleName() : "";
+    }
+}
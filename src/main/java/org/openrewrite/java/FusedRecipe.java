@@ -0,0 +1,239 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import org.openrewrite.Cursor;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.Recipe;
+import org.openrewrite.Tree;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.table.FusedRecipeChanges;
+import org.openrewrite.java.tree.J;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Runs a list of recipes with the same outcome as running them one after another, but with every run of consecutive
+ * {@link FusibleRecipe}s sharing a single traversal of each compilation unit, so that N such recipes walk each tree
+ * once rather than N times. Other recipes run on their own, in order.
+ * <p>
+ * Within a fused traversal, each tree is only passed to the visitors that declare its type, and only visitors of
+ * recipes whose applicability test passed for the compilation unit take part. The recipes that changed each source
+ * file are recorded in the {@link FusedRecipeChanges} data table, as changes made in a fused traversal are otherwise
+ * attributed to the traversal as a whole.
+ */
+public class FusedRecipe extends Recipe {
+    private final transient FusedRecipeChanges changes = new FusedRecipeChanges(this);
+
+    public FusedRecipe(List<Recipe> recipes) {
+        List<FusibleRecipe> fusible = new ArrayList<>();
+        for (Recipe recipe : recipes) {
+            if (recipe instanceof FusibleRecipe && recipe.getRecipeList().isEmpty()) {
+                fusible.add((FusibleRecipe) recipe);
+            } else {
+                fuse(fusible);
+                fusible = new ArrayList<>();
+                doNext(recipe);
+            }
+        }
+        fuse(fusible);
+    }
+
+    private void fuse(List<FusibleRecipe> recipes) {
+        if (!recipes.isEmpty()) {
+            doNext(new Fused(recipes));
+        }
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Fused recipes";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Runs recipes one after another, visiting each source file once for all fusible recipes in a row.";
+    }
+
+    private class Fused extends Recipe {
+        private final List<FusibleRecipe> recipes;
+
+        Fused(List<FusibleRecipe> recipes) {
+            this.recipes = recipes;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return recipes.stream().map(FusibleRecipe::getName).collect(Collectors.joining(", ", "Fused ", ""));
+        }
+
+        @Override
+        protected TreeVisitor<?, ExecutionContext> getSingleSourceApplicableTest() {
+            return new JavaIsoVisitor<ExecutionContext>() {
+                @Override
+                public J.CompilationUnit visitCompilationUnit(J.CompilationUnit cu, ExecutionContext executionContext) {
+                    for (FusibleRecipe recipe : recipes) {
+                        if (recipe.isApplicable(cu)) {
+                            return cu.withMarkers(cu.getMarkers().searchResult());
+                        }
+                    }
+                    return cu;
+                }
+            };
+        }
+
+        @Override
+        protected TreeVisitor<?, ExecutionContext> getVisitor() {
+            return new FusedVisitor(recipes);
+        }
+    }
+
+    /**
+     * Traverses each compilation unit once, passing every tree to the fusible visitors that act on it, in the order of
+     * their recipes.
+     */
+    private class FusedVisitor extends JavaVisitor<ExecutionContext> {
+        private final List<Participant> participants;
+
+        /**
+         * The participants acting on each type of tree, whether or not they are active for the current compilation unit.
+         */
+        private final Map<Class<?>, Participant[]> dispatch = new HashMap<>();
+
+        FusedVisitor(List<FusibleRecipe> recipes) {
+            participants = new ArrayList<>(recipes.size());
+            for (FusibleRecipe recipe : recipes) {
+                participants.add(new Participant(recipe, recipe.getFusibleVisitor()));
+            }
+        }
+
+        @Override
+        public @Nullable J visit(@Nullable Tree tree, ExecutionContext ctx) {
+            if (!(tree instanceof J)) {
+                return super.visit(tree, ctx);
+            }
+
+            if (tree instanceof J.CompilationUnit) {
+                for (Participant participant : participants) {
+                    participant.start((J.CompilationUnit) tree);
+                }
+            }
+            for (Participant participant : participants) {
+                if (participant.active) {
+                    participant.cursor = new Cursor(participant.cursor, tree);
+                }
+            }
+            try {
+                return super.visit(tree, ctx);
+            } finally {
+                for (Participant participant : participants) {
+                    if (participant.active) {
+                        participant.cursor = participant.cursor.getParent();
+                    }
+                }
+            }
+        }
+
+        @Override
+        public J preVisit(J tree, ExecutionContext ctx) {
+            J t = tree;
+            for (Participant participant : dispatch(tree)) {
+                if (participant.active && t != null) {
+                    participant.visitor.setCursor(participant.cursor);
+                    J visited = participant.visitor.preVisit(t, ctx);
+                    participant.changed |= visited != t;
+                    t = visited;
+                }
+            }
+            return t;
+        }
+
+        @Override
+        public @Nullable J postVisit(J tree, ExecutionContext ctx) {
+            J t = tree;
+            for (Participant participant : dispatch(tree)) {
+                if (participant.active && t != null) {
+                    participant.visitor.setCursor(participant.cursor);
+                    J visited = participant.visitor.postVisit(t, ctx);
+                    participant.changed |= visited != t;
+                    t = visited;
+                }
+            }
+
+            if (tree instanceof J.CompilationUnit) {
+                String sourcePath = ((J.CompilationUnit) tree).getSourcePath().toString();
+                for (Participant participant : participants) {
+                    // visitors scheduled by the participants, such as import changes, run once the traversal completes
+                    for (TreeVisitor<J, ExecutionContext> afterVisit : participant.afterVisits) {
+                        if (!getAfterVisit().contains(afterVisit)) {
+                            doAfterVisit(afterVisit);
+                        }
+                    }
+                    if (participant.changed) {
+                        changes.insertRow(ctx, new FusedRecipeChanges.Row(sourcePath, participant.recipe.getName()));
+                    }
+                }
+            }
+            return t;
+        }
+
+        private Participant[] dispatch(J tree) {
+            return dispatch.computeIfAbsent(tree.getClass(), type -> {
+                List<Participant> acting = new ArrayList<>(participants.size());
+                for (Participant participant : participants) {
+                    for (Class<? extends J> nodeType : participant.visitor.getNodeTypes()) {
+                        if (nodeType.isAssignableFrom(type)) {
+                            acting.add(participant);
+                            break;
+                        }
+                    }
+                }
+                return acting.toArray(new Participant[0]);
+            });
+        }
+    }
+
+    /**
+     * A fusible visitor along with the state it would otherwise keep in its own traversal.
+     */
+    private static class Participant {
+        private final FusibleRecipe recipe;
+        private final FusibleJavaVisitor visitor;
+
+        private Cursor cursor = new Cursor(null, "root");
+        private List<TreeVisitor<J, ExecutionContext>> afterVisits = new ArrayList<>();
+        private boolean active;
+        private boolean changed;
+
+        Participant(FusibleRecipe recipe, FusibleJavaVisitor visitor) {
+            this.recipe = recipe;
+            this.visitor = visitor;
+        }
+
+        void start(J.CompilationUnit cu) {
+            cursor = new Cursor(null, "root");
+            afterVisits = new ArrayList<>();
+            visitor.fusedAfterVisits = afterVisits;
+            active = recipe.isApplicable(cu);
+            changed = false;
+        }
+    }
+}
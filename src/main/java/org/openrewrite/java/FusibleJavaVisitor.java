@@ -0,0 +1,59 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.tree.J;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A visitor that does all of its work in {@link #preVisit(J, Object)} and {@link #postVisit(J, Object)}, on the
+ * {@linkplain #getNodeTypes() types of tree} it declares, and never overrides the type specific {@code visit} methods.
+ * Such a visitor does not depend on how the tree is traversed, so {@link FusedRecipe} can drive it together with
+ * other fusible visitors from a single traversal of each compilation unit. Run on its own, it traverses the tree like
+ * any other visitor.
+ * <p>
+ * The cursor of a fusible visitor is its own, so cursor messages are not shared with other visitors. In
+ * {@link #postVisit(J, Object)}, the children of a tree have already been visited by every fused visitor, but its
+ * ancestors have not, so a fusible visitor may not depend on changes made by other visitors to the ancestors.
+ */
+public abstract class FusibleJavaVisitor extends JavaVisitor<ExecutionContext> {
+    /**
+     * Where visitors scheduled by {@link #doAfterVisit(TreeVisitor)} are collected while being driven by a fused
+     * traversal, which runs them once it completes.
+     */
+    @Nullable
+    List<TreeVisitor<J, ExecutionContext>> fusedAfterVisits;
+
+    /**
+     * @return The types of tree that {@link #preVisit(J, Object)} and {@link #postVisit(J, Object)} act on. Other trees
+     * are not passed to them by a fused traversal.
+     */
+    public abstract Set<Class<? extends J>> getNodeTypes();
+
+    @Override
+    protected void doAfterVisit(TreeVisitor<J, ExecutionContext> visitor) {
+        if (fusedAfterVisits == null) {
+            super.doAfterVisit(visitor);
+        } else if (!fusedAfterVisits.contains(visitor)) {
+            fusedAfterVisits.add(visitor);
+        }
+    }
+}
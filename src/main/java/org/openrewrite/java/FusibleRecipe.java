@@ -0,0 +1,36 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import org.openrewrite.java.tree.J;
+
+/**
+ * A single-source recipe that {@link FusedRecipe} can run in the same traversal as other fusible recipes. Its visitor
+ * and applicability test must be equivalent to {@link #getFusibleVisitor()} and {@link #isApplicable(J.CompilationUnit)}.
+ */
+public interface FusibleRecipe {
+    String getName();
+
+    /**
+     * @return A new instance of the visitor of the recipe.
+     */
+    FusibleJavaVisitor getFusibleVisitor();
+
+    /**
+     * @return Whether the recipe may change the compilation unit, as decided by its single-source applicability test.
+     */
+    boolean isApplicable(J.CompilationUnit cu);
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.Recipe;
+import org.openrewrite.Result;
+import org.openrewrite.SourceFile;
+import org.openrewrite.java.table.IncrementalRecipeCycles;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.JavaType;
+import org.openrewrite.java.tree.Statement;
+import org.openrewrite.java.tree.TypeUtils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs a recipe in up to a given number of cycles, like the recipe scheduler does, but with every cycle after the
+ * first only revisiting the source files that the previous cycle changed and the source files that depend on them,
+ * rather than all source files. A compilation unit depends on another when it uses a type, or calls a method of a
+ * type, declared in it. The cycles stop once one changes nothing.
+ * <p>
+ * The outcome is the same as running every cycle on all source files for recipes whose change to a source file is
+ * decided by that source file and the types it uses, as is the case for the single-source recipes of this module:
+ * a source file that was not changed by a cycle, and none of whose dependencies were, is not changed by the next
+ * cycle either. Recipes that see all sources at once only see the revisited ones in later cycles. The cycles run
+ * are recorded in the {@link IncrementalRecipeCycles} data table.
+ */
+public class IncrementalRecipe extends Recipe {
+    private final transient IncrementalRecipeCycles cycles = new IncrementalRecipeCycles(this);
+
+    private final Recipe recipe;
+    private final int maxCycles;
+
+    public IncrementalRecipe(Recipe recipe, int maxCycles) {
+        this.recipe = recipe;
+        this.maxCycles = maxCycles;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Incremental " + recipe.getDisplayName();
+    }
+
+    @Override
+    public String getDescription() {
+        return "Runs a recipe in cycles that only revisit the source files changed by the previous cycle and the " +
+               "source files depending on them.";
+    }
+
+    /**
+     * The cycles are run by {@link #visit(List, ExecutionContext)}, so another cycle over all source files would
+     * only find that nothing is left to change.
+     */
+    @Override
+    public boolean causesAnotherCycle() {
+        return false;
+    }
+
+    @Override
+    protected List<SourceFile> visit(List<SourceFile> before, ExecutionContext ctx) {
+        Map<Path, SourceFile> current = new LinkedHashMap<>();
+        Dependencies dependencies = new Dependencies();
+        for (SourceFile sourceFile : before) {
+            current.put(sourceFile.getSourcePath(), sourceFile);
+            dependencies.add(sourceFile);
+        }
+
+        boolean changedAny = false;
+        Set<Path> revisit = current.keySet();
+        for (int cycle = 1; cycle <= maxCycles && !revisit.isEmpty(); cycle++) {
+            List<SourceFile> revisited = new ArrayList<>(revisit.size());
+            for (Path sourcePath : revisit) {
+                SourceFile sourceFile = current.get(sourcePath);
+                if (sourceFile != null) {
+                    revisited.add(sourceFile);
+                }
+            }
+
+            List<Result> results = recipe.run(revisited, ctx, 1).getResults();
+            cycles.insertRow(ctx, new IncrementalRecipeCycles.Row(cycle, revisited.size(), results.size()));
+            if (results.isEmpty()) {
+                break;
+            }
+            changedAny = true;
+
+            Set<Path> changed = new LinkedHashSet<>();
+            Set<String> changedTypes = new HashSet<>();
+            for (Result result : results) {
+                if (result.getBefore() != null) {
+                    Path sourcePath = result.getBefore().getSourcePath();
+                    changed.add(sourcePath);
+                    changedTypes.addAll(dependencies.remove(sourcePath));
+                    current.remove(sourcePath);
+                }
+            }
+            for (Result result : results) {
+                SourceFile after = result.getAfter();
+                if (after != null) {
+                    changed.add(after.getSourcePath());
+                    changedTypes.addAll(dependencies.add(after));
+                    current.put(after.getSourcePath(), after);
+                }
+            }
+
+            revisit = new LinkedHashSet<>(changed);
+            revisit.addAll(dependencies.dependents(changedTypes));
+        }
+        return changedAny ? new ArrayList<>(current.values()) : before;
+    }
+
+    /**
+     * The types declared and used by each compilation unit, indexed by the types used.
+     */
+    private static class Dependencies {
+        private final Map<Path, Set<String>> declaredTypes = new HashMap<>();
+        private final Map<Path, Set<String>> usedTypes = new HashMap<>();
+        private final Map<String, Set<Path>> usedBy = new HashMap<>();
+
+        /**
+         * @return The types declared by the source file.
+         */
+        Set<String> add(SourceFile sourceFile) {
+            if (!(sourceFile instanceof J.CompilationUnit)) {
+                return Collections.emptySet();
+            }
+            J.CompilationUnit cu = (J.CompilationUnit) sourceFile;
+            Set<String> declared = new HashSet<>();
+            for (J.ClassDeclaration classDeclaration : cu.getClasses()) {
+                addDeclaredTypes(classDeclaration, declared);
+            }
+
+            Set<String> used = new HashSet<>();
+            for (JavaType type : cu.getTypesInUse().getTypesInUse()) {
+                JavaType.FullyQualified fullyQualified = TypeUtils.asFullyQualified(type);
+                if (fullyQualified != null) {
+                    used.add(fullyQualified.getFullyQualifiedName());
+                }
+            }
+            for (JavaType.Method method : cu.getTypesInUse().getUsedMethods()) {
+                if (method.getDeclaringType() != null) {
+                    used.add(method.getDeclaringType().getFullyQualifiedName());
+                }
+            }
+            // a source file does not depend on itself
+            used.removeAll(declared);
+
+            declaredTypes.put(cu.getSourcePath(), declared);
+            usedTypes.put(cu.getSourcePath(), used);
+            for (String type : used) {
+                usedBy.computeIfAbsent(type, t -> new HashSet<>()).add(cu.getSourcePath());
+            }
+            return declared;
+        }
+
+        /**
+         * @return The types that were declared by the source file.
+         */
+        Set<String> remove(Path sourcePath) {
+            Set<String> used = usedTypes.remove(sourcePath);
+            if (used != null) {
+                for (String type : used) {
+                    Set<Path> users = usedBy.get(type);
+                    if (users != null) {
+                        users.remove(sourcePath);
+                    }
+                }
+            }
+            Set<String> declared = declaredTypes.remove(sourcePath);
+            return declared == null ? Collections.emptySet() : declared;
+        }
+
+        Set<Path> dependents(Collection<String> types) {
+            Set<Path> dependents = new LinkedHashSet<>();
+            for (String type : types) {
+                Set<Path> users = usedBy.get(type);
+                if (users != null) {
+                    dependents.addAll(users);
+                }
+            }
+            return dependents;
+        }
+
+        /**
+         * Only top-level and member classes can be used from other source files, so local and anonymous classes are
+         * not looked for.
+         */
+        private static void addDeclaredTypes(J.ClassDeclaration classDeclaration, Set<String> declared) {
+            if (classDeclaration.getType() != null) {
+                declared.add(classDeclaration.getType().getFullyQualifiedName());
+            }
+            for (Statement statement : classDeclaration.getBody().getStatements()) {
+                if (statement instanceof J.ClassDeclaration) {
+                    addDeclaredTypes((J.ClassDeclaration) statement, declared);
+                }
+            }
+        }
+    }
+}
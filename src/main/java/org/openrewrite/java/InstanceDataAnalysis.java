@@ -0,0 +1,514 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import lombok.Value;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.Tree;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.budget.FileBudget;
+import org.openrewrite.java.metrics.RecipeMetrics;
+import org.openrewrite.java.tree.Expression;
+import org.openrewrite.java.tree.Flag;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.JavaType;
+import org.openrewrite.java.tree.Statement;
+import org.openrewrite.java.tree.TypeUtils;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Decides whether a method declared in a class needs an instance of that class, i.e. whether its signature or body
+ * depends on {@code this}. Field and method references are resolved through their {@link JavaType.Variable} and
+ * {@link JavaType.Method} attribution, so shadowing locals, qualified access through other objects and static members
+ * are told apart from instance data, and inherited members are recognised through the supertype hierarchy. The
+ * traversal stops at the first instance-dependent reference.
+ * <p>
+ * Unqualified calls to instance methods declared by the class itself, as well as calls and method references to them
+ * through a bare {@code this}, are collected rather than treated as needing an instance, so that callers can decide
+ * which of those methods become {@code static} together (see
+ * {@link #analyze(J.MethodDeclaration, ExecutionContext)}).
+ * <p>
+ * Results are cached per method declaration in the {@link ExecutionContext}, so any recipe in the same run asking
+ * about an unchanged method gets the answer without walking its body again. The cache holds the declarations weakly,
+ * so that it does not grow with every method of a long run once their trees are no longer used.
+ * <p>
+ * An instance is created per class declaration and is not thread-safe.
+ */
+public final class InstanceDataAnalysis {
+    private static final String VERDICTS = InstanceDataAnalysis.class.getName() + ".VERDICTS";
+
+    /**
+     * The class itself followed by every class whose instance is reachable through it, i.e. the enclosing classes of
+     * an inner or anonymous class.
+     */
+    private final List<JavaType.FullyQualified> instanceTypes;
+
+    /**
+     * Names of the instance fields visible from the class, used when an identifier carries no type attribution.
+     */
+    private final Set<String> instanceFieldNames;
+
+    /**
+     * Names of the type parameters declared by the class, which are only in scope of instance members.
+     */
+    private final Set<String> typeParameterNames;
+
+    /**
+     * Whether the type of this class or one of its enclosing classes is unknown, in which case any unqualified
+     * reference to a non-static member is assumed to need an instance.
+     */
+    private final boolean incompleteTypeAttribution;
+
+    private final Map<JavaType, Boolean> memberOfInstanceTypes = new IdentityHashMap<>();
+    private final InstanceReferenceFinder finder = new InstanceReferenceFinder();
+
+    private InstanceDataAnalysis(J.Block body,
+                                 @Nullable JavaType.FullyQualified type,
+                                 @Nullable List<J.TypeParameter> typeParameters,
+                                 @Nullable InstanceDataAnalysis enclosing) {
+        List<JavaType.FullyQualified> instanceTypes = new ArrayList<>();
+        boolean incompleteTypeAttribution = type == null;
+        if (type != null) {
+            instanceTypes.add(type);
+        }
+
+        Set<String> instanceFieldNames = new HashSet<>();
+        Set<String> typeParameterNames = new HashSet<>();
+        if (enclosing != null) {
+            instanceTypes.addAll(enclosing.instanceTypes);
+            instanceFieldNames.addAll(enclosing.instanceFieldNames);
+            typeParameterNames.addAll(enclosing.typeParameterNames);
+            incompleteTypeAttribution |= enclosing.incompleteTypeAttribution;
+        }
+
+        for (Statement statement : body.getStatements()) {
+            if (statement instanceof J.VariableDeclarations) {
+                J.VariableDeclarations variableDeclarations = (J.VariableDeclarations) statement;
+                if (!variableDeclarations.hasModifier(J.Modifier.Type.Static)) {
+                    for (J.VariableDeclarations.NamedVariable namedVariable : variableDeclarations.getVariables()) {
+                        instanceFieldNames.add(namedVariable.getSimpleName());
+                    }
+                }
+            }
+        }
+
+        if (typeParameters != null) {
+            for (J.TypeParameter typeParameter : typeParameters) {
+                if (typeParameter.getName() instanceof J.Identifier) {
+                    typeParameterNames.add(((J.Identifier) typeParameter.getName()).getSimpleName());
+                }
+            }
+        }
+
+        this.instanceTypes = instanceTypes;
+        this.instanceFieldNames = instanceFieldNames;
+        this.typeParameterNames = typeParameterNames;
+        this.incompleteTypeAttribution = incompleteTypeAttribution;
+    }
+
+    /**
+     * @param classDecl The class whose methods will be analyzed.
+     * @param enclosing The analysis of the class enclosing {@code classDecl}, if any. It is only consulted when
+     *                  {@code classDecl} is an inner class and so can reach the enclosing instance.
+     */
+    public static InstanceDataAnalysis forClass(J.ClassDeclaration classDecl, @Nullable InstanceDataAnalysis enclosing) {
+        boolean innerClass = classDecl.getKind() == J.ClassDeclaration.Kind.Type.Class &&
+                             !classDecl.hasModifier(J.Modifier.Type.Static);
+        return new InstanceDataAnalysis(classDecl.getBody(),
+                classDecl.getType(),
+                classDecl.getTypeParameters(),
+                innerClass ? enclosing : null);
+    }
+
+    /**
+     * @param newClass  An anonymous class creation, i.e. one with a body.
+     * @param enclosing The analysis of the class in which the anonymous class is declared.
+     */
+    public static InstanceDataAnalysis forAnonymousClass(J.NewClass newClass, @Nullable InstanceDataAnalysis enclosing) {
+        assert newClass.getBody() != null;
+        return new InstanceDataAnalysis(newClass.getBody(),
+                TypeUtils.asFullyQualified(newClass.getType()),
+                null,
+                enclosing);
+    }
+
+    /**
+     * @param method A method declared directly in the body of the class this analysis was created for.
+     * @param ctx    The execution context the verdict is cached in.
+     * @return {@code true} if the method reads or writes instance fields, calls instance methods, uses {@code this}
+     * or {@code super}, creates inner class instances or uses type parameters of the class, any of which prevents it
+     * from being made {@code static}.
+     */
+    public boolean requiresInstance(J.MethodDeclaration method, ExecutionContext ctx) {
+        Dependencies dependencies = analyze(method, ctx);
+        return dependencies.isRequiresInstance() || !dependencies.getCalledInstanceMethods().isEmpty();
+    }
+
+    /**
+     * Like {@link #requiresInstance(J.MethodDeclaration, ExecutionContext)}, but unqualified calls to instance
+     * methods declared by the class itself are reported separately instead of counting as instance data. The method
+     * can be made {@code static} if it does not require an instance otherwise and all of those methods can be made
+     * {@code static} as well.
+     *
+     * @param method A method declared directly in the body of the class this analysis was created for.
+     * @param ctx    The execution context the result is cached in.
+     */
+    public Dependencies analyze(J.MethodDeclaration method, ExecutionContext ctx) {
+        Map<J, Verdict> verdicts = verdicts(ctx);
+        Verdict verdict = verdicts.get(method);
+        if (verdict != null && verdict.isFor(method)) {
+            return verdict.dependencies;
+        }
+
+        Dependencies dependencies = finder.find(method, this, FileBudget.of(ctx));
+        cache(verdicts, method, dependencies);
+        RecipeMetrics metrics = RecipeMetrics.of(ctx);
+        if (metrics.isEnabled()) {
+            metrics.record(InstanceDataAnalysis.class.getSimpleName(), "identifierChecksPerMethod", finder.identifierChecks);
+        }
+        return dependencies;
+    }
+
+    /**
+     * @param memberClass A class declared directly in the body of the class this analysis was created for.
+     * @param ctx         The execution context the verdict is cached in.
+     * @return {@code true} if any part of the member class reads or writes instance fields of the enclosing classes,
+     * calls their instance methods, uses a qualified {@code this}, creates instances of their inner classes or uses
+     * their type parameters, any of which prevents it from being made {@code static}. References to the member
+     * class's own members are not instance data of the enclosing classes.
+     */
+    public boolean requiresEnclosingInstance(J.ClassDeclaration memberClass, ExecutionContext ctx) {
+        Map<J, Verdict> verdicts = verdicts(ctx);
+        Verdict verdict = verdicts.get(memberClass);
+        if (verdict == null || !verdict.isFor(memberClass)) {
+            verdict = cache(verdicts, memberClass, finder.find(memberClass, this, FileBudget.of(ctx)));
+        }
+        Dependencies dependencies = verdict.dependencies;
+        return dependencies.isRequiresInstance() || !dependencies.getCalledInstanceMethods().isEmpty();
+    }
+
+    private static Map<J, Verdict> verdicts(ExecutionContext ctx) {
+        return ctx.computeMessageIfAbsent(VERDICTS, k -> Collections.synchronizedMap(new WeakHashMap<>()));
+    }
+
+    /**
+     * Trees are equal to earlier versions of themselves with the same id, and a map keeps the key it already holds
+     * for an equal one, so the entry is removed first to be keyed by the declaration it was computed from.
+     */
+    private static Verdict cache(Map<J, Verdict> verdicts, J declaration, Dependencies dependencies) {
+        Verdict verdict = new Verdict(declaration, dependencies);
+        verdicts.remove(declaration);
+        verdicts.put(declaration, verdict);
+        return verdict;
+    }
+
+    /**
+     * @return A key identifying a method by name and parameter types, which is the same for a method declaration and
+     * calls to it.
+     */
+    public static String signatureOf(JavaType.Method method) {
+        StringBuilder signature = new StringBuilder(method.getName()).append('(');
+        List<JavaType> parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterTypes.size(); i++) {
+            if (i > 0) {
+                signature.append(',');
+            }
+            JavaType.FullyQualified fullyQualified = TypeUtils.asFullyQualified(parameterTypes.get(i));
+            signature.append(fullyQualified == null ? String.valueOf(parameterTypes.get(i)) : fullyQualified.getFullyQualifiedName());
+        }
+        return signature.append(')').toString();
+    }
+
+    private boolean isDeclaredByAnalyzedClass(@Nullable JavaType.FullyQualified declaringType) {
+        return declaringType != null &&
+               !instanceTypes.isEmpty() &&
+               declaringType.getFullyQualifiedName().equals(instanceTypes.get(0).getFullyQualifiedName());
+    }
+
+    private boolean isMemberOfInstanceTypes(JavaType owner) {
+        Boolean member = memberOfInstanceTypes.get(owner);
+        if (member == null) {
+            member = incompleteTypeAttribution;
+            JavaType.FullyQualified fullyQualifiedOwner = TypeUtils.asFullyQualified(owner);
+            if (fullyQualifiedOwner != null) {
+                for (JavaType.FullyQualified instanceType : instanceTypes) {
+                    if (TypeUtils.isAssignableTo(fullyQualifiedOwner.getFullyQualifiedName(), instanceType)) {
+                        member = true;
+                        break;
+                    }
+                }
+            }
+            memberOfInstanceTypes.put(owner, member);
+        }
+        return member;
+    }
+
+    @Value
+    public static class Dependencies {
+        /**
+         * Whether the method needs an instance regardless of the methods it calls.
+         */
+        boolean requiresInstance;
+
+        /**
+         * Signatures (see {@link #signatureOf(JavaType.Method)}) of instance methods declared by the analyzed class
+         * that are called without qualification or referenced through a bare {@code this}. Empty if
+         * {@link #isRequiresInstance()} is {@code true}, as the traversal stops at the first instance-dependent
+         * reference.
+         */
+        Set<String> calledInstanceMethods;
+    }
+
+    private static final class Verdict {
+        private final WeakReference<J> declaration;
+        private final Dependencies dependencies;
+
+        private Verdict(J declaration, Dependencies dependencies) {
+            this.declaration = new WeakReference<>(declaration);
+            this.dependencies = dependencies;
+        }
+
+        /**
+         * Declarations keep their id when they are changed, so the cached verdict only holds for the very same tree
+         * instance it was computed from.
+         */
+        private boolean isFor(J declaration) {
+            return this.declaration.get() == declaration;
+        }
+    }
+
+    private static final class InstanceReferenceFinder extends JavaIsoVisitor<InstanceDataAnalysis> {
+        private boolean found;
+
+        /**
+         * The number of identifiers checked by the last search, which is reported to the {@link RecipeMetrics}.
+         */
+        private int identifierChecks;
+        private Set<String> calledInstanceMethods = new HashSet<>();
+
+        /**
+         * How many anonymous or local class bodies inside the method the traversal is currently in. Within those,
+         * a bare {@code this} or {@code super} refers to the nested class rather than to the analyzed one.
+         */
+        private int nestedClassDepth;
+
+        private Set<String> methodTypeParameterNames = Collections.emptySet();
+
+        /**
+         * Every node visited is charged to the budget, as this traversal is where most of the time goes on methods
+         * with very large bodies.
+         */
+        private FileBudget budget = FileBudget.UNLIMITED;
+
+        @Nullable
+        private J.MethodDeclaration method;
+
+        Dependencies find(J.MethodDeclaration method, InstanceDataAnalysis analysis, FileBudget budget) {
+            this.budget = budget;
+            this.method = method;
+            found = false;
+            identifierChecks = 0;
+            calledInstanceMethods = new HashSet<>();
+            nestedClassDepth = 0;
+            methodTypeParameterNames = typeParameterNamesOf(method);
+
+            visit(method.getReturnTypeExpression(), analysis);
+            for (Statement parameter : method.getParameters()) {
+                visit(parameter, analysis);
+            }
+            visit(method.getBody(), analysis);
+
+            return found ?
+                    new Dependencies(true, Collections.emptySet()) :
+                    new Dependencies(false, calledInstanceMethods.isEmpty() ? Collections.emptySet() : calledInstanceMethods);
+        }
+
+        Dependencies find(J.ClassDeclaration memberClass, InstanceDataAnalysis analysis, FileBudget budget) {
+            this.budget = budget;
+            this.method = null;
+            found = false;
+            identifierChecks = 0;
+            calledInstanceMethods = new HashSet<>();
+            nestedClassDepth = 0;
+            methodTypeParameterNames = Collections.emptySet();
+
+            // entering the member class puts a bare this or super out of reach of the analyzed class
+            visit(memberClass, analysis);
+
+            return found ?
+                    new Dependencies(true, Collections.emptySet()) :
+                    new Dependencies(false, calledInstanceMethods.isEmpty() ? Collections.emptySet() : calledInstanceMethods);
+        }
+
+        @Override
+        public @Nullable J visit(@Nullable Tree tree, InstanceDataAnalysis analysis) {
+            if (found || tree == null) {
+                return (J) tree;
+            }
+            budget.visited(method);
+            return super.visit(tree, analysis);
+        }
+
+        @Override
+        public J.Identifier visitIdentifier(J.Identifier identifier, InstanceDataAnalysis analysis) {
+            identifierChecks++;
+            String name = identifier.getSimpleName();
+            if (nestedClassDepth == 0 && ("this".equals(name) || "super".equals(name))) {
+                found = true;
+            } else if (identifier.getFieldType() != null) {
+                // checked first, as a field whose type is a type parameter of the class has a type variable as type
+                JavaType.Variable field = identifier.getFieldType();
+                found = field.getOwner() != null &&
+                        !(field.getOwner() instanceof JavaType.Method) &&
+                        !field.hasFlags(Flag.Static) &&
+                        analysis.isMemberOfInstanceTypes(field.getOwner());
+            } else if (identifier.getType() instanceof JavaType.GenericTypeVariable) {
+                found = analysis.typeParameterNames.contains(name) && !methodTypeParameterNames.contains(name);
+            } else if (identifier.getType() == null) {
+                found = analysis.instanceFieldNames.contains(name) ||
+                        analysis.typeParameterNames.contains(name) && !methodTypeParameterNames.contains(name);
+            }
+            return identifier;
+        }
+
+        @Override
+        public J.FieldAccess visitFieldAccess(J.FieldAccess fieldAccess, InstanceDataAnalysis analysis) {
+            String name = fieldAccess.getSimpleName();
+            if ("this".equals(name) || "super".equals(name)) {
+                // Outer.this, Outer.super or Interface.super
+                found = true;
+            } else {
+                // the name is resolved against the target, which is the only part that can depend on this
+                visit(fieldAccess.getTarget(), analysis);
+            }
+            return fieldAccess;
+        }
+
+        @Override
+        public J.MethodInvocation visitMethodInvocation(J.MethodInvocation method, InstanceDataAnalysis analysis) {
+            JavaType.Method methodType = method.getMethodType();
+            boolean unqualified = method.getSelect() == null || isThis(method.getSelect());
+            if (unqualified && methodType == null) {
+                found = nestedClassDepth == 0;
+            } else if (unqualified && !methodType.hasFlags(Flag.Static)) {
+                // an unqualified call from within a nested class may still resolve to the analyzed class
+                if (analysis.isDeclaredByAnalyzedClass(methodType.getDeclaringType())) {
+                    calledInstanceMethods.add(signatureOf(methodType));
+                } else {
+                    found = analysis.isMemberOfInstanceTypes(methodType.getDeclaringType());
+                }
+            }
+
+            if (!isThis(method.getSelect())) {
+                visit(method.getSelect(), analysis);
+            }
+            if (method.getTypeParameters() != null) {
+                for (Expression typeParameter : method.getTypeParameters()) {
+                    visit(typeParameter, analysis);
+                }
+            }
+            for (Expression argument : method.getArguments()) {
+                visit(argument, analysis);
+            }
+            return method;
+        }
+
+        @Override
+        public J.MemberReference visitMemberReference(J.MemberReference memberRef, InstanceDataAnalysis analysis) {
+            JavaType.Method methodType = memberRef.getMethodType();
+            if (isThis(memberRef.getContaining()) && methodType != null && !methodType.hasFlags(Flag.Static) &&
+                analysis.isDeclaredByAnalyzedClass(methodType.getDeclaringType())) {
+                // this::method becomes ClassName::method if the method is made static as well
+                calledInstanceMethods.add(signatureOf(methodType));
+            } else {
+                visit(memberRef.getContaining(), analysis);
+            }
+            return memberRef;
+        }
+
+        /**
+         * Creating an instance of an inner class, or of an anonymous subclass of one, without an explicit enclosing
+         * instance binds it to {@code this}.
+         */
+        @Override
+        public J.NewClass visitNewClass(J.NewClass newClass, InstanceDataAnalysis analysis) {
+            if (newClass.getEnclosing() == null) {
+                // the type of an anonymous class creation is the anonymous class, whose owner is the enclosing method
+                JavaType.FullyQualified type = TypeUtils.asFullyQualified(newClass.getClazz() == null ?
+                        newClass.getType() :
+                        newClass.getClazz().getType());
+                found = type != null &&
+                        type.getKind() == JavaType.FullyQualified.Kind.Class &&
+                        type.getOwningClass() != null &&
+                        !type.hasFlags(Flag.Static) &&
+                        analysis.isMemberOfInstanceTypes(type.getOwningClass());
+            }
+
+            if (newClass.getBody() == null) {
+                return super.visitNewClass(newClass, analysis);
+            }
+
+            nestedClassDepth++;
+            try {
+                return super.visitNewClass(newClass, analysis);
+            } finally {
+                nestedClassDepth--;
+            }
+        }
+
+        @Override
+        public J.ClassDeclaration visitClassDeclaration(J.ClassDeclaration classDecl, InstanceDataAnalysis analysis) {
+            nestedClassDepth++;
+            try {
+                return super.visitClassDeclaration(classDecl, analysis);
+            } finally {
+                nestedClassDepth--;
+            }
+        }
+
+        /**
+         * @return Whether the expression is a bare {@code this} referring to the analyzed class.
+         */
+        private boolean isThis(@Nullable Expression expression) {
+            return nestedClassDepth == 0 &&
+                   expression instanceof J.Identifier &&
+                   "this".equals(((J.Identifier) expression).getSimpleName());
+        }
+
+        private static Set<String> typeParameterNamesOf(J.MethodDeclaration method) {
+            if (method.getTypeParameters() == null || method.getTypeParameters().isEmpty()) {
+                return Collections.emptySet();
+            }
+
+            Set<String> names = new HashSet<>();
+            for (J.TypeParameter typeParameter : method.getTypeParameters()) {
+                if (typeParameter.getName() instanceof J.Identifier) {
+                    names.add(((J.Identifier) typeParameter.getName()).getSimpleName());
+                }
+            }
+            return names;
+        }
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import lombok.EqualsAndHashCode;
+import lombok.Value;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.Option;
+import org.openrewrite.Recipe;
+import org.openrewrite.SourceFile;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.internal.ListUtils;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.cleanup.UseLambdaForFunctionalInterface;
+import org.openrewrite.java.metrics.MeteredVisitor;
+import org.openrewrite.java.tree.Expression;
+import org.openrewrite.java.tree.Flag;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.JLeftPadded;
+import org.openrewrite.java.tree.JavaType;
+import org.openrewrite.java.tree.Space;
+import org.openrewrite.java.tree.TypeTree;
+import org.openrewrite.java.tree.TypeUtils;
+import org.openrewrite.marker.Markers;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.Collections.emptyList;
+import static org.openrewrite.Tree.randomId;
+
+@Value
+@EqualsAndHashCode(callSuper = true)
+public class MakeInnerClassesStatic extends Recipe {
+    @Option(displayName = "Convert anonymous classes to lambdas",
+            description = "Also replace anonymous implementations of functional interfaces with lambdas, which only " +
+                          "capture the enclosing instance if they use it. Defaults to `false`.",
+            required = false)
+    @Nullable
+    Boolean convertAnonymousClasses;
+
+    public MakeInnerClassesStatic() {
+        this(null);
+    }
+
+    @JsonCreator
+    public MakeInnerClassesStatic(@Nullable Boolean convertAnonymousClasses) {
+        this.convertAnonymousClasses = convertAnonymousClasses;
+        if (Boolean.TRUE.equals(convertAnonymousClasses)) {
+            doNext(new UseLambdaForFunctionalInterface());
+        }
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Make inner classes without enclosing instance usage `static`";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Adds `static` to member classes that never use the instance of their enclosing class, which every " +
+               "instance of an inner class otherwise keeps reachable. Instances created as `outer.new Inner()` in " +
+               "any source file are created as `new Outer.Inner()` instead. Serializable classes, classes " +
+               "extending another inner class and classes created with an outer instance computed by an expression " +
+               "other than a variable or `this` are left as they are. Note that `outer.new Inner()` throws a " +
+               "`NullPointerException` when `outer` is `null`, whereas `new Outer.Inner()` does not, so code relying " +
+               "on that check behaves differently.";
+    }
+
+    @Override
+    protected List<SourceFile> visit(List<SourceFile> before, ExecutionContext ctx) {
+        // Creation sites can be in any source file, so all classes to change are found before any file is changed
+        Set<String> classesToMakeStatic = new HashSet<>();
+        for (SourceFile sourceFile : before) {
+            if (sourceFile instanceof J.CompilationUnit) {
+                new InnerClassScanner(classesToMakeStatic).visit(sourceFile, ctx);
+            }
+        }
+        if (!classesToMakeStatic.isEmpty()) {
+            for (SourceFile sourceFile : before) {
+                if (sourceFile instanceof J.CompilationUnit) {
+                    new CreationSiteScanner(classesToMakeStatic).visit(sourceFile, ctx);
+                }
+            }
+        }
+        if (classesToMakeStatic.isEmpty()) {
+            return before;
+        }
+
+        TreeVisitor<?, ExecutionContext> makeStatic = MeteredVisitor.visitor(getName(),
+                new MakeStaticVisitor(classesToMakeStatic), null, ctx);
+        return ListUtils.map(before, sourceFile -> sourceFile instanceof J.CompilationUnit ?
+                (SourceFile) makeStatic.visit(sourceFile, ctx) :
+                sourceFile);
+    }
+
+    /**
+     * Collects the fully qualified names of the inner member classes which can be made {@code static}.
+     */
+    private static class InnerClassScanner extends JavaIsoVisitor<ExecutionContext> {
+        private final Set<String> classesToMakeStatic;
+
+        /**
+         * The analyses of the classes enclosing the cursor which can declare static members, innermost on top.
+         */
+        private final Deque<InstanceDataAnalysis> classScopes = new ArrayDeque<>();
+
+        private InnerClassScanner(Set<String> classesToMakeStatic) {
+            this.classesToMakeStatic = classesToMakeStatic;
+        }
+
+        @Override
+        public J.ClassDeclaration visitClassDeclaration(J.ClassDeclaration classDecl, ExecutionContext executionContext) {
+            InstanceDataAnalysis enclosing = classScopes.peek();
+            Object parent = getCursor().dropParentUntil(J.class::isInstance).getValue();
+            Object grandparent = parent instanceof J.Block ?
+                    getCursor().dropParentUntil(J.class::isInstance).dropParentUntil(J.class::isInstance).getValue() :
+                    null;
+            boolean topLevel = parent instanceof J.CompilationUnit;
+            boolean memberClass = enclosing != null && grandparent instanceof J.ClassDeclaration;
+            boolean innerClass = memberClass && isInnerClass(classDecl) &&
+                                 // classes declared by interfaces and annotations are implicitly static
+                                 (((J.ClassDeclaration) grandparent).getKind() == J.ClassDeclaration.Kind.Type.Class ||
+                                  ((J.ClassDeclaration) grandparent).getKind() == J.ClassDeclaration.Kind.Type.Enum);
+
+            if (innerClass && classDecl.getType() != null &&
+                !TypeUtils.isAssignableTo("java.io.Serializable", classDecl.getType()) &&
+                !extendsInnerClass(classDecl.getType()) &&
+                !enclosing.requiresEnclosingInstance(classDecl, executionContext)) {
+                classesToMakeStatic.add(classDecl.getType().getFullyQualifiedName());
+            }
+
+            if (topLevel || memberClass && !innerClass) {
+                classScopes.push(InstanceDataAnalysis.forClass(classDecl, enclosing));
+                try {
+                    return super.visitClassDeclaration(classDecl, executionContext);
+                } finally {
+                    classScopes.pop();
+                }
+            }
+            // members of inner and local classes cannot be static before Java 16, so they are not traversed
+            return classDecl;
+        }
+
+        @Override
+        public J.MethodDeclaration visitMethodDeclaration(J.MethodDeclaration method, ExecutionContext executionContext) {
+            // local and anonymous classes are never member classes
+            return method;
+        }
+
+        private static boolean isInnerClass(J.ClassDeclaration classDecl) {
+            return classDecl.getKind() == J.ClassDeclaration.Kind.Type.Class &&
+                   !classDecl.hasModifier(J.Modifier.Type.Static);
+        }
+
+        /**
+         * The implicit {@code super()} call of a static class cannot supply the enclosing instance an inner
+         * superclass requires.
+         */
+        private static boolean extendsInnerClass(JavaType.FullyQualified type) {
+            JavaType.FullyQualified supertype = type.getSupertype();
+            return supertype != null &&
+                   supertype.getOwningClass() != null &&
+                   supertype.getKind() == JavaType.FullyQualified.Kind.Class &&
+                   !supertype.hasFlags(Flag.Static);
+        }
+    }
+
+    /**
+     * Removes the classes created as {@code outer.new Inner()} with an {@code outer} expression that may have side
+     * effects, which would no longer be evaluated by {@code new Outer.Inner()}. Variables are read without side
+     * effects, but are no longer checked for {@code null}, which the description of the recipe points out.
+     */
+    private static class CreationSiteScanner extends JavaIsoVisitor<ExecutionContext> {
+        private final Set<String> classesToMakeStatic;
+
+        private CreationSiteScanner(Set<String> classesToMakeStatic) {
+            this.classesToMakeStatic = classesToMakeStatic;
+        }
+
+        @Override
+        public J.NewClass visitNewClass(J.NewClass newClass, ExecutionContext executionContext) {
+            JavaType.FullyQualified type = TypeUtils.asFullyQualified(newClass.getType());
+            if (newClass.getEnclosing() != null && type != null && !isVariableOrThis(newClass.getEnclosing())) {
+                classesToMakeStatic.remove(type.getFullyQualifiedName());
+            }
+            return super.visitNewClass(newClass, executionContext);
+        }
+
+        /**
+         * @return Whether the expression is a local variable, parameter or field, possibly of {@code this}, or
+         * {@code this} itself, which are read without side effects.
+         */
+        private static boolean isVariableOrThis(Expression expression) {
+            if (expression instanceof J.Parentheses) {
+                return isVariableOrThis(((J.Parentheses<?>) expression).getTree());
+            } else if (expression instanceof J.FieldAccess) {
+                J.FieldAccess fieldAccess = (J.FieldAccess) expression;
+                // Outer.this and this.field
+                return "this".equals(fieldAccess.getSimpleName()) ||
+                       fieldAccess.getTarget() instanceof J.Identifier &&
+                       "this".equals(((J.Identifier) fieldAccess.getTarget()).getSimpleName());
+            }
+            return expression instanceof J.Identifier;
+        }
+    }
+
+    private static class MakeStaticVisitor extends JavaIsoVisitor<ExecutionContext> {
+        private final Set<String> classesToMakeStatic;
+
+        private MakeStaticVisitor(Set<String> classesToMakeStatic) {
+            this.classesToMakeStatic = classesToMakeStatic;
+        }
+
+        @Override
+        public J.ClassDeclaration visitClassDeclaration(J.ClassDeclaration classDecl, ExecutionContext executionContext) {
+            J.ClassDeclaration c = super.visitClassDeclaration(classDecl, executionContext);
+            if (c.getType() != null && classesToMakeStatic.contains(c.getType().getFullyQualifiedName())) {
+                J.Modifier staticModifier = new J.Modifier(randomId(), Space.format(" "), Markers.EMPTY,
+                        J.Modifier.Type.Static, emptyList());
+                if (c.getModifiers().isEmpty()) {
+                    // static becomes the first token of the declaration after its annotations
+                    c = c.withModifiers(ListUtils.concat(c.getModifiers(),
+                            staticModifier.withPrefix(c.getPadding().getKind().getPrefix())));
+                    c = c.getPadding().withKind(c.getPadding().getKind().withPrefix(Space.format(" ")));
+                } else {
+                    // static goes after access modifiers and abstract, but before final and strictfp
+                    int index = 0;
+                    for (int i = 0; i < c.getModifiers().size(); i++) {
+                        J.Modifier.Type modifierType = c.getModifiers().get(i).getType();
+                        if (modifierType == J.Modifier.Type.Public || modifierType == J.Modifier.Type.Protected ||
+                            modifierType == J.Modifier.Type.Private || modifierType == J.Modifier.Type.Abstract) {
+                            index = i + 1;
+                        }
+                    }
+                    if (index == 0) {
+                        c = c.withModifiers(ListUtils.insert(
+                                ListUtils.map(c.getModifiers(), (i, m) -> i == 0 ? m.withPrefix(Space.format(" ")) : m),
+                                staticModifier.withPrefix(c.getModifiers().get(0).getPrefix()),
+                                0));
+                    } else {
+                        c = c.withModifiers(ListUtils.insert(c.getModifiers(), staticModifier, index));
+                    }
+                }
+            }
+            return c;
+        }
+
+        @Override
+        public J.NewClass visitNewClass(J.NewClass newClass, ExecutionContext executionContext) {
+            J.NewClass n = super.visitNewClass(newClass, executionContext);
+            JavaType.FullyQualified type = TypeUtils.asFullyQualified(n.getType());
+            if (n.getEnclosing() == null || type == null ||
+                !classesToMakeStatic.contains(type.getFullyQualifiedName()) ||
+                type.getOwningClass() == null || n.getClazz() == null) {
+                return n;
+            }
+
+            J.NewClass unqualified = n.getPadding().withEnclosing(null).withNew(n.getNew().withWhitespace(""));
+            if (isWithin(type.getOwningClass())) {
+                return unqualified;
+            }
+
+            // outer.new Inner() may be written where Inner is not in scope, so the owner's name is added
+            JavaType.FullyQualified owner = type.getOwningClass();
+            JavaType.FullyQualified topLevel = owner;
+            while (topLevel.getOwningClass() != null) {
+                topLevel = topLevel.getOwningClass();
+            }
+            maybeAddImport(topLevel.getFullyQualifiedName());
+
+            TypeTree clazz = n.getClazz();
+            J.FieldAccess qualified = new J.FieldAccess(randomId(),
+                    clazz.getPrefix(),
+                    Markers.EMPTY,
+                    new J.Identifier(randomId(), Space.EMPTY, Markers.EMPTY, owner.getClassName(), owner, null),
+                    JLeftPadded.build(new J.Identifier(randomId(), Space.EMPTY, Markers.EMPTY, type.getClassName()
+                            .substring(type.getClassName().lastIndexOf('.') + 1), type, null)),
+                    type);
+            if (clazz instanceof J.ParameterizedType) {
+                return unqualified.withClazz(((J.ParameterizedType) clazz).withClazz(qualified.withPrefix(Space.EMPTY)));
+            }
+            return clazz instanceof J.Identifier ? unqualified.withClazz(qualified) : n;
+        }
+
+        private boolean isWithin(JavaType.FullyQualified owner) {
+            return getCursor().getPathAsStream()
+                    .filter(J.ClassDeclaration.class::isInstance)
+                    .map(classDecl -> ((J.ClassDeclaration) classDecl).getType())
+                    .anyMatch(type -> type != null && type.getFullyQualifiedName().equals(owner.getFullyQualifiedName()));
+        }
+    }
+}
@@ -1,30 +1,91 @@
 package org.openrewrite.java;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import lombok.EqualsAndHashCode;
+import lombok.Value;
 import org.jetbrains.annotations.NotNull;
 import org.openrewrite.ExecutionContext;
+import org.openrewrite.Option;
 import org.openrewrite.Recipe;
+import org.openrewrite.TreeVisitor;
 import org.openrewrite.internal.ListUtils;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.metrics.MeteredVisitor;
+import org.openrewrite.java.metrics.Tally;
+import org.openrewrite.java.tree.Expression;
+import org.openrewrite.java.tree.Flag;
 import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.JavaType;
+import org.openrewrite.java.tree.Statement;
 import org.openrewrite.java.tree.TypeUtils;
 import org.openrewrite.marker.Markers;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.function.Predicate;
-import java.util.stream.Stream;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
 import static org.openrewrite.Tree.randomId;
 import static org.openrewrite.java.tree.Space.EMPTY;
 
+@Value
+@EqualsAndHashCode(callSuper = true)
 public class MakeNonOverridableMethodsWithoutInstanceDataStatic extends Recipe {
-    private static final Collection<String> OVERRIDDEN_SERIALIZABLE_METHODS_TO_EXCLUDE_FROM_RECIPE = Arrays.asList(
-            "* writeObject(java.io.ObjectOutputStream)",
-            "* readObject(java.io.ObjectInputStream)",
-            "* readObjectNoData()"
+    private static final List<MethodMatcher> OVERRIDDEN_SERIALIZABLE_METHODS_TO_EXCLUDE_FROM_RECIPE = Arrays.asList(
+            new MethodMatcher("* writeObject(java.io.ObjectOutputStream)"),
+            new MethodMatcher("* readObject(java.io.ObjectInputStream)"),
+            new MethodMatcher("* readObjectNoData()"),
+            new MethodMatcher("* writeReplace()"),
+            new MethodMatcher("* readResolve()")
     );
 
+    private static final Collection<String> GENERATED_SOURCE_DIRECTORIES = Arrays.asList(
+            "build/generated/",
+            "target/generated-sources/",
+            "target/generated-test-sources/"
+    );
+
+    @Option(displayName = "Exclude generated sources",
+            description = "Skip source files with a top-level class annotated with `@Generated` or located in a " +
+                          "generated sources directory such as `build/generated` or `target/generated-sources`. " +
+                          "Defaults to `true`.",
+            required = false)
+    @Nullable
+    Boolean excludeGeneratedSources;
+
+    @Option(displayName = "Excluded method patterns",
+            description = "Additional methods that are never made `static`, as method patterns matched against the " +
+                          "method declarations in every class.",
+            example = "* setUp()",
+            required = false)
+    @Nullable
+    List<String> excludedMethodPatterns;
+
+    public MakeNonOverridableMethodsWithoutInstanceDataStatic() {
+        this(null, null);
+    }
+
+    public MakeNonOverridableMethodsWithoutInstanceDataStatic(@Nullable Boolean excludeGeneratedSources) {
+        this(excludeGeneratedSources, null);
+    }
+
+    @JsonCreator
+    public MakeNonOverridableMethodsWithoutInstanceDataStatic(@Nullable Boolean excludeGeneratedSources,
+                                                               @Nullable List<String> excludedMethodPatterns) {
+        this.excludeGeneratedSources = excludeGeneratedSources;
+        this.excludedMethodPatterns = excludedMethodPatterns;
+    }
+
     @Override
     public String getDisplayName() {
         return "Add `static` to non-overridable methods without instance variable usage";
@@ -33,106 +94,404 @@ public class MakeNonOverridableMethodsWithoutInstanceDataStatic extends Recipe {
     @Override
     public String getDescription() {
         return "Makes `private` or `final` methods `static` if without references to instance variables. " +
-               "When `java.io.Serializable` is implemented by a class, the following methods are excluded from this " +
-               "recipe: `private void writeObject(java.io.ObjectOutputStream out) throws IOException;`" +
+               "Methods that only call other methods which can be made `static` are made `static` together with them, " +
+               "and method references like `this::method` to them become non-capturing `ClassName::method` references. " +
+               "When `java.io.Serializable` is implemented by a class or one of its supertypes, the following methods " +
+               "are excluded from this recipe: `private void writeObject(java.io.ObjectOutputStream out) throws IOException;`" +
                ",`private void readObject(java.io.ObjectInputStream in) throws IOException, ClassNotFoundException;`" +
-               ",`private void readObjectNoData() throws ObjectStreamException;`";
+               ",`private void readObjectNoData() throws ObjectStreamException;`" +
+               ",`private Object writeReplace() throws ObjectStreamException;`" +
+               ",`private Object readResolve() throws ObjectStreamException;`";
     }
 
     @Override
-    protected StaticMethodVisitor getVisitor() {
-        return new StaticMethodVisitor();
+    protected TreeVisitor<?, ExecutionContext> getSingleSourceApplicableTest() {
+        // Only looks at the members of each class body, so files without a private or final instance method are
+        // skipped before any method body is analyzed
+        boolean skipGenerated = !Boolean.FALSE.equals(excludeGeneratedSources);
+        return MeteredVisitor.applicabilityTest(getName(), new JavaIsoVisitor<ExecutionContext>() {
+            @Override
+            public J.CompilationUnit visitCompilationUnit(J.CompilationUnit cu, ExecutionContext executionContext) {
+                if (skipGenerated && isGenerated(cu)) {
+                    return cu;
+                }
+
+                for (J.ClassDeclaration classDecl : cu.getClasses()) {
+                    if (declaresNonOverridableInstanceMethod(classDecl)) {
+                        return cu.withMarkers(cu.getMarkers().searchResult());
+                    }
+                }
+                return cu;
+            }
+        });
+    }
+
+    private static boolean isGenerated(J.CompilationUnit cu) {
+        String sourcePath = "/" + cu.getSourcePath().toString().replace('\\', '/');
+        for (String generatedSourceDirectory : GENERATED_SOURCE_DIRECTORIES) {
+            if (sourcePath.contains("/" + generatedSourceDirectory)) {
+                return true;
+            }
+        }
+
+        for (J.ClassDeclaration classDecl : cu.getClasses()) {
+            for (J.Annotation annotation : classDecl.getLeadingAnnotations()) {
+                if ("Generated".equals(annotation.getSimpleName())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean declaresNonOverridableInstanceMethod(J.ClassDeclaration classDecl) {
+        for (Statement statement : classDecl.getBody().getStatements()) {
+            if (statement instanceof J.MethodDeclaration) {
+                J.MethodDeclaration method = (J.MethodDeclaration) statement;
+                if (!method.isConstructor() &&
+                    !method.hasModifier(J.Modifier.Type.Static) &&
+                    (method.hasModifier(J.Modifier.Type.Private) || method.hasModifier(J.Modifier.Type.Final))) {
+                    return true;
+                }
+            } else if (statement instanceof J.ClassDeclaration &&
+                       declaresNonOverridableInstanceMethod((J.ClassDeclaration) statement)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected TreeVisitor<?, ExecutionContext> getVisitor() {
+        StaticMethodVisitor visitor = new StaticMethodVisitor(excludedMethods(), null);
+        return MeteredVisitor.visitor(getName(), visitor, visitor.tally);
+    }
+
+    /**
+     * @return The method declarations in the source file that this recipe would make static, found by the same
+     * analysis but without visiting method bodies again or changing anything.
+     */
+    List<J.MethodDeclaration> findMethodsToMakeStatic(J.CompilationUnit cu, ExecutionContext ctx) {
+        if (!Boolean.FALSE.equals(excludeGeneratedSources) && isGenerated(cu)) {
+            return emptyList();
+        }
+        boolean anyCandidates = false;
+        for (J.ClassDeclaration classDecl : cu.getClasses()) {
+            anyCandidates |= declaresNonOverridableInstanceMethod(classDecl);
+        }
+        if (!anyCandidates) {
+            return emptyList();
+        }
+
+        List<J.MethodDeclaration> methods = new ArrayList<>();
+        new StaticMethodVisitor(excludedMethods(), methods).visit(cu, ctx);
+        return methods;
+    }
+
+    private List<MethodMatcher> excludedMethods() {
+        List<MethodMatcher> excludedMethods = new ArrayList<>();
+        if (excludedMethodPatterns != null) {
+            for (String excludedMethodPattern : excludedMethodPatterns) {
+                excludedMethods.add(new MethodMatcher(excludedMethodPattern));
+            }
+        }
+        return excludedMethods;
     }
 
     private static class StaticMethodVisitor extends JavaIsoVisitor<ExecutionContext> {
+        /**
+         * The class declarations and anonymous class bodies enclosing the cursor, innermost on top.
+         */
+        private final Deque<ClassScope> classScopes = new ArrayDeque<>();
+
+        private final List<MethodMatcher> excludedMethods;
+
+        /**
+         * Collects the methods to make static instead of changing them, if not {@code null}.
+         */
+        @Nullable
+        private final List<J.MethodDeclaration> found;
+
+        private final Map<JavaType.FullyQualified, Boolean> serializableTypes = new IdentityHashMap<>();
+        private final Tally tally = new Tally();
+
+        private StaticMethodVisitor(List<MethodMatcher> excludedMethods, @Nullable List<J.MethodDeclaration> found) {
+            this.excludedMethods = excludedMethods;
+            this.found = found;
+        }
+
+        @Override
+        public J.ClassDeclaration visitClassDeclaration(J.ClassDeclaration classDecl, ExecutionContext executionContext) {
+            ClassScope enclosing = classScopes.peek();
+            InstanceDataAnalysis analysis = InstanceDataAnalysis.forClass(classDecl, enclosing == null ? null : enclosing.analysis);
+            boolean staticMethodsAllowed = canDeclareStaticMethods(classDecl, enclosing);
+            classScopes.push(new ClassScope(
+                    classDecl,
+                    analysis,
+                    staticMethodsAllowed,
+                    staticMethodsAllowed ? methodsToMakeStatic(classDecl, analysis, executionContext) : emptyMap()
+            ));
+            try {
+                return super.visitClassDeclaration(classDecl, executionContext);
+            } finally {
+                classScopes.pop();
+            }
+        }
+
+        @Override
+        public J.NewClass visitNewClass(J.NewClass newClass, ExecutionContext executionContext) {
+            if (newClass.getBody() == null) {
+                return super.visitNewClass(newClass, executionContext);
+            }
+
+            ClassScope enclosing = classScopes.peek();
+            classScopes.push(new ClassScope(
+                    null,
+                    InstanceDataAnalysis.forAnonymousClass(newClass, enclosing == null ? null : enclosing.analysis),
+                    false,
+                    emptyMap()
+            ));
+            try {
+                return super.visitNewClass(newClass, executionContext);
+            } finally {
+                classScopes.pop();
+            }
+        }
+
         @Override
         public J.MethodDeclaration visitMethodDeclaration(J.MethodDeclaration method, ExecutionContext executionContext) {
-            if (method.hasModifier(J.Modifier.Type.Static) ||
-                methodIsOverridable(method) ||
-                methodIsInExclusionList(method)) {
+            tally.increment(Tally.Counter.METHOD_DECLARATIONS);
+            ClassScope enclosing = classScopes.peek();
+            if (enclosing == null || !anyMethodsMadeStatic()) {
+                // nothing in the body can refer to a method that is made static
+                return method;
+            }
+            if (found != null) {
+                if (enclosing.methodsToMakeStatic.containsKey(method.getId())) {
+                    found.add(method);
+                }
+                // classes declared in a method body cannot declare static methods
                 return method;
             }
 
-            if (!methodReferencesInstanceDataOfEnclosingClass(method)) {
-                return addStaticModifierTo(method);
+            J.MethodDeclaration m = super.visitMethodDeclaration(method, executionContext);
+            if (enclosing.methodsToMakeStatic.containsKey(method.getId())) {
+                m = addStaticModifierTo(m);
             }
+            return m;
+        }
 
-            return method;
+        /**
+         * {@code this::method} and {@code Outer.this::method} do not compile once the method is static, and are
+         * replaced by {@code ClassName::method}, which also no longer captures {@code this}.
+         */
+        @Override
+        public J.MemberReference visitMemberReference(J.MemberReference memberRef, ExecutionContext executionContext) {
+            J.MemberReference m = super.visitMemberReference(memberRef, executionContext);
+            ClassScope declaring = scopeReferencedBy(m.getContaining());
+            if (found == null && declaring != null && declaring.classDecl != null && declaring.isMadeStatic(m.getMethodType())) {
+                return m.withContaining(new J.Identifier(randomId(),
+                        m.getContaining().getPrefix(),
+                        Markers.EMPTY,
+                        declaring.classDecl.getSimpleName(),
+                        declaring.classDecl.getType(),
+                        null));
+            }
+            return m;
         }
 
-        private static boolean methodIsOverridable(J.MethodDeclaration method) {
-            return !method.hasModifier(J.Modifier.Type.Private) && !method.hasModifier(J.Modifier.Type.Final);
+        /**
+         * {@code this.method()} becomes {@code method()} when the method is made static by this visitor, or when the
+         * method already is static and the call is in a method that is made static, where {@code this} is not
+         * available. Other calls of static methods through {@code this} are left as they are.
+         */
+        @Override
+        public J.MethodInvocation visitMethodInvocation(J.MethodInvocation method, ExecutionContext executionContext) {
+            tally.increment(Tally.Counter.METHOD_INVOCATIONS);
+            J.MethodInvocation m = super.visitMethodInvocation(method, executionContext);
+            ClassScope enclosing = classScopes.peek();
+            if (found == null && enclosing != null && isThis(m.getSelect()) &&
+                (enclosing.isMadeStatic(m.getMethodType()) ||
+                 isStatic(m.getMethodType()) && isInMethodMadeStatic(enclosing))) {
+                return m.withSelect(null);
+            }
+            return m;
         }
 
-        private boolean methodIsInExclusionList(J.MethodDeclaration method) {
-            J.ClassDeclaration enclosingClass = getCursor().firstEnclosingOrThrow(J.ClassDeclaration.class);
+        private boolean isInMethodMadeStatic(ClassScope enclosing) {
+            J.MethodDeclaration declaration = getCursor().firstEnclosing(J.MethodDeclaration.class);
+            return declaration != null && enclosing.methodsToMakeStatic.containsKey(declaration.getId());
+        }
 
-            if (classImplementsSerializable(enclosingClass)) {
-                return OVERRIDDEN_SERIALIZABLE_METHODS_TO_EXCLUDE_FROM_RECIPE.stream()
-                                                                             .map(MethodMatcher::new)
-                                                                             .anyMatch(methodMatcher -> methodMatcher.matches(
-                                                                                     method,
-                                                                                     enclosingClass
-                                                                             ));
-            }
+        private static boolean isStatic(@Nullable JavaType.Method methodType) {
+            return methodType != null && methodType.hasFlags(Flag.Static);
+        }
 
-            return false;
+        private static boolean isThis(@Nullable Expression expression) {
+            return expression instanceof J.Identifier && "this".equals(((J.Identifier) expression).getSimpleName());
         }
 
-        private static boolean classImplementsSerializable(J.ClassDeclaration classDecl) {
-            if (classDecl.getImplements() != null) {
-                return classDecl.getImplements()
-                                .stream()
-                                .anyMatch(implemented -> TypeUtils.isOfClassType(implemented.getType(),
-                                                                               "java.io.Serializable"
-                                ));
+        /**
+         * @return The scope of the class whose instance a bare or qualified {@code this} refers to, or {@code null}
+         * if the expression is something else.
+         */
+        @Nullable
+        private ClassScope scopeReferencedBy(Expression expression) {
+            if (isThis(expression)) {
+                return classScopes.peek();
+            } else if (expression instanceof J.FieldAccess && "this".equals(((J.FieldAccess) expression).getSimpleName())) {
+                JavaType.FullyQualified type = TypeUtils.asFullyQualified(((J.FieldAccess) expression).getTarget().getType());
+                for (ClassScope classScope : classScopes) {
+                    if (type != null && classScope.classDecl != null && classScope.classDecl.getType() != null &&
+                        type.getFullyQualifiedName().equals(classScope.classDecl.getType().getFullyQualifiedName())) {
+                        return classScope;
+                    }
+                }
+            }
+            return null;
+        }
+
+        private boolean anyMethodsMadeStatic() {
+            for (ClassScope classScope : classScopes) {
+                if (!classScope.methodsToMakeStatic.isEmpty()) {
+                    return true;
+                }
             }
             return false;
         }
 
-        private boolean methodReferencesInstanceDataOfEnclosingClass(J.MethodDeclaration method) {
-            AtomicBoolean methodReferencesInstanceDataOfEnclosingClass = new AtomicBoolean(false);
-            new JavaIsoVisitor<AtomicBoolean>() {
-                @Override
-                public J.Identifier visitIdentifier(J.Identifier identifier, AtomicBoolean atomicBoolean) {
-                    if (identifierIsInstanceVariableOfEnclosingClass(identifier)) {
-                        atomicBoolean.set(true);
+        /**
+         * Solves the intra-class call graph of the non-overridable methods declared by {@code classDecl}, so that a
+         * method which only depends on other methods that become static is made static in the same cycle.
+         *
+         * @return The types of the method declarations to make static, by their ids.
+         */
+        private Map<UUID, JavaType.Method> methodsToMakeStatic(J.ClassDeclaration classDecl, InstanceDataAnalysis analysis, ExecutionContext ctx) {
+            Map<String, J.MethodDeclaration> candidates = new HashMap<>();
+            for (Statement statement : classDecl.getBody().getStatements()) {
+                if (statement instanceof J.MethodDeclaration) {
+                    J.MethodDeclaration method = (J.MethodDeclaration) statement;
+                    if (method.getMethodType() != null &&
+                        !method.isConstructor() &&
+                        !method.hasModifier(J.Modifier.Type.Static) &&
+                        !methodIsOverridable(method) &&
+                        !methodIsInExclusionList(method, classDecl)) {
+                        candidates.put(InstanceDataAnalysis.signatureOf(method.getMethodType()), method);
                     }
+                }
+            }
+            if (candidates.isEmpty()) {
+                return emptyMap();
+            }
+
+            // Start from every candidate that does not need an instance by itself, then withdraw the ones that call
+            // a method which stays an instance method until nothing changes.
+            Set<String> canBeStatic = new HashSet<>();
+            Map<String, List<String>> callers = new HashMap<>();
+            Deque<String> instanceMethods = new ArrayDeque<>();
+            for (Map.Entry<String, J.MethodDeclaration> candidate : candidates.entrySet()) {
+                InstanceDataAnalysis.Dependencies dependencies = analysis.analyze(candidate.getValue(), ctx);
+                boolean callsNonCandidate = false;
+                for (String callee : dependencies.getCalledInstanceMethods()) {
+                    callers.computeIfAbsent(callee, k -> new ArrayList<>()).add(candidate.getKey());
+                    callsNonCandidate |= !candidates.containsKey(callee);
+                }
+                if (dependencies.isRequiresInstance() || callsNonCandidate) {
+                    instanceMethods.add(candidate.getKey());
+                } else {
+                    canBeStatic.add(candidate.getKey());
+                }
+            }
 
-                    return identifier;
+            while (!instanceMethods.isEmpty()) {
+                for (String caller : callers.getOrDefault(instanceMethods.pop(), emptyList())) {
+                    if (canBeStatic.remove(caller)) {
+                        instanceMethods.add(caller);
+                    }
                 }
-            }.visit(method.getBody(), methodReferencesInstanceDataOfEnclosingClass);
+            }
 
-            return methodReferencesInstanceDataOfEnclosingClass.get();
+            Map<UUID, JavaType.Method> methodTypes = new HashMap<>();
+            for (String signature : canBeStatic) {
+                J.MethodDeclaration method = candidates.get(signature);
+                methodTypes.put(method.getId(), method.getMethodType());
+            }
+            return methodTypes;
         }
 
-        private boolean identifierIsInstanceVariableOfEnclosingClass(J.Identifier identifier) {
-            J.ClassDeclaration enclosingClass = getCursor().firstEnclosingOrThrow(J.ClassDeclaration.class);
+        /**
+         * Before Java 16 only top-level classes and classes that are themselves static can declare static methods,
+         * which excludes inner, local and anonymous classes.
+         */
+        private boolean canDeclareStaticMethods(J.ClassDeclaration classDecl, @Nullable ClassScope enclosing) {
+            Object parent = getCursor().dropParentUntil(J.class::isInstance).getValue();
+            if (parent instanceof J.CompilationUnit) {
+                return true;
+            }
 
-            return getVariableDeclarations(enclosingClass).filter(variablesWithSimpleNamesMatching(identifier.getSimpleName()))
-                                                          .anyMatch(noStaticModifier());
+            boolean memberClass = enclosing != null &&
+                                  enclosing.staticMethodsAllowed &&
+                                  parent instanceof J.Block &&
+                                  getCursor().dropParentUntil(J.class::isInstance)
+                                             .dropParentUntil(J.class::isInstance)
+                                             .getValue() instanceof J.ClassDeclaration;
+            return memberClass &&
+                   (classDecl.getKind() != J.ClassDeclaration.Kind.Type.Class ||
+                    classDecl.hasModifier(J.Modifier.Type.Static));
         }
 
-        @NotNull
-        private static Predicate<J.VariableDeclarations> variablesWithSimpleNamesMatching(String targetSimpleName) {
-            return variableDeclarations -> variableDeclarations.getVariables()
-                                                               .stream()
-                                                               .anyMatch(namedVariable -> namedVariable.getName()
-                                                                                                       .getSimpleName()
-                                                                                                       .equals(targetSimpleName));
+        private static boolean methodIsOverridable(J.MethodDeclaration method) {
+            return !method.hasModifier(J.Modifier.Type.Private) && !method.hasModifier(J.Modifier.Type.Final);
         }
 
-        @NotNull
-        private static Predicate<J.VariableDeclarations> noStaticModifier() {
-            return variableDeclarations -> !variableDeclarations.hasModifier(J.Modifier.Type.Static);
+        private boolean methodIsInExclusionList(J.MethodDeclaration method, J.ClassDeclaration enclosingClass) {
+            for (MethodMatcher excludedMethod : excludedMethods) {
+                if (excludedMethod.matches(method, enclosingClass)) {
+                    return true;
+                }
+            }
+
+            if (classImplementsSerializable(enclosingClass)) {
+                for (MethodMatcher serializableMethod : OVERRIDDEN_SERIALIZABLE_METHODS_TO_EXCLUDE_FROM_RECIPE) {
+                    if (serializableMethod.matches(method, enclosingClass)) {
+                        return true;
+                    }
+                }
+            }
+
+            return false;
         }
 
-        private Stream<J.VariableDeclarations> getVariableDeclarations(J.ClassDeclaration classDeclaration) {
-            return classDeclaration.getBody()
-                                   .getStatements()
-                                   .stream()
-                                   .filter(J.VariableDeclarations.class::isInstance)
-                                   .map(J.VariableDeclarations.class::cast);
+        private boolean classImplementsSerializable(J.ClassDeclaration classDecl) {
+            if (classDecl.getType() != null) {
+                return isSerializable(classDecl.getType());
+            }
+
+            if (classDecl.getImplements() != null) {
+                return classDecl.getImplements()
+                                .stream()
+                                .anyMatch(implemented -> TypeUtils.isOfClassType(implemented.getType(),
+                                                                               "java.io.Serializable"
+                                ));
+            }
+            return false;
+        }
+
+        private boolean isSerializable(@Nullable JavaType.FullyQualified type) {
+            if (type == null) {
+                return false;
+            }
+
+            Boolean serializable = serializableTypes.get(type);
+            if (serializable == null) {
+                serializable = "java.io.Serializable".equals(type.getFullyQualifiedName()) ||
+                               isSerializable(type.getSupertype());
+                for (JavaType.FullyQualified anInterface : type.getInterfaces()) {
+                    serializable = serializable || isSerializable(anInterface);
+                }
+                serializableTypes.put(type, serializable);
+            }
+            return serializable;
         }
 
         @NotNull
@@ -148,5 +507,77 @@ public class MakeNonOverridableMethodsWithoutInstanceDataStatic extends Recipe {
 
             return method;
         }
+
+        private static final class ClassScope {
+            /**
+             * The class declaration, or {@code null} for an anonymous class body.
+             */
+            @Nullable
+            private final J.ClassDeclaration classDecl;
+
+            private final InstanceDataAnalysis analysis;
+            private final boolean staticMethodsAllowed;
+            private final Map<UUID, JavaType.Method> methodsToMakeStatic;
+
+            private ClassScope(@Nullable J.ClassDeclaration classDecl,
+                               InstanceDataAnalysis analysis,
+                               boolean staticMethodsAllowed,
+                               Map<UUID, JavaType.Method> methodsToMakeStatic) {
+                this.classDecl = classDecl;
+                this.analysis = analysis;
+                this.staticMethodsAllowed = staticMethodsAllowed;
+                this.methodsToMakeStatic = methodsToMakeStatic;
+            }
+
+            /**
+             * @return Whether the method is declared by this class and made static by this visitor.
+             */
+            private boolean isMadeStatic(@Nullable JavaType.Method methodType) {
+                if (methodType == null || classDecl == null || classDecl.getType() == null ||
+                    !methodType.getDeclaringType().getFullyQualifiedName().equals(classDecl.getType().getFullyQualifiedName())) {
+                    return false;
+                }
+                for (JavaType.Method declared : methodsToMakeStatic.values()) {
+                    if (isUseOf(methodType, declared)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            /**
+             * The type of a call or reference of a generic method has the type arguments it is used with in place of
+             * the type variables of the declaration, so a parameter declared with a type variable matches any type.
+             */
+            private static boolean isUseOf(JavaType.Method used, JavaType.Method declared) {
+                if (TypeUtils.isOfType(used, declared)) {
+                    return true;
+                }
+                if (!used.getName().equals(declared.getName()) ||
+                    used.getParameterTypes().size() != declared.getParameterTypes().size()) {
+                    return false;
+                }
+                for (int i = 0; i < declared.getParameterTypes().size(); i++) {
+                    if (!isUseOf(used.getParameterTypes().get(i), declared.getParameterTypes().get(i))) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            private static boolean isUseOf(JavaType used, JavaType declared) {
+                if (declared instanceof JavaType.GenericTypeVariable) {
+                    return true;
+                } else if (used instanceof JavaType.Array && declared instanceof JavaType.Array) {
+                    return isUseOf(((JavaType.Array) used).getElemType(), ((JavaType.Array) declared).getElemType());
+                }
+                JavaType.FullyQualified usedClass = TypeUtils.asFullyQualified(used);
+                JavaType.FullyQualified declaredClass = TypeUtils.asFullyQualified(declared);
+                if (usedClass != null && declaredClass != null) {
+                    return usedClass.getFullyQualifiedName().equals(declaredClass.getFullyQualifiedName());
+                }
+                return TypeUtils.isOfType(used, declared);
+            }
+        }
     }
 }
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import lombok.EqualsAndHashCode;
+import lombok.Value;
+import org.openrewrite.Cursor;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.Recipe;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.marker.JavaVersion;
+import org.openrewrite.java.metrics.MeteredVisitor;
+import org.openrewrite.java.metrics.Tally;
+import org.openrewrite.java.tree.Expression;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.JavaType;
+import org.openrewrite.java.tree.TypeUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@Value
+@EqualsAndHashCode(callSuper = true)
+public class NoGuavaCollectionFactories extends Recipe implements FusibleRecipe {
+    private static final String LISTS = "com.google.common.collect.Lists";
+    private static final String SETS = "com.google.common.collect.Sets";
+    private static final String MAPS = "com.google.common.collect.Maps";
+    private static final String IMMUTABLE_LIST = "com.google.common.collect.ImmutableList";
+
+    private static final List<Mapping> MAPPINGS = Arrays.asList(
+            new Mapping(LISTS, "newArrayList", Shape.NONE, "new ArrayList<>()", "java.util.ArrayList"),
+            new Mapping(LISTS, "newArrayList", Shape.COLLECTION, "new ArrayList<>(#{any(java.util.Collection)})", "java.util.ArrayList"),
+            new Mapping(LISTS, "newArrayList", Shape.VARARGS, "new ArrayList<>(Arrays.asList(%s))", "java.util.ArrayList", "java.util.Arrays"),
+            new Mapping(LISTS, "newArrayListWithCapacity", Shape.INT, "new ArrayList<>(#{any(int)})", "java.util.ArrayList"),
+            new Mapping(LISTS, "newArrayListWithExpectedSize", Shape.INT, "new ArrayList<>(#{any(int)})", "java.util.ArrayList"),
+            new Mapping(LISTS, "newCopyOnWriteArrayList", Shape.NONE, "new CopyOnWriteArrayList<>()", "java.util.concurrent.CopyOnWriteArrayList"),
+            new Mapping(LISTS, "newCopyOnWriteArrayList", Shape.COLLECTION, "new CopyOnWriteArrayList<>(#{any(java.util.Collection)})", "java.util.concurrent.CopyOnWriteArrayList"),
+
+            new Mapping(SETS, "newHashSet", Shape.NONE, "new HashSet<>()", "java.util.HashSet"),
+            new Mapping(SETS, "newHashSet", Shape.COLLECTION, "new HashSet<>(#{any(java.util.Collection)})", "java.util.HashSet"),
+            new Mapping(SETS, "newHashSet", Shape.VARARGS, "new HashSet<>(Arrays.asList(%s))", "java.util.HashSet", "java.util.Arrays"),
+            new Mapping(SETS, "newHashSetWithExpectedSize", Shape.EXPECTED_SIZE, "new HashSet<>(%s)", "java.util.HashSet"),
+            new Mapping(SETS, "newLinkedHashSet", Shape.NONE, "new LinkedHashSet<>()", "java.util.LinkedHashSet"),
+            new Mapping(SETS, "newLinkedHashSet", Shape.COLLECTION, "new LinkedHashSet<>(#{any(java.util.Collection)})", "java.util.LinkedHashSet"),
+            new Mapping(SETS, "newLinkedHashSetWithExpectedSize", Shape.EXPECTED_SIZE, "new LinkedHashSet<>(%s)", "java.util.LinkedHashSet"),
+            new Mapping(SETS, "newTreeSet", Shape.NONE, "new TreeSet<>()", "java.util.TreeSet"),
+            new Mapping(SETS, "newTreeSet", Shape.COLLECTION, "new TreeSet<>(#{any(java.util.Collection)})", "java.util.TreeSet"),
+            new Mapping(SETS, "newTreeSet", Shape.COMPARATOR, "new TreeSet<>(#{any(java.util.Comparator)})", "java.util.TreeSet"),
+            new Mapping(SETS, "newConcurrentHashSet", Shape.NONE, "ConcurrentHashMap.newKeySet()", "java.util.concurrent.ConcurrentHashMap"),
+
+            new Mapping(MAPS, "newHashMap", Shape.NONE, "new HashMap<>()", "java.util.HashMap"),
+            new Mapping(MAPS, "newHashMap", Shape.MAP, "new HashMap<>(#{any(java.util.Map)})", "java.util.HashMap"),
+            new Mapping(MAPS, "newHashMapWithExpectedSize", Shape.EXPECTED_SIZE, "new HashMap<>(%s)", "java.util.HashMap"),
+            new Mapping(MAPS, "newLinkedHashMap", Shape.NONE, "new LinkedHashMap<>()", "java.util.LinkedHashMap"),
+            new Mapping(MAPS, "newLinkedHashMap", Shape.MAP, "new LinkedHashMap<>(#{any(java.util.Map)})", "java.util.LinkedHashMap"),
+            new Mapping(MAPS, "newLinkedHashMapWithExpectedSize", Shape.EXPECTED_SIZE, "new LinkedHashMap<>(%s)", "java.util.LinkedHashMap"),
+            new Mapping(MAPS, "newTreeMap", Shape.NONE, "new TreeMap<>()", "java.util.TreeMap"),
+            new Mapping(MAPS, "newTreeMap", Shape.MAP, "new TreeMap<>(#{any(java.util.SortedMap)})", "java.util.TreeMap"),
+            new Mapping(MAPS, "newTreeMap", Shape.COMPARATOR, "new TreeMap<>(#{any(java.util.Comparator)})", "java.util.TreeMap"),
+            new Mapping(MAPS, "newConcurrentMap", Shape.NONE, "new ConcurrentHashMap<>()", "java.util.concurrent.ConcurrentHashMap"),
+            new Mapping(MAPS, "newIdentityHashMap", Shape.NONE, "new IdentityHashMap<>()", "java.util.IdentityHashMap"),
+
+            // List.of rejects null elements just like ImmutableList.of, but is only available from Java 9 on
+            new Mapping(IMMUTABLE_LIST, "of", Shape.ANY, "List.of(%s)", "java.util.List")
+    );
+
+    private static final Mapping NO_MAPPING = new Mapping("", "", Shape.ANY, "");
+
+    /**
+     * The mappings indexed by declaring type and method name, so that dispatching an invocation costs the same no
+     * matter how many mappings there are.
+     */
+    private static final Map<String, Map<String, List<Mapping>>> MAPPINGS_BY_TYPE_AND_NAME = new HashMap<>();
+
+    static {
+        for (Mapping mapping : MAPPINGS) {
+            MAPPINGS_BY_TYPE_AND_NAME.computeIfAbsent(mapping.getDeclaringType(), t -> new HashMap<>())
+                    .computeIfAbsent(mapping.getMethodName(), n -> new ArrayList<>())
+                    .add(mapping);
+        }
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Use Java collections instead of Guava collection factories";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Replaces the collection factory methods of Guava's `Lists`, `Sets` and `Maps`, as well as " +
+               "`ImmutableList.of(..)` on Java 9 or later, with the equivalent Java standard library constructors " +
+               "and factory methods.";
+    }
+
+    @Override
+    protected TreeVisitor<?, ExecutionContext> getSingleSourceApplicableTest() {
+        return MeteredVisitor.applicabilityTest(getName(), new JavaIsoVisitor<ExecutionContext>() {
+            @Override
+            public J.CompilationUnit visitCompilationUnit(J.CompilationUnit cu, ExecutionContext executionContext) {
+                return isApplicable(cu) ? cu.withMarkers(cu.getMarkers().searchResult()) : cu;
+            }
+        });
+    }
+
+    @Override
+    public boolean isApplicable(J.CompilationUnit cu) {
+        // A single pass over the methods the compilation unit uses, rather than one UsesMethod visitor per mapping
+        for (JavaType.Method usedMethod : cu.getTypesInUse().getUsedMethods()) {
+            Map<String, List<Mapping>> byName = usedMethod.getDeclaringType() == null ? null :
+                    MAPPINGS_BY_TYPE_AND_NAME.get(usedMethod.getDeclaringType().getFullyQualifiedName());
+            if (byName != null && byName.containsKey(usedMethod.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected TreeVisitor<?, ExecutionContext> getVisitor() {
+        Tally tally = new Tally();
+        return MeteredVisitor.visitor(getName(), factoryVisitor(tally), tally);
+    }
+
+    @Override
+    public FusibleJavaVisitor getFusibleVisitor() {
+        return factoryVisitor(new Tally());
+    }
+
+    private FusibleJavaVisitor factoryVisitor(Tally tally) {
+        return new FusibleJavaVisitor() {
+            /**
+             * The mapping each distinct method type resolved to, or {@link #NO_MAPPING}, so that the lookup by
+             * declaring type, name and parameter types happens once per method rather than once per invocation.
+             */
+            private final Map<JavaType.Method, Mapping> resolved = new IdentityHashMap<>();
+            private final Map<String, JavaTemplate> templates = new HashMap<>();
+            private int javaVersion = 8;
+
+            @Override
+            public Set<Class<? extends J>> getNodeTypes() {
+                return new HashSet<>(Arrays.asList(J.CompilationUnit.class, J.MethodInvocation.class));
+            }
+
+            @Override
+            public J preVisit(J tree, ExecutionContext executionContext) {
+                if (tree instanceof J.CompilationUnit) {
+                    javaVersion = tree.getMarkers().findFirst(JavaVersion.class)
+                            .map(JavaVersion::getMajorVersion)
+                            .orElse(8);
+                }
+                return tree;
+            }
+
+            @Override
+            public J postVisit(J tree, ExecutionContext executionContext) {
+                if (!(tree instanceof J.MethodInvocation) || ((J.MethodInvocation) tree).getMethodType() == null) {
+                    return tree;
+                }
+                J.MethodInvocation m = (J.MethodInvocation) tree;
+                tally.increment(Tally.Counter.METHOD_INVOCATIONS);
+
+                Mapping mapping = resolved.computeIfAbsent(m.getMethodType(), NoGuavaCollectionFactories::resolve);
+                if (mapping == NO_MAPPING || !isApplicable(mapping, m)) {
+                    return m;
+                }
+
+                List<Expression> arguments = m.getArguments().size() == 1 && m.getArguments().get(0) instanceof J.Empty ?
+                        Collections.emptyList() :
+                        m.getArguments();
+
+                maybeRemoveImport(mapping.getDeclaringType());
+                for (String anImport : mapping.getImports()) {
+                    maybeAddImport(anImport);
+                }
+                if (mapping.getConstructedType() != null) {
+                    J.NewClass newClass = DirectConstruction.newInstance(m, mapping.getConstructedType(),
+                            mapping.getParameterType());
+                    if (newClass != null) {
+                        return newClass;
+                    }
+                }
+
+                String code = mapping.getCode();
+                Object[] parameters = arguments.toArray();
+                if (mapping.getShape() == Shape.VARARGS || mapping.getShape() == Shape.ANY) {
+                    code = String.format(code, String.join(", ", Collections.nCopies(arguments.size(), "#{any()}")));
+                } else if (mapping.getShape() == Shape.EXPECTED_SIZE) {
+                    Expression expectedSize = arguments.get(0);
+                    if (expectedSize instanceof J.Literal && ((J.Literal) expectedSize).getValue() instanceof Integer) {
+                        code = String.format(code, hashCapacity((Integer) ((J.Literal) expectedSize).getValue()));
+                        parameters = new Object[0];
+                    } else {
+                        code = String.format(code, "(int) (#{any(int)} / 0.75f) + 1");
+                    }
+                }
+
+                String[] imports = mapping.getImports();
+                JavaTemplate template = templates.computeIfAbsent(code, c -> JavaTemplate.builder(this::getCursor, c)
+                        .imports(imports)
+                        .build());
+                tally.increment(Tally.Counter.TEMPLATE_APPLICATIONS);
+                return m.withTemplate(template, m.getCoordinates().replace(), parameters);
+            }
+
+            private boolean isApplicable(Mapping mapping, J.MethodInvocation method) {
+                switch (mapping.getShape()) {
+                    case COLLECTION:
+                        // Iterable overloads can only be replaced by a copy constructor when given a Collection. Given
+                        // a SortedSet, the TreeSet constructor keeps its comparator, whereas Guava uses natural order.
+                        JavaType argumentType = method.getArguments().get(0).getType();
+                        return TypeUtils.isAssignableTo("java.util.Collection", argumentType) &&
+                               !("newTreeSet".equals(mapping.getMethodName()) &&
+                                 TypeUtils.isAssignableTo("java.util.SortedSet", argumentType));
+                    case ANY:
+                        return javaVersion >= 9 && isAssignedToJavaCollectionType(getCursor());
+                    default:
+                        return true;
+                }
+            }
+        };
+    }
+
+    private static Mapping resolve(JavaType.Method methodType) {
+        if (methodType.getDeclaringType() == null) {
+            return NO_MAPPING;
+        }
+
+        Map<String, List<Mapping>> byName = MAPPINGS_BY_TYPE_AND_NAME.get(methodType.getDeclaringType().getFullyQualifiedName());
+        List<Mapping> candidates = byName == null ? null : byName.get(methodType.getName());
+        if (candidates != null) {
+            for (Mapping candidate : candidates) {
+                if (candidate.getShape().matches(methodType.getParameterTypes())) {
+                    return candidate;
+                }
+            }
+        }
+        return NO_MAPPING;
+    }
+
+    /**
+     * Only replace an immutable list when it is assigned to a variable of a JDK collection type, since the JDK
+     * replacement is not an {@code ImmutableList}.
+     */
+    private static boolean isAssignedToJavaCollectionType(Cursor cursor) {
+        Object parent = cursor.dropParentUntil(J.class::isInstance).getValue();
+        if (parent instanceof J.VariableDeclarations.NamedVariable) {
+            JavaType variableType = ((J.VariableDeclarations.NamedVariable) parent).getType();
+            return TypeUtils.isOfClassType(variableType, "java.util.List") ||
+                   TypeUtils.isOfClassType(variableType, "java.util.Collection") ||
+                   TypeUtils.isOfClassType(variableType, "java.lang.Iterable");
+        }
+        return false;
+    }
+
+    /**
+     * @return The initial capacity at which a hash based collection holds {@code expectedSize} elements without
+     * resizing at the default load factor, as computed by Guava.
+     */
+    private static int hashCapacity(int expectedSize) {
+        if (expectedSize < 3) {
+            return expectedSize + 1;
+        }
+        return (int) ((float) expectedSize / 0.75f + 1.0f);
+    }
+
+    private enum Shape {
+        NONE,
+        INT,
+        EXPECTED_SIZE,
+        COLLECTION,
+        MAP,
+        COMPARATOR,
+        VARARGS,
+        ANY;
+
+        boolean matches(List<JavaType> parameterTypes) {
+            if (this == ANY) {
+                return true;
+            } else if (this == NONE) {
+                return parameterTypes.isEmpty();
+            } else if (parameterTypes.size() != 1) {
+                return false;
+            }
+
+            JavaType parameterType = parameterTypes.get(0);
+            switch (this) {
+                case INT:
+                case EXPECTED_SIZE:
+                    return parameterType == JavaType.Primitive.Int;
+                case COLLECTION:
+                    return TypeUtils.isOfClassType(parameterType, "java.lang.Iterable") ||
+                           TypeUtils.isOfClassType(parameterType, "java.util.Collection");
+                case MAP:
+                    return TypeUtils.isOfClassType(parameterType, "java.util.Map") ||
+                           TypeUtils.isOfClassType(parameterType, "java.util.SortedMap");
+                case COMPARATOR:
+                    return TypeUtils.isOfClassType(parameterType, "java.util.Comparator");
+                case VARARGS:
+                    return parameterType instanceof JavaType.Array;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    @Value
+    private static class Mapping {
+        private static final Pattern CONSTRUCTOR = Pattern.compile("new \\w+<>\\((?:#\\{any\\(([\\w.]+)\\)})?\\)");
+
+        String declaringType;
+        String methodName;
+        Shape shape;
+
+        /**
+         * The replacement as a {@link JavaTemplate}, where {@code %s} stands for the arguments of a variable arity
+         * invocation or the computed capacity of an expected size.
+         */
+        String code;
+
+        String[] imports;
+
+        /**
+         * The class whose constructor the replacement calls with the invocation's own arguments, which is then built
+         * with {@link DirectConstruction} rather than the template, or {@code null} for other replacements.
+         */
+        @Nullable
+        String constructedType;
+
+        /**
+         * The parameter type of that constructor, or {@code null} for the no-argument constructor.
+         */
+        @Nullable
+        String parameterType;
+
+        Mapping(String declaringType, String methodName, Shape shape, String code, String... imports) {
+            this.declaringType = declaringType;
+            this.methodName = methodName;
+            this.shape = shape;
+            this.code = code;
+            this.imports = imports;
+
+            Matcher constructor = CONSTRUCTOR.matcher(code);
+            this.constructedType = constructor.matches() ? imports[0] : null;
+            this.parameterType = constructedType == null ? null : constructor.group(1);
+        }
+    }
+}
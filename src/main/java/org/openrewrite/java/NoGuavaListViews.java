@@ -0,0 +1,502 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import lombok.EqualsAndHashCode;
+import lombok.Value;
+import org.openrewrite.Cursor;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.Recipe;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.metrics.MeteredVisitor;
+import org.openrewrite.java.metrics.Tally;
+import org.openrewrite.java.search.UsesMethod;
+import org.openrewrite.java.table.GuavaListViews;
+import org.openrewrite.java.tree.Expression;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.Statement;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Value
+@EqualsAndHashCode(callSuper = true)
+public class NoGuavaListViews extends Recipe {
+    private static final MethodMatcher TRANSFORM = new MethodMatcher("com.google.common.collect.Lists transform(java.util.List, com.google.common.base.Function)");
+    private static final MethodMatcher REVERSE = new MethodMatcher("com.google.common.collect.Lists reverse(java.util.List)");
+    private static final MethodMatcher PARTITION = new MethodMatcher("com.google.common.collect.Lists partition(java.util.List, int)");
+
+    private static final Set<String> RANDOM_ACCESS_METHODS = new HashSet<>(Arrays.asList(
+            "get", "indexOf", "lastIndexOf", "subList", "listIterator", "contains", "containsAll"));
+    private static final Set<String> ITERATION_METHODS = new HashSet<>(Arrays.asList(
+            "forEach", "stream", "parallelStream", "iterator", "spliterator", "toArray"));
+    private static final Set<String> CONSTANT_TIME_METHODS = new HashSet<>(Arrays.asList("size", "isEmpty"));
+    private static final Set<String> MUTATING_METHODS = new HashSet<>(Arrays.asList(
+            "add", "addAll", "set", "remove", "removeAll", "removeIf", "retainAll", "replaceAll", "sort", "clear"));
+
+    /**
+     * The methods of a list that neither modify it nor hand out an iterator or view through which it could be.
+     */
+    private static final Set<String> READ_ONLY_METHODS = new HashSet<>(Arrays.asList(
+            "get", "indexOf", "lastIndexOf", "contains", "containsAll", "size", "isEmpty", "forEach", "stream",
+            "parallelStream", "toArray", "equals", "hashCode", "toString"));
+
+    private static final String RECORDED_VIEWS = NoGuavaListViews.class.getName() + ".RECORDED_VIEWS";
+
+    transient GuavaListViews listViews = new GuavaListViews(this);
+
+    @Override
+    public String getDisplayName() {
+        return "Migrate Guava's lazy list views by how they are used";
+    }
+
+    @Override
+    public String getDescription() {
+        return "`Lists.transform`, `Lists.reverse` and `Lists.partition` return views that recompute their elements " +
+               "on every access. A `transform` that is consumed once through `forEach` or `stream()` becomes a JDK " +
+               "stream pipeline. A view held in a local variable that is randomly accessed or iterated more than once " +
+               "is materialized into a list once, provided its backing list is a local variable holding a new list " +
+               "that is neither passed on nor modified after the view is created. The function of a materialized " +
+               "`transform` runs once for each element where the view is created, rather than on every access, so " +
+               "a function with side effects runs at other times and a different number of times than before. " +
+               "Every view found is reported once along with its access pattern.";
+    }
+
+    @Override
+    protected TreeVisitor<?, ExecutionContext> getSingleSourceApplicableTest() {
+        return MeteredVisitor.applicabilityTest(getName(), new JavaIsoVisitor<ExecutionContext>() {
+            @Override
+            public J.CompilationUnit visitCompilationUnit(J.CompilationUnit cu, ExecutionContext executionContext) {
+                doAfterVisit(new UsesMethod<>(TRANSFORM));
+                doAfterVisit(new UsesMethod<>(REVERSE));
+                doAfterVisit(new UsesMethod<>(PARTITION));
+                return cu;
+            }
+        });
+    }
+
+    @Override
+    protected TreeVisitor<?, ExecutionContext> getVisitor() {
+        Tally tally = new Tally();
+        return MeteredVisitor.visitor(getName(), new JavaVisitor<ExecutionContext>() {
+            private final JavaTemplate stream = JavaTemplate.builder(this::getCursor,
+                            "#{any(java.util.List)}.stream().map(#{any(java.util.function.Function)})")
+                    .build();
+
+            private final JavaTemplate streamForEach = JavaTemplate.builder(this::getCursor,
+                            "#{any(java.util.List)}.stream().map(#{any(java.util.function.Function)}).forEach(#{any(java.util.function.Consumer)})")
+                    .build();
+
+            private final JavaTemplate collectTransformed = JavaTemplate.builder(this::getCursor,
+                            "#{any(java.util.List)}.stream().map(#{any(java.util.function.Function)}).collect(Collectors.toList())")
+                    .imports("java.util.stream.Collectors")
+                    .build();
+
+            private final JavaTemplate copy = JavaTemplate.builder(this::getCursor, "new ArrayList<>(#{any(java.util.List)})")
+                    .imports("java.util.ArrayList")
+                    .build();
+
+            @Override
+            public J visitMethodInvocation(J.MethodInvocation method, ExecutionContext executionContext) {
+                tally.increment(Tally.Counter.METHOD_INVOCATIONS);
+                J j = super.visitMethodInvocation(method, executionContext);
+                if (!(j instanceof J.MethodInvocation)) {
+                    return j;
+                }
+                J.MethodInvocation m = (J.MethodInvocation) j;
+
+                if (m.getSelect() instanceof J.MethodInvocation && TRANSFORM.matches(m.getSelect()) &&
+                    isStreamOrForEach(m)) {
+                    J.MethodInvocation transform = (J.MethodInvocation) m.getSelect();
+                    record(executionContext, transform, "transform", AccessPattern.SINGLE_PASS, Migration.STREAM);
+                    maybeRemoveImport("com.google.common.collect.Lists");
+                    tally.increment(Tally.Counter.TEMPLATE_APPLICATIONS);
+                    return "stream".equals(m.getSimpleName()) ?
+                            m.withTemplate(stream, m.getCoordinates().replace(),
+                                    transform.getArguments().get(0), transform.getArguments().get(1)) :
+                            m.withTemplate(streamForEach, m.getCoordinates().replace(),
+                                    transform.getArguments().get(0), transform.getArguments().get(1), m.getArguments().get(0));
+                }
+
+                String viewMethod = TRANSFORM.matches(m) ? "transform" :
+                        REVERSE.matches(m) ? "reverse" :
+                                PARTITION.matches(m) ? "partition" : null;
+                if (viewMethod == null) {
+                    return m;
+                }
+
+                Object parent = getCursor().dropParentUntil(J.class::isInstance).getValue();
+                if (parent instanceof J.MethodInvocation && ((J.MethodInvocation) parent).getSelect() == method &&
+                    "transform".equals(viewMethod) && isStreamOrForEach((J.MethodInvocation) parent)) {
+                    // migrated to a stream pipeline when visiting the enclosing invocation
+                    return m;
+                }
+
+                AccessPattern accessPattern = accessPattern(method, parent);
+                if ((accessPattern == AccessPattern.RANDOM_ACCESS || accessPattern == AccessPattern.REPEATED_ITERATION) &&
+                    backingListIsUnmodified(method)) {
+                    record(executionContext, m, viewMethod, accessPattern, Migration.MATERIALIZED);
+                    tally.increment(Tally.Counter.TEMPLATE_APPLICATIONS);
+                    if ("transform".equals(viewMethod)) {
+                        maybeRemoveImport("com.google.common.collect.Lists");
+                        maybeAddImport("java.util.stream.Collectors");
+                        return m.withTemplate(collectTransformed, m.getCoordinates().replace(),
+                                m.getArguments().get(0), m.getArguments().get(1));
+                    }
+                    maybeAddImport("java.util.ArrayList");
+                    J copied = m.withTemplate(copy, m.getCoordinates().replace(), m);
+                    if (copied instanceof J.NewClass && copied != m) {
+                        // the view is still there as the argument of the copy, and already reported
+                        recorded(executionContext).add(((J.NewClass) copied).getArguments().get(0).getId());
+                    }
+                    return copied;
+                }
+
+                record(executionContext, m, viewMethod, accessPattern, Migration.UNCHANGED);
+                return m;
+            }
+
+            private AccessPattern accessPattern(J.MethodInvocation view, Object parent) {
+                if (parent instanceof J.ForEachLoop.Control) {
+                    // the iterable of a for-each loop is evaluated once per execution of the loop, creating a new view
+                    // each time, however deeply the loop is nested in others
+                    return AccessPattern.SINGLE_PASS;
+                } else if (!(parent instanceof J.VariableDeclarations.NamedVariable) ||
+                           ((J.VariableDeclarations.NamedVariable) parent).getInitializer() != view) {
+                    return AccessPattern.ESCAPES;
+                }
+
+                J.VariableDeclarations.NamedVariable variable = (J.VariableDeclarations.NamedVariable) parent;
+                Cursor declarations = getCursor().dropParentUntil(J.VariableDeclarations.class::isInstance);
+                Object block = declarations.dropParentUntil(J.class::isInstance).getValue();
+                if (!(block instanceof J.Block)) {
+                    // fields and other declarations may be used from anywhere
+                    return AccessPattern.ESCAPES;
+                }
+
+                Usages usages = new Usages(variable.getSimpleName());
+                boolean afterDeclaration = false;
+                for (Statement statement : ((J.Block) block).getStatements()) {
+                    if (afterDeclaration) {
+                        new UsageScanner().visit(statement, usages);
+                    } else {
+                        afterDeclaration = statement == declarations.getValue();
+                    }
+                }
+                return usages.accessPattern();
+            }
+
+            /**
+             * A copy of a view only has the same elements as the view while its backing list is unchanged, which is
+             * only known for a local variable initialized with a new list, which is not passed on from the block
+             * declaring it and not modified after the view is created.
+             */
+            private boolean backingListIsUnmodified(J.MethodInvocation view) {
+                Expression backingList = view.getArguments().get(0);
+                if (!(backingList instanceof J.Identifier)) {
+                    return false;
+                }
+
+                J.Block block = declaringBlock(((J.Identifier) backingList).getSimpleName());
+                if (block == null) {
+                    return false;
+                }
+                BackingListUsages usages = new BackingListUsages((J.Identifier) backingList);
+                new BackingListScanner().visit(block, usages);
+                return usages.viewCreated && !usages.modified;
+            }
+
+            /**
+             * @return The block declaring the local variable, or {@code null} if the name refers to a parameter or
+             * field, or to a local variable that is not initialized with a new list.
+             */
+            @Nullable
+            private J.Block declaringBlock(String name) {
+                for (Cursor c = getCursor(); c != null; c = c.getParent()) {
+                    Object value = c.getValue();
+                    if (value instanceof J.MethodDeclaration || value instanceof J.Lambda ||
+                        value instanceof J.ClassDeclaration || value instanceof J.NewClass) {
+                        return null;
+                    } else if (!(value instanceof J.Block)) {
+                        continue;
+                    }
+
+                    for (Statement statement : ((J.Block) value).getStatements()) {
+                        if (!(statement instanceof J.VariableDeclarations)) {
+                            continue;
+                        }
+                        for (J.VariableDeclarations.NamedVariable variable : ((J.VariableDeclarations) statement).getVariables()) {
+                            if (variable.getSimpleName().equals(name)) {
+                                Expression initializer = variable.getInitializer();
+                                return initializer instanceof J.NewClass && ((J.NewClass) initializer).getBody() == null ?
+                                        (J.Block) value : null;
+                            }
+                        }
+                    }
+                }
+                return null;
+            }
+
+            /**
+             * Views are reported once, by the cycle that first finds them, as later cycles find the same views again
+             * or, for a copied view, find it as the argument of the copy.
+             */
+            private void record(ExecutionContext ctx, J.MethodInvocation view, String viewMethod,
+                                AccessPattern accessPattern, Migration migration) {
+                if (!recorded(ctx).add(view.getId())) {
+                    return;
+                }
+                J.MethodDeclaration enclosingMethod = getCursor().firstEnclosing(J.MethodDeclaration.class);
+                listViews.insertRow(ctx, new GuavaListViews.Row(
+                        getCursor().firstEnclosingOrThrow(J.CompilationUnit.class).getSourcePath().toString(),
+                        enclosingMethod == null ? "" : enclosingMethod.getSimpleName(),
+                        viewMethod,
+                        accessPattern.name(),
+                        migration.name()
+                ));
+            }
+        }, tally);
+    }
+
+    private static Set<UUID> recorded(ExecutionContext ctx) {
+        return ctx.computeMessageIfAbsent(RECORDED_VIEWS, k -> ConcurrentHashMap.newKeySet());
+    }
+
+    private static boolean isStreamOrForEach(J.MethodInvocation method) {
+        return "stream".equals(method.getSimpleName()) && method.getArguments().get(0) instanceof J.Empty ||
+               "forEach".equals(method.getSimpleName()) && method.getArguments().size() == 1;
+    }
+
+    enum AccessPattern {
+        SINGLE_PASS,
+        REPEATED_ITERATION,
+        RANDOM_ACCESS,
+        ESCAPES,
+        UNUSED
+    }
+
+    enum Migration {
+        STREAM,
+        MATERIALIZED,
+        UNCHANGED
+    }
+
+    private static class BackingListUsages {
+        private final J.Identifier viewArgument;
+        private boolean viewCreated;
+        private boolean modified;
+
+        private BackingListUsages(J.Identifier viewArgument) {
+            this.viewArgument = viewArgument;
+        }
+    }
+
+    /**
+     * Looks for references to the backing list of a view through which it may be modified after the view is created.
+     */
+    private static class BackingListScanner extends JavaIsoVisitor<BackingListUsages> {
+        /**
+         * The depth of lambdas and classes, whose code may run after the view is created wherever it appears.
+         */
+        private int deferredDepth;
+
+        @Override
+        public J.Identifier visitIdentifier(J.Identifier identifier, BackingListUsages usages) {
+            if (identifier == usages.viewArgument) {
+                usages.viewCreated = true;
+                return identifier;
+            } else if (!identifier.getSimpleName().equals(usages.viewArgument.getSimpleName())) {
+                return identifier;
+            }
+
+            Object parent = getCursor().dropParentUntil(J.class::isInstance).getValue();
+            if (parent instanceof J.MethodInvocation) {
+                J.MethodInvocation method = (J.MethodInvocation) parent;
+                if (method.getName() == identifier) {
+                    return identifier;
+                } else if (method.getSelect() == identifier) {
+                    if (MUTATING_METHODS.contains(method.getSimpleName())) {
+                        usages.modified |= usages.viewCreated || deferredDepth > 0;
+                    } else if (!READ_ONLY_METHODS.contains(method.getSimpleName())) {
+                        // may hand out an iterator or view, e.g. subList, through which the list is modified later
+                        usages.modified = true;
+                    }
+                    return identifier;
+                }
+            } else if (parent instanceof J.FieldAccess && ((J.FieldAccess) parent).getName() == identifier ||
+                       parent instanceof J.VariableDeclarations.NamedVariable &&
+                       ((J.VariableDeclarations.NamedVariable) parent).getName() == identifier ||
+                       parent instanceof J.ForEachLoop.Control &&
+                       ((J.ForEachLoop.Control) parent).getIterable() == identifier) {
+                return identifier;
+            }
+
+            // passed as an argument, returned, captured, aliased or reassigned
+            usages.modified = true;
+            return identifier;
+        }
+
+        @Override
+        public J.Lambda visitLambda(J.Lambda lambda, BackingListUsages usages) {
+            deferredDepth++;
+            try {
+                return super.visitLambda(lambda, usages);
+            } finally {
+                deferredDepth--;
+            }
+        }
+
+        @Override
+        public J.ClassDeclaration visitClassDeclaration(J.ClassDeclaration classDecl, BackingListUsages usages) {
+            deferredDepth++;
+            try {
+                return super.visitClassDeclaration(classDecl, usages);
+            } finally {
+                deferredDepth--;
+            }
+        }
+
+        @Override
+        public J.NewClass visitNewClass(J.NewClass newClass, BackingListUsages usages) {
+            deferredDepth += newClass.getBody() == null ? 0 : 1;
+            try {
+                return super.visitNewClass(newClass, usages);
+            } finally {
+                deferredDepth -= newClass.getBody() == null ? 0 : 1;
+            }
+        }
+    }
+
+    private static class Usages {
+        private final String name;
+        private int iterations;
+        private boolean randomAccess;
+        private boolean repeated;
+        private boolean escapes;
+        private boolean mutated;
+
+        private Usages(String name) {
+            this.name = name;
+        }
+
+        AccessPattern accessPattern() {
+            if (escapes || mutated) {
+                return AccessPattern.ESCAPES;
+            } else if (randomAccess) {
+                return AccessPattern.RANDOM_ACCESS;
+            } else if (repeated || iterations > 1) {
+                return AccessPattern.REPEATED_ITERATION;
+            }
+            return iterations == 0 ? AccessPattern.UNUSED : AccessPattern.SINGLE_PASS;
+        }
+    }
+
+    /**
+     * Classifies each reference to a local variable by the construct it appears in.
+     */
+    private static class UsageScanner extends JavaIsoVisitor<Usages> {
+        private int loopDepth;
+
+        @Override
+        public J.Identifier visitIdentifier(J.Identifier identifier, Usages usages) {
+            if (!identifier.getSimpleName().equals(usages.name)) {
+                return identifier;
+            }
+
+            Object parent = getCursor().dropParentUntil(J.class::isInstance).getValue();
+            if (parent instanceof J.MethodInvocation && ((J.MethodInvocation) parent).getSelect() == identifier) {
+                String methodName = ((J.MethodInvocation) parent).getSimpleName();
+                if (RANDOM_ACCESS_METHODS.contains(methodName)) {
+                    usages.randomAccess = true;
+                } else if (ITERATION_METHODS.contains(methodName)) {
+                    usages.iterations++;
+                    usages.repeated |= loopDepth > 0;
+                } else if (!CONSTANT_TIME_METHODS.contains(methodName)) {
+                    usages.mutated |= MUTATING_METHODS.contains(methodName);
+                    usages.escapes = true;
+                }
+            } else if (parent instanceof J.ForEachLoop.Control &&
+                       ((J.ForEachLoop.Control) parent).getIterable() == identifier) {
+                usages.iterations++;
+                usages.repeated |= loopDepth > 0;
+            } else if (parent instanceof J.Assignment && ((J.Assignment) parent).getVariable() == identifier) {
+                usages.mutated = true;
+                usages.escapes = true;
+            } else {
+                // passed as an argument, returned, captured or aliased
+                usages.escapes = true;
+            }
+            return identifier;
+        }
+
+        @Override
+        public J.ForLoop visitForLoop(J.ForLoop forLoop, Usages usages) {
+            loopDepth++;
+            try {
+                return super.visitForLoop(forLoop, usages);
+            } finally {
+                loopDepth--;
+            }
+        }
+
+        @Override
+        public J.ForEachLoop visitForEachLoop(J.ForEachLoop forLoop, Usages usages) {
+            visit(forLoop.getControl(), usages);
+            loopDepth++;
+            try {
+                visit(forLoop.getBody(), usages);
+            } finally {
+                loopDepth--;
+            }
+            return forLoop;
+        }
+
+        @Override
+        public J.WhileLoop visitWhileLoop(J.WhileLoop whileLoop, Usages usages) {
+            loopDepth++;
+            try {
+                return super.visitWhileLoop(whileLoop, usages);
+            } finally {
+                loopDepth--;
+            }
+        }
+
+        @Override
+        public J.DoWhileLoop visitDoWhileLoop(J.DoWhileLoop doWhileLoop, Usages usages) {
+            loopDepth++;
+            try {
+                return super.visitDoWhileLoop(doWhileLoop, usages);
+            } finally {
+                loopDepth--;
+            }
+        }
+
+        @Override
+        public J.Lambda visitLambda(J.Lambda lambda, Usages usages) {
+            // a lambda may be invoked any number of times
+            loopDepth++;
+            try {
+                return super.visitLambda(lambda, usages);
+            } finally {
+                loopDepth--;
+            }
+        }
+    }
+}
@@ -20,16 +20,26 @@ import lombok.Value;
 import org.openrewrite.ExecutionContext;
 import org.openrewrite.Recipe;
 import org.openrewrite.TreeVisitor;
+import org.openrewrite.internal.lang.Nullable;
 import org.openrewrite.java.JavaIsoVisitor;
 import org.openrewrite.java.JavaTemplate;
-import org.openrewrite.java.JavaVisitor;
 import org.openrewrite.java.MethodMatcher;
-import org.openrewrite.java.search.UsesMethod;
+import org.openrewrite.java.metrics.MeteredVisitor;
+import org.openrewrite.java.metrics.Tally;
 import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.JavaType;
+import org.openrewrite.java.tree.TypeUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singleton;
 
 @Value
 @EqualsAndHashCode(callSuper = true)
-public class NoGuavaListsNewArrayList extends Recipe {
+public class NoGuavaListsNewArrayList extends Recipe implements FusibleRecipe {
     private static final MethodMatcher NEW_ARRAY_LIST = new MethodMatcher("com.google.common.collect.Lists newArrayList()");
     private static final MethodMatcher NEW_ARRAY_LIST_ITERABLE = new MethodMatcher("com.google.common.collect.Lists newArrayList(java.lang.Iterable)");
     private static final MethodMatcher NEW_ARRAY_LIST_CAPACITY = new MethodMatcher("com.google.common.collect.Lists newArrayListWithCapacity(int)");
@@ -48,52 +58,149 @@ public class NoGuavaListsNewArrayList extends Recipe {
     protected TreeVisitor<?, ExecutionContext> getSingleSourceApplicableTest() {
         // Any change to the AST made by the applicability test will lead to the visitor returned by Recipe.getVisitor() being applied
         // No changes made by the applicability test will be kept
-        return new JavaIsoVisitor<ExecutionContext>() {
+        return MeteredVisitor.applicabilityTest(getName(), new JavaIsoVisitor<ExecutionContext>() {
             @Override
             public J.CompilationUnit visitCompilationUnit(J.CompilationUnit cu, ExecutionContext executionContext) {
-                doAfterVisit(new UsesMethod<>(NEW_ARRAY_LIST));
-                doAfterVisit(new UsesMethod<>(NEW_ARRAY_LIST_ITERABLE));
-                doAfterVisit(new UsesMethod<>(NEW_ARRAY_LIST_CAPACITY));
-                return cu;
+                return isApplicable(cu) ? cu.withMarkers(cu.getMarkers().searchResult()) : cu;
             }
-        };
+        });
     }
 
     @Override
-    protected TreeVisitor<?, ExecutionContext> getVisitor() {
-        // To avoid stale state persisting between cycles, getVisitor() should always return a new instance of its visitor
-        return new JavaVisitor<ExecutionContext>() {
-            private final JavaTemplate newArrayList = JavaTemplate.builder(this::getCursor, "new ArrayList<>()")
-                    .imports("java.util.ArrayList")
-                    .build();
+    public boolean isApplicable(J.CompilationUnit cu) {
+        for (JavaType.Method usedMethod : cu.getTypesInUse().getUsedMethods()) {
+            if (NEW_ARRAY_LIST.matches(usedMethod) || NEW_ARRAY_LIST_ITERABLE.matches(usedMethod) ||
+                NEW_ARRAY_LIST_CAPACITY.matches(usedMethod)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-            private final JavaTemplate newArrayListIterable = JavaTemplate.builder(this::getCursor, "new ArrayList<>(#{any(java.lang.Iterable)})")
-                    .imports("java.util.ArrayList")
-                    .build();
+    /**
+     * @return Whether the invocation is one this recipe replaces with {@code new ArrayList<>(..)}.
+     */
+    static boolean isReplaceable(J.MethodInvocation method) {
+        return NEW_ARRAY_LIST.matches(method) ||
+               // ArrayList has no constructor accepting a plain Iterable, so those calls are left to Guava
+               NEW_ARRAY_LIST_ITERABLE.matches(method) &&
+               TypeUtils.isAssignableTo("java.util.Collection", method.getArguments().get(0).getType()) ||
+               NEW_ARRAY_LIST_CAPACITY.matches(method);
+    }
 
-            private final JavaTemplate newArrayListCapacity = JavaTemplate.builder(this::getCursor, "new ArrayList<>(#{any(int)})")
-                    .imports("java.util.ArrayList")
-                    .build();
+    /**
+     * @return The invocations in the source file that this recipe would replace, found without building any
+     * replacement.
+     */
+    List<J.MethodInvocation> findReplaceableInvocations(J.CompilationUnit cu) {
+        if (!isApplicable(cu)) {
+            return emptyList();
+        }
 
+        List<J.MethodInvocation> invocations = new ArrayList<>();
+        new JavaIsoVisitor<List<J.MethodInvocation>>() {
             @Override
-            public J visitMethodInvocation(J.MethodInvocation method, ExecutionContext executionContext) {
-                if (NEW_ARRAY_LIST.matches(method)) {
-                    maybeRemoveImport("com.google.common.collect.Lists");
-                    maybeAddImport("java.util.ArrayList");
-                    return method.withTemplate(newArrayList, method.getCoordinates().replace());
-                } else if (NEW_ARRAY_LIST_ITERABLE.matches(method)) {
-                    maybeRemoveImport("com.google.common.collect.Lists");
-                    maybeAddImport("java.util.ArrayList");
-                    return method.withTemplate(newArrayListIterable, method.getCoordinates().replace(),
-                            method.getArguments().get(0));
-                } else if (NEW_ARRAY_LIST_CAPACITY.matches(method)) {
-                    maybeRemoveImport("com.google.common.collect.Lists");
-                    maybeAddImport("java.util.ArrayList");
-                    return method.withTemplate(newArrayListCapacity, method.getCoordinates().replace(),
-                            method.getArguments().get(0));
+            public J.MethodInvocation visitMethodInvocation(J.MethodInvocation method, List<J.MethodInvocation> found) {
+                if (isReplaceable(method)) {
+                    found.add(method);
                 }
-                return super.visitMethodInvocation(method, executionContext);
+                return super.visitMethodInvocation(method, found);
+            }
+        }.visit(cu, invocations);
+        return invocations;
+    }
+
+    @Override
+    protected TreeVisitor<?, ExecutionContext> getVisitor() {
+        NewArrayListVisitor visitor = new NewArrayListVisitor(true);
+        return MeteredVisitor.visitor(getName(), visitor, visitor.tally);
+    }
+
+    @Override
+    public FusibleJavaVisitor getFusibleVisitor() {
+        return new NewArrayListVisitor(true);
+    }
+
+    /**
+     * Replaces the matched factory methods with {@code new ArrayList<>(..)}. The replacement is built directly from the
+     * type attribution of the matched invocation, reusing its argument trees, and {@link JavaTemplate} is only used
+     * for invocations whose types are insufficient to do so.
+     */
+    static class NewArrayListVisitor extends FusibleJavaVisitor {
+        private final boolean directConstruction;
+        private final Tally tally = new Tally();
+
+        private final JavaTemplate newArrayList = JavaTemplate.builder(this::getCursor, "new ArrayList<>()")
+                .imports("java.util.ArrayList")
+                .build();
+
+        private final JavaTemplate newArrayListIterable = JavaTemplate.builder(this::getCursor, "new ArrayList<>(#{any(java.util.Collection)})")
+                .imports("java.util.ArrayList")
+                .build();
+
+        private final JavaTemplate newArrayListCapacity = JavaTemplate.builder(this::getCursor, "new ArrayList<>(#{any(int)})")
+                .imports("java.util.ArrayList")
+                .build();
+
+        /**
+         * @param directConstruction Whether to build replacements directly where possible. When {@code false}, every
+         *                           replacement goes through {@link JavaTemplate}, which is only useful for comparison.
+         */
+        NewArrayListVisitor(boolean directConstruction) {
+            this.directConstruction = directConstruction;
+        }
+
+        @Override
+        public Set<Class<? extends J>> getNodeTypes() {
+            return singleton(J.MethodInvocation.class);
+        }
+
+        @Override
+        public J postVisit(J tree, ExecutionContext executionContext) {
+            if (!(tree instanceof J.MethodInvocation)) {
+                return tree;
+            }
+
+            J.MethodInvocation method = (J.MethodInvocation) tree;
+            tally.increment(Tally.Counter.METHOD_INVOCATIONS);
+            if (!isReplaceable(method)) {
+                return method;
+            }
+
+            maybeRemoveImport("com.google.common.collect.Lists");
+            maybeAddImport("java.util.ArrayList");
+            if (NEW_ARRAY_LIST.matches(method)) {
+                J.NewClass newClass = newArrayList(method, null);
+                return newClass != null ? newClass : applyTemplate(method, newArrayList);
+            } else if (NEW_ARRAY_LIST_ITERABLE.matches(method)) {
+                J.NewClass newClass = newArrayList(method, method.getArguments().get(0).getType());
+                return newClass != null ? newClass :
+                        applyTemplate(method, newArrayListIterable, method.getArguments().get(0));
+            } else {
+                J.NewClass newClass = newArrayList(method, method.getArguments().get(0).getType());
+                return newClass != null ? newClass :
+                        applyTemplate(method, newArrayListCapacity, method.getArguments().get(0));
+            }
+        }
+
+        private J applyTemplate(J.MethodInvocation method, JavaTemplate template, Object... parameters) {
+            tally.increment(Tally.Counter.TEMPLATE_APPLICATIONS);
+            return method.withTemplate(template, method.getCoordinates().replace(), parameters);
+        }
+
+        /**
+         * @param method       The invocation to replace, whose arguments are moved to the constructor call as they are.
+         * @param argumentType The type of the single argument, or {@code null} for the no-argument constructor.
+         * @return {@code new ArrayList<>(..)} attributed with the {@code ArrayList} constructor that accepts
+         * {@code argumentType}, or {@code null} if the invocation's type does not provide such a constructor.
+         */
+        @Nullable
+        private J.NewClass newArrayList(J.MethodInvocation method, @Nullable JavaType argumentType) {
+            if (!directConstruction) {
+                return null;
             }
-        };
+            return DirectConstruction.newInstance(method, "java.util.ArrayList", argumentType == null ? null :
+                    argumentType == JavaType.Primitive.Int ? "int" : "java.util.Collection");
+        }
     }
 }
@@ -0,0 +1,411 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import lombok.EqualsAndHashCode;
+import lombok.Value;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.Recipe;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.internal.ListUtils;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.metrics.MeteredVisitor;
+import org.openrewrite.java.metrics.Tally;
+import org.openrewrite.java.search.UsesMethod;
+import org.openrewrite.java.tree.Expression;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.JavaType;
+import org.openrewrite.java.tree.NameTree;
+import org.openrewrite.java.tree.Statement;
+import org.openrewrite.java.tree.TypeTree;
+import org.openrewrite.java.tree.TypeUtils;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Value
+@EqualsAndHashCode(callSuper = true)
+public class NoGuavaListsNewLinkedList extends Recipe {
+    private static final MethodMatcher NEW_LINKED_LIST = new MethodMatcher("com.google.common.collect.Lists newLinkedList()");
+    private static final MethodMatcher NEW_LINKED_LIST_ITERABLE = new MethodMatcher("com.google.common.collect.Lists newLinkedList(java.lang.Iterable)");
+
+    private static final String REPLACEMENTS = "LINKED_LIST_REPLACEMENTS";
+
+    private static final Set<String> COLLECTION_METHODS = new HashSet<>(Arrays.asList(
+            "add", "addAll", "contains", "containsAll", "isEmpty", "size", "forEach", "stream", "parallelStream",
+            "toArray", "clear", "remove", "removeAll", "removeIf", "retainAll", "toString"));
+    private static final Set<String> LIST_METHODS = new HashSet<>(Arrays.asList(
+            "get", "set", "indexOf", "lastIndexOf", "sort", "replaceAll"));
+    private static final Set<String> DEQUE_METHODS = new HashSet<>(Arrays.asList(
+            "offer", "offerFirst", "offerLast", "poll", "pollFirst", "pollLast", "peek", "peekFirst", "peekLast",
+            "push", "pop", "addFirst", "addLast", "removeFirst", "removeLast", "getFirst", "getLast", "element",
+            "descendingIterator", "removeFirstOccurrence", "removeLastOccurrence"));
+    private static final Set<String> INSERTION_METHODS = new HashSet<>(Arrays.asList(
+            "add", "offer", "offerFirst", "offerLast", "push", "addFirst", "addLast"));
+
+    @Override
+    public String getDisplayName() {
+        return "Replace `Lists.newLinkedList()` by how the list is used";
+    }
+
+    @Override
+    public String getDescription() {
+        return "A `LinkedList` that is only appended to and iterated, or only used as a queue, spends far more memory " +
+               "per element than an `ArrayList` or `ArrayDeque` and has poor locality. When the result of " +
+               "`Lists.newLinkedList()` is held in a local variable or private field, its uses decide the " +
+               "replacement: `ArrayList` when it is used as a list or collection only, `ArrayDeque` when it is used " +
+               "as a queue or deque only and can never hold `null`. It stays a `LinkedList` when it is removed from " +
+               "or inserted into by index, iterated with an iterator that could remove, holds elements that may be " +
+               "`null` or escapes. A declared `LinkedList` type of such a variable is changed to match.";
+    }
+
+    @Override
+    protected TreeVisitor<?, ExecutionContext> getSingleSourceApplicableTest() {
+        return MeteredVisitor.applicabilityTest(getName(), new JavaIsoVisitor<ExecutionContext>() {
+            @Override
+            public J.CompilationUnit visitCompilationUnit(J.CompilationUnit cu, ExecutionContext executionContext) {
+                doAfterVisit(new UsesMethod<>(NEW_LINKED_LIST));
+                doAfterVisit(new UsesMethod<>(NEW_LINKED_LIST_ITERABLE));
+                return cu;
+            }
+        });
+    }
+
+    @Override
+    protected TreeVisitor<?, ExecutionContext> getVisitor() {
+        Tally tally = new Tally();
+        return MeteredVisitor.visitor(getName(), new JavaVisitor<ExecutionContext>() {
+            private final JavaTemplate newArrayList = JavaTemplate.builder(this::getCursor, "new ArrayList<>()")
+                    .imports("java.util.ArrayList")
+                    .build();
+
+            private final JavaTemplate newArrayListCollection = JavaTemplate.builder(this::getCursor, "new ArrayList<>(#{any(java.util.Collection)})")
+                    .imports("java.util.ArrayList")
+                    .build();
+
+            private final JavaTemplate newArrayDeque = JavaTemplate.builder(this::getCursor, "new ArrayDeque<>()")
+                    .imports("java.util.ArrayDeque")
+                    .build();
+
+            private final JavaTemplate newLinkedList = JavaTemplate.builder(this::getCursor, "new LinkedList<>()")
+                    .imports("java.util.LinkedList")
+                    .build();
+
+            private final JavaTemplate newLinkedListCollection = JavaTemplate.builder(this::getCursor, "new LinkedList<>(#{any(java.util.Collection)})")
+                    .imports("java.util.LinkedList")
+                    .build();
+
+            @Override
+            public J visitVariableDeclarations(J.VariableDeclarations multiVariable, ExecutionContext executionContext) {
+                Replacement replacement = replacement(multiVariable);
+                if (replacement == Replacement.LINKED_LIST) {
+                    return super.visitVariableDeclarations(multiVariable, executionContext);
+                }
+
+                Map<J.MethodInvocation, Replacement> replacements = new IdentityHashMap<>();
+                replacements.put((J.MethodInvocation) multiVariable.getVariables().get(0).getInitializer(), replacement);
+                getCursor().putMessage(REPLACEMENTS, replacements);
+
+                J j = super.visitVariableDeclarations(multiVariable, executionContext);
+                if (!(j instanceof J.VariableDeclarations) || !declaresLinkedList(multiVariable)) {
+                    return j;
+                }
+                J.VariableDeclarations v = (J.VariableDeclarations) j;
+                Expression initializer = v.getVariables().get(0).getInitializer();
+                JavaType.FullyQualified type = initializer == null ? null : TypeUtils.asFullyQualified(initializer.getType());
+                if (type instanceof JavaType.Parameterized) {
+                    type = ((JavaType.Parameterized) type).getType();
+                }
+                if (type == null || !replacement.getClassName().equals(type.getFullyQualifiedName())) {
+                    return v;
+                }
+                maybeRemoveImport("java.util.LinkedList");
+                return retype(v, type, initializer.getType());
+            }
+
+            @Override
+            public J visitMethodInvocation(J.MethodInvocation method, ExecutionContext executionContext) {
+                tally.increment(Tally.Counter.METHOD_INVOCATIONS);
+                Map<J.MethodInvocation, Replacement> replacements = getCursor().getNearestMessage(REPLACEMENTS);
+                Replacement replacement = replacements == null ? null : replacements.get(method);
+
+                J j = super.visitMethodInvocation(method, executionContext);
+                if (!(j instanceof J.MethodInvocation)) {
+                    return j;
+                }
+                J.MethodInvocation m = (J.MethodInvocation) j;
+                boolean collection = NEW_LINKED_LIST_ITERABLE.matches(m) &&
+                                     TypeUtils.isAssignableTo("java.util.Collection", m.getArguments().get(0).getType());
+                if (!NEW_LINKED_LIST.matches(m) && !collection) {
+                    // LinkedList has no constructor accepting a plain Iterable, so those calls are left to Guava
+                    return m;
+                }
+
+                maybeRemoveImport("com.google.common.collect.Lists");
+                tally.increment(Tally.Counter.TEMPLATE_APPLICATIONS);
+                if (replacement == Replacement.ARRAY_LIST) {
+                    maybeAddImport("java.util.ArrayList");
+                    return collection ?
+                            m.withTemplate(newArrayListCollection, m.getCoordinates().replace(), m.getArguments().get(0)) :
+                            m.withTemplate(newArrayList, m.getCoordinates().replace());
+                } else if (replacement == Replacement.ARRAY_DEQUE) {
+                    maybeAddImport("java.util.ArrayDeque");
+                    return m.withTemplate(newArrayDeque, m.getCoordinates().replace());
+                }
+                maybeAddImport("java.util.LinkedList");
+                return collection ?
+                        m.withTemplate(newLinkedListCollection, m.getCoordinates().replace(), m.getArguments().get(0)) :
+                        m.withTemplate(newLinkedList, m.getCoordinates().replace());
+            }
+
+            /**
+             * @return The type to construct for a single local variable or private field initialized by
+             * {@code Lists.newLinkedList(..)}, which is {@link Replacement#LINKED_LIST} for any other declaration.
+             */
+            private Replacement replacement(J.VariableDeclarations declarations) {
+                if (declarations.getVariables().size() != 1) {
+                    return Replacement.LINKED_LIST;
+                }
+                J.VariableDeclarations.NamedVariable variable = declarations.getVariables().get(0);
+                if (!(variable.getInitializer() instanceof J.MethodInvocation)) {
+                    return Replacement.LINKED_LIST;
+                }
+                J.MethodInvocation initializer = (J.MethodInvocation) variable.getInitializer();
+                if (!NEW_LINKED_LIST.matches(initializer) && !NEW_LINKED_LIST_ITERABLE.matches(initializer)) {
+                    return Replacement.LINKED_LIST;
+                }
+
+                Usages usages = new Usages(variable.getSimpleName());
+                // the initial elements of a copy may be null
+                usages.mayHoldNull = NEW_LINKED_LIST_ITERABLE.matches(initializer);
+                Object block = getCursor().dropParentUntil(J.class::isInstance).getValue();
+                Object owner = getCursor().dropParentUntil(J.class::isInstance).dropParentUntil(J.class::isInstance).getValue();
+                if (!(block instanceof J.Block)) {
+                    return Replacement.LINKED_LIST;
+                } else if (owner instanceof J.ClassDeclaration || owner instanceof J.NewClass || owner instanceof J.EnumValue) {
+                    // a class body, including those of anonymous classes and enum constants
+                    if (!declarations.hasModifier(J.Modifier.Type.Private)) {
+                        return Replacement.LINKED_LIST;
+                    }
+                    // a private field is accessible anywhere in the source file, including nested classes
+                    new UsageScanner().visit(getCursor().firstEnclosingOrThrow(J.CompilationUnit.class), usages);
+                } else {
+                    boolean afterDeclaration = false;
+                    for (Statement statement : ((J.Block) block).getStatements()) {
+                        if (afterDeclaration) {
+                            new UsageScanner().visit(statement, usages);
+                        } else {
+                            afterDeclaration = statement == declarations;
+                        }
+                    }
+                }
+
+                Replacement replacement = usages.replacement();
+                String declaredType = declaredType(declarations);
+                if (replacement == Replacement.ARRAY_LIST && !usages.mayHoldNull &&
+                    ("java.util.Queue".equals(declaredType) || "java.util.Deque".equals(declaredType))) {
+                    // only used as a collection, but declared as a queue
+                    replacement = Replacement.ARRAY_DEQUE;
+                }
+                return declaresLinkedList(declarations) || isVar(declarations.getTypeExpression()) ||
+                       replacement.getInterfaces().contains(declaredType) ?
+                        replacement :
+                        Replacement.LINKED_LIST;
+            }
+        }, tally);
+    }
+
+    @Nullable
+    private static String declaredType(J.VariableDeclarations declarations) {
+        JavaType.FullyQualified type = TypeUtils.asFullyQualified(declarations.getType());
+        return type == null ? null : type.getFullyQualifiedName();
+    }
+
+    private static boolean isVar(@Nullable TypeTree typeExpression) {
+        return typeExpression instanceof J.Identifier && "var".equals(((J.Identifier) typeExpression).getSimpleName());
+    }
+
+    /**
+     * @return Whether the variable is declared as a {@code LinkedList} by its simple name, which is the declared type
+     * this recipe changes.
+     */
+    private static boolean declaresLinkedList(J.VariableDeclarations declarations) {
+        NameTree typeExpression = declarations.getTypeExpression();
+        if (typeExpression instanceof J.ParameterizedType) {
+            typeExpression = ((J.ParameterizedType) typeExpression).getClazz();
+        }
+        return typeExpression instanceof J.Identifier &&
+               "LinkedList".equals(((J.Identifier) typeExpression).getSimpleName()) &&
+               "java.util.LinkedList".equals(declaredType(declarations));
+    }
+
+    private static J.VariableDeclarations retype(J.VariableDeclarations declarations, JavaType.FullyQualified type,
+                                                 @Nullable JavaType variableType) {
+        TypeTree typeExpression = declarations.getTypeExpression();
+        if (typeExpression instanceof J.ParameterizedType) {
+            J.ParameterizedType parameterized = (J.ParameterizedType) typeExpression;
+            typeExpression = parameterized.withClazz(((J.Identifier) parameterized.getClazz())
+                    .withSimpleName(type.getClassName())
+                    .withType(type));
+        } else if (typeExpression instanceof J.Identifier) {
+            typeExpression = ((J.Identifier) typeExpression).withSimpleName(type.getClassName()).withType(type);
+        }
+        return declarations
+                .withTypeExpression(typeExpression)
+                .withVariables(ListUtils.map(declarations.getVariables(), v -> v.withType(variableType)));
+    }
+
+    enum Replacement {
+        ARRAY_LIST("java.util.ArrayList", "java.util.List", "java.util.Collection", "java.lang.Iterable"),
+        ARRAY_DEQUE("java.util.ArrayDeque", "java.util.Deque", "java.util.Queue", "java.util.Collection", "java.lang.Iterable"),
+        LINKED_LIST("java.util.LinkedList");
+
+        private final String className;
+        private final List<String> interfaces;
+
+        Replacement(String className, String... interfaces) {
+            this.className = className;
+            this.interfaces = Arrays.asList(interfaces);
+        }
+
+        String getClassName() {
+            return className;
+        }
+
+        /**
+         * @return The declared types of a variable that can hold this replacement without being changed.
+         */
+        List<String> getInterfaces() {
+            return interfaces;
+        }
+    }
+
+    private static class Usages {
+        private final String name;
+        private boolean listMethods;
+        private boolean dequeMethods;
+        private boolean mayHoldNull;
+        private boolean unsafe;
+
+        private Usages(String name) {
+            this.name = name;
+        }
+
+        Replacement replacement() {
+            if (unsafe || listMethods && dequeMethods) {
+                return Replacement.LINKED_LIST;
+            } else if (dequeMethods) {
+                // unlike LinkedList, ArrayDeque rejects null elements
+                return mayHoldNull ? Replacement.LINKED_LIST : Replacement.ARRAY_DEQUE;
+            }
+            return Replacement.ARRAY_LIST;
+        }
+    }
+
+    /**
+     * Classifies each reference to a local variable or field by the methods invoked on it. Any other reference, and
+     * references through a variable of the same name elsewhere, make the replacement unsafe.
+     */
+    private static class UsageScanner extends JavaIsoVisitor<Usages> {
+        @Override
+        public J.Identifier visitIdentifier(J.Identifier identifier, Usages usages) {
+            if (!identifier.getSimpleName().equals(usages.name)) {
+                return identifier;
+            }
+
+            Object parent = getCursor().dropParentUntil(J.class::isInstance).getValue();
+            if (parent instanceof J.VariableDeclarations.NamedVariable &&
+                ((J.VariableDeclarations.NamedVariable) parent).getName() == identifier) {
+                // the declaration itself, or one shadowing it, whose uses are then conservatively attributed to it
+                return identifier;
+            }
+
+            Expression reference = identifier;
+            if (parent instanceof J.FieldAccess && ((J.FieldAccess) parent).getName() == identifier) {
+                J.FieldAccess fieldAccess = (J.FieldAccess) parent;
+                if (!(fieldAccess.getTarget() instanceof J.Identifier) ||
+                    !"this".equals(((J.Identifier) fieldAccess.getTarget()).getSimpleName())) {
+                    usages.unsafe = true;
+                    return identifier;
+                }
+                reference = fieldAccess;
+                parent = getCursor().dropParentUntil(J.class::isInstance).dropParentUntil(J.class::isInstance).getValue();
+            }
+
+            if (parent instanceof J.MethodInvocation && ((J.MethodInvocation) parent).getSelect() == reference) {
+                classify((J.MethodInvocation) parent, usages);
+            } else if (!(parent instanceof J.ForEachLoop.Control) ||
+                       ((J.ForEachLoop.Control) parent).getIterable() != reference) {
+                // passed as an argument, returned, reassigned, captured or aliased
+                usages.unsafe = true;
+            }
+            return identifier;
+        }
+
+        private static void classify(J.MethodInvocation method, Usages usages) {
+            String name = method.getSimpleName();
+            List<Expression> arguments = method.getArguments();
+            int arity = arguments.size() == 1 && arguments.get(0) instanceof J.Empty ? 0 : arguments.size();
+
+            if ("remove".equals(name) && arity == 0) {
+                usages.dequeMethods = true;
+            } else if ("remove".equals(name) && arity == 1 && removesByIndex(method) ||
+                       ("add".equals(name) || "addAll".equals(name)) && arity == 2) {
+                // removing or inserting by index is what a LinkedList may have been chosen for
+                usages.unsafe = true;
+            } else if (LIST_METHODS.contains(name)) {
+                usages.listMethods = true;
+            } else if (DEQUE_METHODS.contains(name)) {
+                usages.dequeMethods = true;
+            } else if (!COLLECTION_METHODS.contains(name)) {
+                // including iterators, list iterators and sub lists, which can remove elements
+                usages.unsafe = true;
+            }
+
+            if (INSERTION_METHODS.contains(name) && arity == 1) {
+                usages.mayHoldNull |= !isNonNull(arguments.get(0));
+            } else if ("addAll".equals(name)) {
+                usages.mayHoldNull = true;
+            }
+        }
+
+        /**
+         * An argument of type {@code byte}, {@code short} or {@code char} also selects {@code remove(int)}, so the
+         * overload is told by the declared parameter type, and a call without type attribution counts as one.
+         */
+        private static boolean removesByIndex(J.MethodInvocation method) {
+            JavaType.Method methodType = method.getMethodType();
+            return methodType == null ||
+                   methodType.getParameterTypes().size() != 1 ||
+                   methodType.getParameterTypes().get(0) == JavaType.Primitive.Int;
+        }
+
+        private static boolean isNonNull(Expression element) {
+            if (element instanceof J.Literal) {
+                return ((J.Literal) element).getValue() != null;
+            }
+            JavaType type = element.getType();
+            return element instanceof J.NewClass || element instanceof J.NewArray || element instanceof J.Binary ||
+                   element instanceof J.Lambda || element instanceof J.MemberReference ||
+                   type instanceof JavaType.Primitive && type != JavaType.Primitive.String &&
+                   type != JavaType.Primitive.Null;
+        }
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.internal.JavaTypeCache;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.JavaType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Keeps parsers warm across batches and recipe runs, where {@code JavaParser.fromJavaVersion()} would otherwise
+ * resolve the classpath and build the same {@link org.openrewrite.java.tree.JavaType}s of the JDK and libraries again
+ * for every batch or test.
+ * <p>
+ * The classpath is resolved once per session. Parsers are pooled together with a {@link JavaTypeCache} of their own,
+ * as neither a parser nor the types it is still completing may be shared by threads. A caller takes a parser from the
+ * pool for the duration of one parse, so a pool holds at most one parser per thread that parsed concurrently. Type
+ * caches that grow beyond {@link #getMaxTypes()} entries are emptied when the parser is returned, and
+ * {@link #reset()} drops all parsers and types, for instance once the classpath changed on disk.
+ * <p>
+ * Only the types read from the JDK and the classpath are kept across parses. The types declared by the parsed sources,
+ * and those referring to them, are cached for one parse, or for the parsers of one {@link #builder()}, as sources
+ * parsed later may declare classes of the same names differently. Types are told apart by an index of the classes
+ * in the jars and directories of the classpath, which is built once per session.
+ * <p>
+ * {@link #shared(String...)} sessions live as long as the JVM, so that every test class parsing against the same
+ * artifacts shares them.
+ */
+public final class ParserSession {
+    public static final int DEFAULT_MAX_TYPES = 200_000;
+
+    private static final Map<List<String>, ParserSession> SHARED = new ConcurrentHashMap<>();
+
+    /**
+     * Whether a class of the given name is part of the JDK the parsers run on.
+     */
+    private static final Map<String, Boolean> JDK_TYPES = new ConcurrentHashMap<>();
+
+    private final List<Path> classpath;
+    private final int maxTypes;
+    private final Deque<WarmParser> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger generation = new AtomicInteger();
+
+    /**
+     * Holds the types read from the classpath by the parsers of {@link #builder()}, whose callers parse on one thread
+     * at a time.
+     */
+    private final JavaTypeCache builderTypeCache = new JavaTypeCache();
+
+    /**
+     * The types cached by the parsers of the last {@link #builder()}, which are moved to {@link #builderTypeCache} on
+     * the next call.
+     */
+    @Nullable
+    private ScopedTypeCache builderScope;
+
+    @Nullable
+    private volatile Set<String> classpathIndex;
+
+    public ParserSession(List<Path> classpath, int maxTypes) {
+        this.classpath = Collections.unmodifiableList(new ArrayList<>(classpath));
+        this.maxTypes = maxTypes;
+    }
+
+    /**
+     * @param artifactNames Artifacts on the runtime classpath to parse against, as for
+     *                      {@link JavaParser#dependenciesFromClasspath(String...)}.
+     */
+    public static ParserSession shared(String... artifactNames) {
+        return SHARED.computeIfAbsent(Arrays.asList(artifactNames), names ->
+                new ParserSession(JavaParser.dependenciesFromClasspath(artifactNames), DEFAULT_MAX_TYPES));
+    }
+
+    public List<Path> getClasspath() {
+        return classpath;
+    }
+
+    public int getMaxTypes() {
+        return maxTypes;
+    }
+
+    /**
+     * @return A builder of parsers sharing the classpath and the classpath types of this session, for callers such as
+     * tests that build a parser of their own, but parse on one thread at a time. The types declared by the sources
+     * that the parsers of one builder parse are not shared with those of other builders.
+     */
+    public JavaParser.Builder<? extends JavaParser, ?> builder() {
+        ScopedTypeCache typeCache;
+        synchronized (builderTypeCache) {
+            if (builderScope != null) {
+                builderScope.endScope();
+            }
+            if (builderTypeCache.size() > maxTypes) {
+                builderTypeCache.clear();
+            }
+            typeCache = new ScopedTypeCache(builderTypeCache);
+            builderScope = typeCache;
+        }
+        return JavaParser.fromJavaVersion()
+                .classpath(classpath)
+                .typeCache(typeCache);
+    }
+
+    public List<J.CompilationUnit> parse(Iterable<Path> sources, @Nullable Path relativeTo, ExecutionContext ctx) {
+        WarmParser warm = acquire();
+        try {
+            return warm.parser.parse(sources, relativeTo, ctx);
+        } finally {
+            release(warm);
+        }
+    }
+
+    public List<J.CompilationUnit> parse(ExecutionContext ctx, String... sources) {
+        WarmParser warm = acquire();
+        try {
+            return warm.parser.parse(ctx, sources);
+        } finally {
+            release(warm);
+        }
+    }
+
+    /**
+     * Drops all pooled parsers and cached types. Parsers in use when this is called are not returned to the pool.
+     */
+    public void reset() {
+        generation.incrementAndGet();
+        idle.clear();
+        synchronized (builderTypeCache) {
+            builderScope = null;
+            builderTypeCache.clear();
+        }
+    }
+
+    private WarmParser acquire() {
+        int current = generation.get();
+        for (WarmParser warm = idle.pollFirst(); warm != null; warm = idle.pollFirst()) {
+            if (warm.generation == current) {
+                warm.parser.reset();
+                return warm;
+            }
+        }
+        ScopedTypeCache typeCache = new ScopedTypeCache(new JavaTypeCache());
+        return new WarmParser(current, typeCache, JavaParser.fromJavaVersion()
+                .classpath(classpath)
+                .typeCache(typeCache)
+                .build());
+    }
+
+    private void release(WarmParser warm) {
+        if (warm.generation != generation.get()) {
+            return;
+        }
+        warm.typeCache.endScope();
+        if (warm.typeCache.size() > maxTypes) {
+            warm.typeCache.clear();
+        }
+        // the most recently used parser is handed out first, as its caches are the warmest
+        idle.offerFirst(warm);
+    }
+
+    /**
+     * @return Whether the class was read from the JDK or the classpath rather than declared by a parsed source.
+     */
+    private boolean isClasspathType(String fullyQualifiedName) {
+        return classpathIndex().contains(fullyQualifiedName) || isJdkType(fullyQualifiedName);
+    }
+
+    private Set<String> classpathIndex() {
+        Set<String> index = classpathIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = classpathIndex;
+                if (index == null) {
+                    index = new HashSet<>();
+                    for (Path entry : classpath) {
+                        indexClasses(entry, index);
+                    }
+                    classpathIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    private static void indexClasses(Path classpathEntry, Set<String> index) {
+        try {
+            if (Files.isDirectory(classpathEntry)) {
+                try (Stream<Path> files = Files.walk(classpathEntry)) {
+                    files.forEach(file -> addClass(
+                            classpathEntry.relativize(file).toString().replace('\\', '/'), index));
+                }
+            } else if (Files.isRegularFile(classpathEntry)) {
+                try (ZipFile jar = new ZipFile(classpathEntry.toFile())) {
+                    for (Enumeration<? extends ZipEntry> entries = jar.entries(); entries.hasMoreElements(); ) {
+                        addClass(entries.nextElement().getName(), index);
+                    }
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            // the classes of an unreadable entry are taken for source types, which are only cached for one parse
+        }
+    }
+
+    private static void addClass(String path, Set<String> index) {
+        if (path.endsWith(".class") && !path.startsWith("META-INF/") && !path.endsWith("module-info.class")) {
+            index.add(path.substring(0, path.length() - ".class".length()).replace('/', '.'));
+        }
+    }
+
+    private static boolean isJdkType(String fullyQualifiedName) {
+        return JDK_TYPES.computeIfAbsent(fullyQualifiedName, name -> {
+            String resource = name.replace('.', '/') + ".class";
+            ClassLoader jdk = ClassLoader.getSystemClassLoader().getParent();
+            return (jdk == null ? ClassLoader.getSystemResource(resource) : jdk.getResource(resource)) != null;
+        });
+    }
+
+    /**
+     * @return Whether a type signature names one of the types, or a class nested in one of them.
+     */
+    private static boolean refersTo(String signature, Set<String> types) {
+        int start = -1;
+        for (int i = 0; i <= signature.length(); i++) {
+            char c = i < signature.length() ? signature.charAt(i) : ' ';
+            if (Character.isJavaIdentifierPart(c) || c == '.') {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                String name = signature.substring(start, i);
+                int nested = name.indexOf('$');
+                if (types.contains(name) || nested > 0 && types.contains(name.substring(0, nested))) {
+                    return true;
+                }
+                start = -1;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The type cache of one parse, or of the parsers of one {@link #builder()}, which reads the classpath types of
+     * earlier parses and keeps the types it caches to itself until the {@linkplain #endScope() end of its scope}.
+     */
+    private final class ScopedTypeCache extends JavaTypeCache {
+        private final JavaTypeCache classpathTypes;
+        private final Map<String, Object> scopeTypes = new HashMap<>();
+
+        private ScopedTypeCache(JavaTypeCache classpathTypes) {
+            this.classpathTypes = classpathTypes;
+        }
+
+        @Override
+        @Nullable
+        @SuppressWarnings("unchecked")
+        public <T> T get(String signature) {
+            Object type = scopeTypes.get(signature);
+            return type != null ? (T) type : classpathTypes.get(signature);
+        }
+
+        @Override
+        public void put(String signature, Object o) {
+            scopeTypes.put(signature, o);
+        }
+
+        @Override
+        public void clear() {
+            scopeTypes.clear();
+            classpathTypes.clear();
+        }
+
+        @Override
+        public int size() {
+            return scopeTypes.size() + classpathTypes.size();
+        }
+
+        /**
+         * Moves the types that neither are nor refer to a class declared by the parsed sources to the classpath types,
+         * and drops the others.
+         */
+        void endScope() {
+            Set<String> sourceTypes = new HashSet<>();
+            for (Object type : scopeTypes.values()) {
+                if (type instanceof JavaType.Class) {
+                    String fullyQualifiedName = ((JavaType.Class) type).getFullyQualifiedName();
+                    if (!isClasspathType(fullyQualifiedName)) {
+                        sourceTypes.add(fullyQualifiedName);
+                    }
+                }
+            }
+            for (Map.Entry<String, Object> type : scopeTypes.entrySet()) {
+                if (sourceTypes.isEmpty() || !refersTo(type.getKey(), sourceTypes)) {
+                    classpathTypes.put(type.getKey(), type.getValue());
+                }
+            }
+            scopeTypes.clear();
+        }
+    }
+
+    private static final class WarmParser {
+        private final int generation;
+        private final ScopedTypeCache typeCache;
+        private final JavaParser parser;
+
+        private WarmParser(int generation, ScopedTypeCache typeCache, JavaParser parser) {
+            this.generation = generation;
+            this.typeCache = typeCache;
+            this.parser = parser;
+        }
+    }
+}
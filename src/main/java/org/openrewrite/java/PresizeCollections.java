@@ -0,0 +1,218 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import lombok.EqualsAndHashCode;
+import lombok.Value;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.Recipe;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.metrics.MeteredVisitor;
+import org.openrewrite.java.metrics.Tally;
+import org.openrewrite.java.tree.Expression;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.JavaType;
+import org.openrewrite.java.tree.Statement;
+import org.openrewrite.java.tree.TypeUtils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Value
+@EqualsAndHashCode(callSuper = true)
+public class PresizeCollections extends Recipe {
+    private static final String CAPACITIES = "PRESIZED_CAPACITIES";
+
+    private static final List<String> LIST_TYPES = Arrays.asList("java.util.ArrayList");
+    private static final List<String> HASH_TYPES = Arrays.asList(
+            "java.util.HashMap", "java.util.LinkedHashMap", "java.util.HashSet", "java.util.LinkedHashSet");
+
+    @Override
+    public String getDisplayName() {
+        return "Pre-size collections filled from a source of known size";
+    }
+
+    @Override
+    public String getDescription() {
+        return "A `new ArrayList<>()`, `new HashSet<>()` or `new HashMap<>()` that is immediately filled by a loop " +
+               "adding one element per element of a collection, map view or array grows through a chain of resizes. " +
+               "Pass the source's size as the initial capacity instead, adjusted for the default load factor of hash " +
+               "based collections.";
+    }
+
+    @Override
+    protected TreeVisitor<?, ExecutionContext> getVisitor() {
+        Tally tally = new Tally();
+        return MeteredVisitor.visitor(getName(), new JavaVisitor<ExecutionContext>() {
+            private final Map<String, JavaTemplate> templates = new HashMap<>();
+
+            @Override
+            public J visitBlock(J.Block block, ExecutionContext executionContext) {
+                Map<J.NewClass, String> capacities = new IdentityHashMap<>();
+                List<Statement> statements = block.getStatements();
+                for (int i = 0; i < statements.size() - 1; i++) {
+                    J.NewClass allocation = emptyAllocation(statements.get(i));
+                    if (allocation != null && statements.get(i + 1) instanceof J.ForEachLoop) {
+                        J.VariableDeclarations.NamedVariable variable = ((J.VariableDeclarations) statements.get(i)).getVariables().get(0);
+                        String capacity = capacity(allocation, variable.getSimpleName(), (J.ForEachLoop) statements.get(i + 1));
+                        if (capacity != null) {
+                            capacities.put(allocation, capacity);
+                        }
+                    }
+                }
+                if (!capacities.isEmpty()) {
+                    getCursor().putMessage(CAPACITIES, capacities);
+                }
+                return super.visitBlock(block, executionContext);
+            }
+
+            @Override
+            public J visitNewClass(J.NewClass newClass, ExecutionContext executionContext) {
+                J j = super.visitNewClass(newClass, executionContext);
+                Map<J.NewClass, String> capacities = getCursor().getNearestMessage(CAPACITIES);
+                String capacity = capacities == null ? null : capacities.get(newClass);
+                JavaType.FullyQualified type = TypeUtils.asFullyQualified(newClass.getType());
+                if (capacity == null || type == null || !(j instanceof J.NewClass)) {
+                    return j;
+                }
+
+                String code = "new " + type.getClassName() + "<>(" + capacity + ")";
+                JavaTemplate template = templates.computeIfAbsent(code, c -> JavaTemplate.builder(this::getCursor, c)
+                        .imports(type.getFullyQualifiedName())
+                        .build());
+                tally.increment(Tally.Counter.TEMPLATE_APPLICATIONS);
+                return ((J.NewClass) j).withTemplate(template, ((J.NewClass) j).getCoordinates().replace());
+            }
+        }, tally);
+    }
+
+    /**
+     * @return The initializer of a single local variable declared with an explicit type and initialized by calling
+     * the no-argument constructor of a resizable collection, or {@code null} if the statement is anything else.
+     */
+    @Nullable
+    private static J.NewClass emptyAllocation(Statement statement) {
+        if (!(statement instanceof J.VariableDeclarations)) {
+            return null;
+        }
+        J.VariableDeclarations declarations = (J.VariableDeclarations) statement;
+        if (declarations.getVariables().size() != 1 || declarations.getTypeExpression() == null ||
+            !(declarations.getVariables().get(0).getInitializer() instanceof J.NewClass)) {
+            return null;
+        }
+
+        J.NewClass newClass = (J.NewClass) declarations.getVariables().get(0).getInitializer();
+        JavaType.FullyQualified type = TypeUtils.asFullyQualified(newClass.getType());
+        if (newClass.getBody() != null || type == null ||
+            !(LIST_TYPES.contains(type.getFullyQualifiedName()) || HASH_TYPES.contains(type.getFullyQualifiedName()))) {
+            return null;
+        }
+        List<Expression> arguments = newClass.getArguments();
+        return arguments == null || arguments.isEmpty() || arguments.size() == 1 && arguments.get(0) instanceof J.Empty ?
+                newClass :
+                null;
+    }
+
+    /**
+     * @return The initial capacity to allocate, or {@code null} if the loop does not unconditionally add exactly one
+     * element to {@code collection} per element of a source whose size can be read without side effects.
+     */
+    @Nullable
+    private static String capacity(J.NewClass allocation, String collection, J.ForEachLoop loop) {
+        String size = sizeOf(loop.getControl().getIterable());
+        if (size == null || !addsOncePerIteration(collection, loop.getBody())) {
+            return null;
+        }
+
+        JavaType.FullyQualified type = TypeUtils.asFullyQualified(allocation.getType());
+        return type != null && HASH_TYPES.contains(type.getFullyQualifiedName()) ?
+                "(int) (" + size + " / 0.75f) + 1" :
+                size;
+    }
+
+    @Nullable
+    private static String sizeOf(Expression iterable) {
+        if (iterable instanceof J.Identifier) {
+            String name = ((J.Identifier) iterable).getSimpleName();
+            if (iterable.getType() instanceof JavaType.Array) {
+                return name + ".length";
+            } else if (TypeUtils.isAssignableTo("java.util.Collection", iterable.getType())) {
+                return name + ".size()";
+            }
+        } else if (iterable instanceof J.MethodInvocation) {
+            J.MethodInvocation view = (J.MethodInvocation) iterable;
+            if (view.getSelect() instanceof J.Identifier &&
+                TypeUtils.isAssignableTo("java.util.Map", view.getSelect().getType()) &&
+                Arrays.asList("entrySet", "keySet", "values").contains(view.getSimpleName())) {
+                return ((J.Identifier) view.getSelect()).getSimpleName() + ".size()";
+            }
+        }
+        return null;
+    }
+
+    private static boolean addsOncePerIteration(String collection, Statement body) {
+        List<Statement> statements = body instanceof J.Block ?
+                ((J.Block) body).getStatements() :
+                Arrays.asList(body);
+
+        int adds = 0;
+        for (Statement statement : statements) {
+            if (statement instanceof J.MethodInvocation) {
+                J.MethodInvocation method = (J.MethodInvocation) statement;
+                if (method.getSelect() instanceof J.Identifier &&
+                    collection.equals(((J.Identifier) method.getSelect()).getSimpleName()) &&
+                    ("add".equals(method.getSimpleName()) || "put".equals(method.getSimpleName()))) {
+                    adds++;
+                }
+            }
+        }
+        return adds == 1 && !exitsEarly(body);
+    }
+
+    private static boolean exitsEarly(Statement body) {
+        boolean[] found = new boolean[1];
+        new JavaIsoVisitor<Integer>() {
+            @Override
+            public J.Break visitBreak(J.Break breakStatement, Integer p) {
+                found[0] = true;
+                return breakStatement;
+            }
+
+            @Override
+            public J.Continue visitContinue(J.Continue continueStatement, Integer p) {
+                found[0] = true;
+                return continueStatement;
+            }
+
+            @Override
+            public J.Return visitReturn(J.Return _return, Integer p) {
+                found[0] = true;
+                return _return;
+            }
+
+            @Override
+            public J.Throw visitThrow(J.Throw thrown, Integer p) {
+                found[0] = true;
+                return thrown;
+            }
+        }.visit(body, 0);
+        return found[0];
+    }
+}
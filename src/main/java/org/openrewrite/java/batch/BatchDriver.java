@@ -0,0 +1,710 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.batch;
+
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.Recipe;
+import org.openrewrite.Result;
+import org.openrewrite.SourceFile;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.FusedRecipe;
+import org.openrewrite.java.IncrementalRecipe;
+import org.openrewrite.java.JavaParser;
+import org.openrewrite.java.MakeNonOverridableMethodsWithoutInstanceDataStatic;
+import org.openrewrite.java.NoGuavaListsNewArrayList;
+import org.openrewrite.java.ParserSession;
+import org.openrewrite.java.budget.FileBudget;
+import org.openrewrite.java.budget.FileBudgetExceededException;
+import org.openrewrite.java.metrics.InMemoryRecipeMetrics;
+import org.openrewrite.java.metrics.RecipeMetrics;
+import org.openrewrite.java.metrics.RecipeMetricsExporter;
+import org.openrewrite.java.tree.J;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs a list of single-source recipes over all Java sources below a directory. Sources are parsed and rewritten in
+ * batches of {@link BatchOptions#getBatchSize()} files on a work-stealing {@link ForkJoinPool}. Every batch has a
+ * {@link JavaParser} and {@link ExecutionContext} to itself, as neither is thread-safe, so recipes that need to see
+ * all sources at once are not supported. Parsers are borrowed from a {@link ParserSession}, which keeps them and the
+ * types they built warm across batches and runs.
+ * <p>
+ * In {@linkplain BatchOptions#isStreaming() streaming} mode, batches are submitted while the directory is walked and
+ * at most {@link BatchOptions#getMaxInFlight()} parsed files are held at any time. Changes are written as soon as
+ * a batch completes, so the heap needed does not grow with the number of sources.
+ * <p>
+ * With a {@linkplain BatchOptions#getSnapshotDirectory() snapshot}, sources parsed by an earlier run of any recipes
+ * are loaded from it rather than parsed again.
+ * <p>
+ * With a {@linkplain BatchOptions#getFileTimeBudget() time} or {@linkplain BatchOptions#getFileNodeBudget() node}
+ * budget, the recipes are run one source file at a time, and a file that goes over the budget is left unchanged and
+ * {@linkplain BatchOptions#getQuarantineFile() quarantined}, so that the run time does not depend on the worst file.
+ */
+public class BatchDriver {
+    private final List<Recipe> recipes;
+    private final BatchOptions options;
+
+    /**
+     * Shared by all batches of all runs of this driver, so that only the first batch on each thread pays for resolving
+     * the classpath and building the types of the JDK and libraries.
+     */
+    private final ParserSession parserSession;
+
+    public BatchDriver(List<Recipe> recipes, BatchOptions options) {
+        this.recipes = recipes;
+        this.options = options;
+        this.parserSession = new ParserSession(options.getClasspath(), options.getMaxCachedTypes());
+    }
+
+    public BatchSummary run(Path root) throws IOException {
+        Path patchFile = options.getPatchFile() == null ? root.resolve("rewrite.patch") : options.getPatchFile();
+        Run run = new Run(root);
+        if (options.getMetricsFile() != null) {
+            run.metrics = new InMemoryRecipeMetrics();
+        }
+
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(options.getThreads());
+        try (ResultCache cache = options.getCacheFile() == null ? null :
+                ResultCache.open(options.getCacheFile(), ResultCache.fingerprint(recipes, options));
+             LstSnapshot snapshot = options.getSnapshotDirectory() == null ? null :
+                     LstSnapshot.open(options.getSnapshotDirectory(),
+                             ResultCache.classpathFingerprint(options.getClasspath()));
+             Quarantine quarantine = options.getQuarantineFile() == null ? null :
+                     Quarantine.open(options.getQuarantineFile())) {
+            run.cache = cache;
+            run.snapshot = snapshot;
+            run.quarantine = quarantine;
+            if (options.isStreaming()) {
+                stream(run, pool, patchFile);
+            } else {
+                List<List<Path>> batches = batches(findSources(root));
+                pool.invoke(new BatchesTask(run, batches, 0, batches.size()));
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        if (options.getOutput() == BatchOptions.Output.PATCH && !options.isStreaming()) {
+            long writeStart = System.nanoTime();
+            Files.write(patchFile, String.join("", run.diffs.values()).getBytes(StandardCharsets.UTF_8));
+            run.writeNanos.add(System.nanoTime() - writeStart);
+        }
+        if (run.metrics != null && options.getMetricsFile() != null) {
+            RecipeMetricsExporter.write(run.metrics, options.getMetricsFile());
+        }
+
+        return new BatchSummary(
+                run.files.get(),
+                run.changedFiles.get(),
+                options.getThreads(),
+                Duration.ofNanos(System.nanoTime() - start),
+                Duration.ofNanos(run.parseNanos.sum()),
+                Duration.ofNanos(run.recipeNanos.sum()),
+                Duration.ofNanos(run.writeNanos.sum()),
+                run.cache == null ? 0 : run.cache.getHits(),
+                run.cache == null ? 0 : run.cache.getMisses(),
+                run.snapshot == null ? 0 : run.snapshot.getLoads(),
+                new ArrayList<>(run.errors),
+                new ArrayList<>(run.quarantined),
+                run.skippedFiles.get()
+        );
+    }
+
+    /**
+     * Walks the directory and submits a batch whenever it is full or the walk moves to another directory, waiting
+     * for permits so that no more than {@link BatchOptions#getMaxInFlight()} files are being processed at once.
+     */
+    private void stream(Run run, ForkJoinPool pool, Path patchFile) throws IOException {
+        int maxInFlight = Math.max(1, options.getMaxInFlight());
+        int batchSize = Math.max(1, Math.min(options.getBatchSize(), maxInFlight));
+        Semaphore inFlight = new Semaphore(maxInFlight);
+
+        try (Writer patch = options.getOutput() == BatchOptions.Output.PATCH ?
+                Files.newBufferedWriter(patchFile, StandardCharsets.UTF_8) :
+                null;
+             Stream<Path> paths = Files.walk(run.root)) {
+            run.patch = patch;
+
+            List<Path> batch = new ArrayList<>(batchSize);
+            for (Iterator<Path> sources = paths.filter(BatchDriver::isSource).iterator(); sources.hasNext(); ) {
+                Path source = sources.next();
+                if (!batch.isEmpty() && (batch.size() == batchSize || !source.getParent().equals(batch.get(0).getParent()))) {
+                    submit(run, pool, inFlight, batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+                batch.add(source);
+            }
+            if (!batch.isEmpty()) {
+                submit(run, pool, inFlight, batch);
+            }
+
+            // every permit is returned once all batches are written
+            inFlight.acquireUninterruptibly(maxInFlight);
+        }
+    }
+
+    private void submit(Run run, ForkJoinPool pool, Semaphore inFlight, List<Path> batch) {
+        inFlight.acquireUninterruptibly(batch.size());
+        pool.execute(() -> {
+            try {
+                processBatch(run, batch);
+            } finally {
+                inFlight.release(batch.size());
+            }
+        });
+    }
+
+    private static boolean isSource(Path path) {
+        return path.toString().endsWith(".java") && Files.isRegularFile(path);
+    }
+
+    static List<Path> findSources(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths
+                    .filter(BatchDriver::isSource)
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    List<List<Path>> batches(List<Path> sources) {
+        int batchSize = Math.max(1, options.getBatchSize());
+        List<List<Path>> batches = new ArrayList<>((sources.size() + batchSize - 1) / batchSize);
+        for (int i = 0; i < sources.size(); i += batchSize) {
+            batches.add(sources.subList(i, Math.min(sources.size(), i + batchSize)));
+        }
+        return batches;
+    }
+
+    /**
+     * Parses, rewrites and writes a single batch. Exceptions are recorded rather than thrown, so that one bad file
+     * does not abort the whole run. Files with a cached outcome are written from the cache and not visited, and the
+     * outcome of the others is cached unless an error occurred in the batch. The batch is only parsed if any file has
+     * no cached outcome, and then in full, so that the types of every file are known to the others as in an uncached
+     * run. Quarantined files are skipped.
+     */
+    void processBatch(Run run, List<Path> batch) {
+        Path firstSource = batch.get(0);
+        AtomicBoolean failed = new AtomicBoolean();
+        ExecutionContext ctx = new InMemoryExecutionContext(t -> {
+            if (isBudgetExceeded(t)) {
+                // reported as quarantined once the recipes are done with the file
+                return;
+            }
+            failed.set(true);
+            run.errors.add(new BatchSummary.Error(firstSource, t));
+        });
+        if (run.metrics != null) {
+            RecipeMetrics.enable(ctx, run.metrics);
+        }
+        FileBudget budget = FileBudget.enable(ctx, options.getFileTimeBudget(), options.getFileNodeBudget());
+        try {
+            if (run.quarantine != null) {
+                List<Path> admitted = new ArrayList<>(batch.size());
+                for (Path source : batch) {
+                    if (run.quarantine.contains(run.root.relativize(source))) {
+                        run.skippedFiles.incrementAndGet();
+                    } else {
+                        admitted.add(source);
+                    }
+                }
+                if (admitted.isEmpty()) {
+                    return;
+                }
+                batch = admitted;
+            }
+
+            Map<Path, byte[]> cacheKeys = new HashMap<>();
+            if (run.cache != null) {
+                Map<Path, byte[]> contents = new HashMap<>();
+                for (Path source : batch) {
+                    contents.put(run.root.relativize(source), Files.readAllBytes(source));
+                }
+                // the outcome for a file depends on the types declared by the files parsed with it
+                byte[] dependencies = ResultCache.dependencies(contents);
+
+                Map<Path, ResultCache.Entry> cached = new HashMap<>();
+                for (Map.Entry<Path, byte[]> source : contents.entrySet()) {
+                    byte[] key = ResultCache.key(source.getKey(), source.getValue(), dependencies);
+                    ResultCache.Entry entry = run.cache.get(key);
+                    if (entry == null) {
+                        cacheKeys.put(source.getKey(), key);
+                    } else {
+                        cached.put(source.getKey(), entry);
+                    }
+                }
+                for (Map.Entry<Path, ResultCache.Entry> entry : cached.entrySet()) {
+                    run.files.incrementAndGet();
+                    if (entry.getValue().isChanged()) {
+                        Charset charset = entry.getValue().getCharset();
+                        write(run, entry.getKey(), entry.getValue().getAfter(), entry.getValue().getDiff(),
+                                charset == null ? StandardCharsets.UTF_8 : charset);
+                    }
+                }
+                if (cacheKeys.isEmpty()) {
+                    return;
+                }
+            }
+
+            long parseStart = System.nanoTime();
+            List<J.CompilationUnit> compilationUnits = parse(run, batch, ctx);
+            if (run.cache != null) {
+                // parsed for their types, but written from the cache
+                List<J.CompilationUnit> uncached = new ArrayList<>(cacheKeys.size());
+                for (J.CompilationUnit cu : compilationUnits) {
+                    if (cacheKeys.containsKey(cu.getSourcePath())) {
+                        uncached.add(cu);
+                    }
+                }
+                compilationUnits = uncached;
+            }
+            long recipeStart = System.nanoTime();
+            run.parseNanos.add(recipeStart - parseStart);
+            run.files.addAndGet(compilationUnits.size());
+
+            Recipe recipe = options.isFused() ? new FusedRecipe(recipes) : new RecipeList(recipes);
+            if (options.getCycles() > 0) {
+                recipe = new IncrementalRecipe(recipe, options.getCycles());
+            }
+            List<Result> results;
+            if (budget.isLimited()) {
+                results = new ArrayList<>();
+                for (J.CompilationUnit cu : compilationUnits) {
+                    List<Result> fileResults = runWithinBudget(run, recipe, cu, budget, ctx);
+                    if (fileResults == null) {
+                        // neither changed nor unchanged, so it must not be cached either way
+                        cacheKeys.remove(cu.getSourcePath());
+                    } else {
+                        results.addAll(fileResults);
+                    }
+                }
+            } else {
+                results = recipe.run(compilationUnits, ctx).getResults();
+            }
+            long writeStart = System.nanoTime();
+            run.recipeNanos.add(writeStart - recipeStart);
+
+            for (Result result : results) {
+                SourceFile after = result.getAfter();
+                SourceFile before = result.getBefore();
+                Path sourcePath = after == null ? before.getSourcePath() : after.getSourcePath();
+                String diff = result.diff();
+                String printed = after == null ? null : after.printAll();
+                Charset charset = after == null || after.getCharset() == null ? StandardCharsets.UTF_8 :
+                        after.getCharset();
+                write(run, sourcePath, printed, diff, charset);
+
+                byte[] key = cacheKeys.remove(sourcePath);
+                if (run.cache != null && key != null && printed != null && !failed.get()) {
+                    run.cache.put(key, new ResultCache.Entry(printed, diff, charset));
+                }
+            }
+            if (run.cache != null && !failed.get()) {
+                for (byte[] key : cacheKeys.values()) {
+                    run.cache.put(key, ResultCache.Entry.UNCHANGED);
+                }
+            }
+            run.writeNanos.add(System.nanoTime() - writeStart);
+        } catch (Throwable t) {
+            run.errors.add(new BatchSummary.Error(firstSource, t));
+        }
+    }
+
+    private static boolean isBudgetExceeded(@Nullable Throwable t) {
+        for (; t != null; t = t.getCause()) {
+            if (t instanceof FileBudgetExceededException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The results of the recipes on a single source file, or {@code null} if they went over the budget, in
+     * which case the file is quarantined.
+     */
+    @Nullable
+    private List<Result> runWithinBudget(Run run, Recipe recipe, J.CompilationUnit cu, FileBudget budget,
+                                         ExecutionContext ctx) {
+        budget.start(cu.getSourcePath());
+        List<Result> results;
+        try {
+            results = recipe.run(Collections.singletonList(cu), ctx).getResults();
+        } catch (RuntimeException e) {
+            if (!isBudgetExceeded(e)) {
+                throw e;
+            }
+            results = null;
+        }
+
+        FileBudgetExceededException exceeded = budget.getExceeded();
+        if (exceeded == null) {
+            return results;
+        }
+        Quarantine.Entry entry = Quarantine.Entry.of(cu.getSourcePath(), exceeded);
+        run.quarantined.add(entry);
+        if (run.quarantine != null) {
+            run.quarantine.add(entry);
+        }
+        return null;
+    }
+
+    /**
+     * Loads the sources from the {@link LstSnapshot}, if one is used, when all of them are unchanged since they were
+     * added to it together. Otherwise, all of them are parsed together, so that the types of every source are known to
+     * the others, and those the snapshot has no current entry for are added to it.
+     */
+    List<J.CompilationUnit> parse(Run run, List<Path> sources, ExecutionContext ctx) throws IOException {
+        if (run.snapshot == null) {
+            return parserSession.parse(sources, run.root, ctx);
+        }
+
+        Map<Path, byte[]> contents = new HashMap<>();
+        for (Path source : sources) {
+            contents.put(run.root.relativize(source), Files.readAllBytes(source));
+        }
+        byte[] dependencies = ResultCache.dependencies(contents);
+        Map<Path, byte[]> sourceHashes = new HashMap<>();
+        Map<Path, byte[]> missing = new HashMap<>();
+        for (Map.Entry<Path, byte[]> source : contents.entrySet()) {
+            byte[] sourceHash = LstSnapshot.hash(source.getValue());
+            sourceHashes.put(source.getKey(), sourceHash);
+            if (!run.snapshot.contains(source.getKey(), sourceHash, dependencies)) {
+                missing.put(source.getKey(), sourceHash);
+            }
+        }
+
+        if (missing.isEmpty()) {
+            List<J.CompilationUnit> compilationUnits = new ArrayList<>(sources.size());
+            for (Path source : sources) {
+                Path sourcePath = run.root.relativize(source);
+                J.CompilationUnit cu = run.snapshot.load(sourcePath, sourceHashes.get(sourcePath), dependencies);
+                if (cu == null) {
+                    // the entry could not be read back, so the sources are parsed after all
+                    return parseIntoSnapshot(run, sources, sourceHashes, dependencies, ctx);
+                }
+                compilationUnits.add(cu);
+            }
+            return compilationUnits;
+        }
+        return parseIntoSnapshot(run, sources, missing, dependencies, ctx);
+    }
+
+    private List<J.CompilationUnit> parseIntoSnapshot(Run run, List<Path> sources, Map<Path, byte[]> missing,
+                                                      byte[] dependencies, ExecutionContext ctx) throws IOException {
+        List<J.CompilationUnit> compilationUnits = parserSession.parse(sources, run.root, ctx);
+        for (J.CompilationUnit cu : compilationUnits) {
+            byte[] sourceHash = missing.get(cu.getSourcePath());
+            if (sourceHash != null) {
+                run.snapshot.put(cu, sourceHash, dependencies);
+            }
+        }
+        return compilationUnits;
+    }
+
+    /**
+     * @param after The content to write, or {@code null} if the source file was deleted.
+     */
+    void write(Run run, Path sourcePath, @Nullable String after, @Nullable String diff, Charset charset) throws IOException {
+        run.changedFiles.incrementAndGet();
+        if (options.getOutput() == BatchOptions.Output.PATCH) {
+            String patch = diff == null ? "" : diff;
+            if (run.patch != null) {
+                synchronized (run.patch) {
+                    run.patch.write(patch);
+                }
+            } else {
+                run.diffs.put(sourcePath, patch);
+            }
+        } else if (after == null) {
+            Files.deleteIfExists(run.root.resolve(sourcePath));
+        } else {
+            Path path = run.root.resolve(sourcePath);
+            Files.createDirectories(path.getParent());
+            Files.write(path, after.getBytes(charset));
+        }
+    }
+
+    /**
+     * The state of one {@link #run(Path)} that is shared by all tasks.
+     */
+    static class Run {
+        final Path root;
+        final AtomicInteger files = new AtomicInteger();
+        final AtomicInteger changedFiles = new AtomicInteger();
+        final LongAdder parseNanos = new LongAdder();
+        final LongAdder recipeNanos = new LongAdder();
+        final LongAdder writeNanos = new LongAdder();
+        final Queue<BatchSummary.Error> errors = new ConcurrentLinkedQueue<>();
+        final Queue<Quarantine.Entry> quarantined = new ConcurrentLinkedQueue<>();
+        final AtomicInteger skippedFiles = new AtomicInteger();
+
+        /**
+         * Sorted by path, so that the patch is the same regardless of the order in which batches complete.
+         */
+        final Map<Path, String> diffs = new ConcurrentSkipListMap<>();
+
+        /**
+         * When streaming, diffs are written to the patch as they are produced rather than collected.
+         */
+        @Nullable
+        Writer patch;
+
+        @Nullable
+        ResultCache cache;
+
+        @Nullable
+        LstSnapshot snapshot;
+
+        @Nullable
+        InMemoryRecipeMetrics metrics;
+
+        @Nullable
+        Quarantine quarantine;
+
+        Run(Path root) {
+            this.root = root;
+        }
+    }
+
+    /**
+     * Splits the batches in halves until a single batch is left, so that idle workers steal the larger halves of
+     * busy ones.
+     */
+    private class BatchesTask extends RecursiveAction {
+        private final Run run;
+        private final List<List<Path>> batches;
+        private final int from;
+        private final int to;
+
+        private BatchesTask(Run run, List<List<Path>> batches, int from, int to) {
+            this.run = run;
+            this.batches = batches;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (to > from) {
+                    processBatch(run, batches.get(from));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new BatchesTask(run, batches, from, middle), new BatchesTask(run, batches, middle, to));
+        }
+    }
+
+    /**
+     * Runs the recipes one after another on the same sources.
+     */
+    static class RecipeList extends Recipe {
+        RecipeList(Collection<Recipe> recipes) {
+            for (Recipe recipe : recipes) {
+                doNext(recipe);
+            }
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Batch recipes";
+        }
+    }
+
+    /**
+     * Usage: {@code BatchDriver <root> [--threads n] [--batch-size n] [--streaming] [--max-in-flight n]
+     * [--fused] [--cycles n] [--cache file] [--snapshot directory] [--metrics file] [--file-time-budget millis]
+     * [--file-node-budget n] [--quarantine file] [--workers n] [--worker-jvm-option option]...
+     * [--worker-timeout millis] [--in-place | --patch file] [--classpath entries] [--max-cached-types n]
+     * [--recipe className [--recipe-options json]]...}. Without {@code --recipe}, the recipes of this module are
+     * run. With {@code --workers}, the sources are split across worker JVMs by a {@link ShardCoordinator}.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: BatchDriver <root> [--threads n] [--batch-size n] [--streaming] " +
+                               "[--max-in-flight n] [--fused] [--cycles n] [--cache file] [--snapshot directory] " +
+                               "[--metrics file] [--file-time-budget millis] [--file-node-budget n] " +
+                               "[--quarantine file] [--workers n] [--worker-jvm-option option]... " +
+                               "[--worker-timeout millis] [--in-place | --patch file] [--classpath entries] " +
+                               "[--max-cached-types n] [--recipe className [--recipe-options json]]...");
+            System.exit(2);
+        }
+
+        Path root = Paths.get(args[0]);
+        BatchOptions.BatchOptionsBuilder builder = BatchOptions.builder();
+        List<Recipe> recipes = new ArrayList<>();
+        parseOptions(args, 1, builder, recipes);
+        if (recipes.isEmpty()) {
+            recipes.add(new MakeNonOverridableMethodsWithoutInstanceDataStatic());
+            recipes.add(new NoGuavaListsNewArrayList());
+        }
+
+        BatchOptions options = builder.build();
+        BatchSummary summary = options.getWorkers() > 0 ?
+                new ShardCoordinator(recipes, options).run(root) :
+                new BatchDriver(recipes, options).run(root);
+        System.out.println(summary);
+        for (BatchSummary.Error error : summary.getErrors()) {
+            System.err.println(error.getSourcePath() + ": " + error.getCause());
+        }
+        for (Quarantine.Entry entry : summary.getQuarantined()) {
+            System.err.println(entry.getSourcePath() + ": exceeded the " + entry.getLimit().toLowerCase() +
+                               " budget in " + entry.getRecipe() +
+                               (entry.getMethod() == null ? "" : " at " + entry.getMethod()));
+        }
+        System.exit(summary.getErrors().isEmpty() ? 0 : 1);
+    }
+
+    /**
+     * Parses the options of {@link #main(String[])} from {@code args}, starting at {@code from}.
+     */
+    static void parseOptions(String[] args, int from, BatchOptions.BatchOptionsBuilder options, List<Recipe> recipes)
+            throws ReflectiveOperationException, IOException {
+        List<String> workerJvmOptions = new ArrayList<>();
+        for (int i = from; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            switch (args[i]) {
+                case "--threads":
+                    options.threads(Integer.parseInt(required(args[i], value)));
+                    i++;
+                    break;
+                case "--batch-size":
+                    options.batchSize(Integer.parseInt(required(args[i], value)));
+                    i++;
+                    break;
+                case "--streaming":
+                    options.streaming(true);
+                    break;
+                case "--max-in-flight":
+                    options.maxInFlight(Integer.parseInt(required(args[i], value)));
+                    i++;
+                    break;
+                case "--fused":
+                    options.fused(true);
+                    break;
+                case "--cycles":
+                    options.cycles(Integer.parseInt(required(args[i], value)));
+                    i++;
+                    break;
+                case "--cache":
+                    options.cacheFile(Paths.get(required(args[i], value)));
+                    i++;
+                    break;
+                case "--snapshot":
+                    options.snapshotDirectory(Paths.get(required(args[i], value)));
+                    i++;
+                    break;
+                case "--metrics":
+                    options.metricsFile(Paths.get(required(args[i], value)));
+                    i++;
+                    break;
+                case "--file-time-budget":
+                    options.fileTimeBudget(Duration.ofMillis(Long.parseLong(required(args[i], value))));
+                    i++;
+                    break;
+                case "--file-node-budget":
+                    options.fileNodeBudget(Long.parseLong(required(args[i], value)));
+                    i++;
+                    break;
+                case "--quarantine":
+                    options.quarantineFile(Paths.get(required(args[i], value)));
+                    i++;
+                    break;
+                case "--workers":
+                    options.workers(Integer.parseInt(required(args[i], value)));
+                    i++;
+                    break;
+                case "--worker-jvm-option":
+                    workerJvmOptions.add(required(args[i], value));
+                    i++;
+                    break;
+                case "--worker-timeout":
+                    options.workerTimeout(Duration.ofMillis(Long.parseLong(required(args[i], value))));
+                    i++;
+                    break;
+                case "--in-place":
+                    options.output(BatchOptions.Output.IN_PLACE);
+                    break;
+                case "--patch":
+                    options.output(BatchOptions.Output.PATCH).patchFile(Paths.get(required(args[i], value)));
+                    i++;
+                    break;
+                case "--classpath":
+                    options.classpath(Arrays.stream(required(args[i], value).split(java.io.File.pathSeparator))
+                            .map(Paths::get)
+                            .collect(Collectors.toList()));
+                    i++;
+                    break;
+                case "--max-cached-types":
+                    options.maxCachedTypes(Integer.parseInt(required(args[i], value)));
+                    i++;
+                    break;
+                case "--recipe":
+                    String className = required(args[i], value);
+                    i++;
+                    String recipeOptions = null;
+                    if (i + 2 < args.length && "--recipe-options".equals(args[i + 1])) {
+                        recipeOptions = args[i + 2];
+                        i += 2;
+                    }
+                    recipes.add(RecipeOptions.read(className, recipeOptions));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (!workerJvmOptions.isEmpty()) {
+            options.workerJvmOptions(workerJvmOptions);
+        }
+    }
+
+    private static String required(String option, @Nullable String value) {
+        if (value == null) {
+            throw new IllegalArgumentException(option + " requires a value");
+        }
+        return value;
+    }
+}
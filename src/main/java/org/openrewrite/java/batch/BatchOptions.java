@@ -0,0 +1,170 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.batch;
+
+import lombok.Builder;
+import lombok.Value;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.ParserSession;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+@Value
+@Builder(toBuilder = true)
+public class BatchOptions {
+    /**
+     * The number of worker threads, by default one per available processor.
+     */
+    @Builder.Default
+    int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The number of source files parsed and rewritten together by one task. Larger batches share more type
+     * attribution work within a parser, smaller ones balance better across threads.
+     */
+    @Builder.Default
+    int batchSize = 50;
+
+    @Builder.Default
+    Output output = Output.PATCH;
+
+    /**
+     * Where the unified diff of all changes is written when {@link #getOutput()} is {@link Output#PATCH}, by default
+     * {@code rewrite.patch} in the root directory.
+     */
+    @Nullable
+    Path patchFile;
+
+    /**
+     * The jars and directories the sources are compiled against, used for type attribution.
+     */
+    @Builder.Default
+    List<Path> classpath = Collections.emptyList();
+
+    /**
+     * The number of types each pooled parser may cache before its cache is emptied (see
+     * {@link org.openrewrite.java.ParserSession}), which bounds the heap taken by types between batches.
+     */
+    @Builder.Default
+    int maxCachedTypes = ParserSession.DEFAULT_MAX_TYPES;
+
+    /**
+     * Whether to parse, rewrite, write and discard sources one small batch at a time as the directory is walked,
+     * instead of finding all sources first and splitting the work up front. Only supported for single-source
+     * recipes. Sources in the same directory are batched together, as they are most likely to depend on each other.
+     */
+    boolean streaming;
+
+    /**
+     * The maximum number of source files that are parsed but not yet written at any time when {@link #isStreaming()},
+     * which bounds the memory taken by syntax trees regardless of the size of the source tree.
+     */
+    @Builder.Default
+    int maxInFlight = 200;
+
+    /**
+     * Whether to run consecutive {@link org.openrewrite.java.FusibleRecipe}s in a single traversal of each source
+     * (see {@link org.openrewrite.java.FusedRecipe}), rather than one traversal per recipe.
+     */
+    boolean fused;
+
+    /**
+     * The maximum number of cycles to run the recipes in, where each cycle after the first only revisits the source
+     * files of a batch changed by the previous cycle and those using their types (see
+     * {@link org.openrewrite.java.IncrementalRecipe}), or zero to leave the cycles to the recipe scheduler.
+     */
+    int cycles;
+
+    /**
+     * A file remembering the outcome for every source file across runs (see {@link ResultCache}), or {@code null} to
+     * always parse and visit all sources.
+     */
+    @Nullable
+    Path cacheFile;
+
+    /**
+     * A directory holding the parsed sources (see {@link LstSnapshot}), so that sources which have not changed are
+     * loaded instead of parsed, whichever recipes are run, or {@code null} to parse all sources. A snapshot taken
+     * with another {@link #getClasspath() classpath} is dropped.
+     */
+    @Nullable
+    Path snapshotDirectory;
+
+    /**
+     * Where to write the {@linkplain org.openrewrite.java.metrics.RecipeMetrics metrics} collected while the recipes
+     * run, as CSV if the file name ends with {@code .csv} and as JSON otherwise, or {@code null} to collect none.
+     */
+    @Nullable
+    Path metricsFile;
+
+    /**
+     * The wall time the recipes may spend on a single source file, or {@code null} for no limit. A file that takes
+     * longer is left unchanged and {@linkplain #getQuarantineFile() quarantined}.
+     */
+    @Nullable
+    Duration fileTimeBudget;
+
+    /**
+     * The number of tree nodes the recipes may visit in a single source file, or zero for no limit. Unlike
+     * {@link #getFileTimeBudget()}, it does not depend on the load of the machine, so the same files are
+     * quarantined on every run.
+     */
+    long fileNodeBudget;
+
+    /**
+     * A file listing the source files that went over their budget (see {@link Quarantine}), which are skipped by
+     * this and later runs, or {@code null} to only report them.
+     */
+    @Nullable
+    Path quarantineFile;
+
+    /**
+     * The number of worker JVMs that a {@link ShardCoordinator} splits the sources across, or zero to run the recipes
+     * in this JVM. Each worker has a heap of its own, so the syntax trees held at once are no longer bounded by a
+     * single heap.
+     */
+    int workers;
+
+    /**
+     * Options passed to every worker JVM, such as {@code -Xmx2g}.
+     */
+    @Builder.Default
+    List<String> workerJvmOptions = Collections.emptyList();
+
+    /**
+     * How long a worker JVM may go without reporting anything while it works on a shard, or {@code null} for no
+     * limit. A worker that takes longer is considered hung and is killed, and its shard is reported as failed rather
+     * than given to another worker.
+     */
+    @Nullable
+    @Builder.Default
+    Duration workerTimeout = Duration.ofMinutes(10);
+
+    public enum Output {
+        /**
+         * Write a single unified diff of all changes and leave the sources untouched.
+         */
+        PATCH,
+
+        /**
+         * Overwrite changed sources in place.
+         */
+        IN_PLACE
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.batch;
+
+import lombok.Value;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+@Value
+public class BatchSummary {
+    int files;
+    int changedFiles;
+    int threads;
+    Duration wallTime;
+
+    /**
+     * Time spent in each stage, summed over all threads.
+     */
+    Duration parseTime;
+    Duration recipeTime;
+    Duration writeTime;
+
+    /**
+     * Lookups in the {@link ResultCache}, if one was used. Files found in the cache are neither parsed nor visited.
+     */
+    long cacheHits;
+    long cacheMisses;
+
+    /**
+     * Source files loaded from the {@link LstSnapshot}, if one was used, rather than parsed.
+     */
+    long snapshotLoads;
+
+    List<Error> errors;
+
+    /**
+     * Source files that went over their budget in this run and were left unchanged.
+     */
+    List<Quarantine.Entry> quarantined;
+
+    /**
+     * Source files skipped because they were quarantined by an earlier run.
+     */
+    int skippedFiles;
+
+    public double cacheHitRate() {
+        return cacheHits + cacheMisses == 0 ? 0 : (double) cacheHits / (cacheHits + cacheMisses);
+    }
+
+    public double filesPerSecond() {
+        return filesPerSecond(wallTime, 1);
+    }
+
+    /**
+     * @return The throughput of a stage if it were the only work done, given that it ran on all threads.
+     */
+    public double filesPerSecond(Duration stageTime) {
+        return filesPerSecond(stageTime, threads);
+    }
+
+    private double filesPerSecond(Duration time, int parallelism) {
+        return time.isZero() ? 0 : files * parallelism * 1_000_000_000.0 / time.toNanos();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d files, %d changed, %d errors in %.1fs on %d threads (%.1f files/s)%n" +
+                             "  parse:  %.1f files/s%n" +
+                             "  recipe: %.1f files/s%n" +
+                             "  write:  %.1f files/s%n" +
+                             "  cache:  %d hits, %d misses (%.1f%% hit rate)%n" +
+                             "  snapshot: %d loaded%n" +
+                             "  budget: %d quarantined, %d skipped",
+                files, changedFiles, errors.size(), wallTime.toMillis() / 1000.0, threads, filesPerSecond(),
+                filesPerSecond(parseTime), filesPerSecond(recipeTime), filesPerSecond(writeTime),
+                cacheHits, cacheMisses, cacheHitRate() * 100, snapshotLoads, quarantined.size(), skippedFiles);
+    }
+
+    @Value
+    public static class Error {
+        /**
+         * The source file the error occurred in, or the first file of the batch if it could not be attributed.
+         */
+        Path sourcePath;
+
+        Throwable cause;
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.batch;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.tree.J;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A directory holding type-attributed {@link J.CompilationUnit}s in binary form, so that sources which have not
+ * changed since they were last parsed can be loaded instead of being parsed again, whichever recipes are run on them.
+ * <p>
+ * Compilation units are serialized to Smile, each as an independent entry appended to a data file. Within an entry,
+ * every {@link org.openrewrite.java.tree.JavaType} is written once and referred to by id wherever else it occurs, so
+ * entries stay small while still being loadable one at a time. An index file maps source paths to the hash of the
+ * source an entry was parsed from, the {@linkplain ResultCache#dependencies(Map) digest of the sources parsed together
+ * with it}, and its location in the data file. On open, the index is read and the data file is memory-mapped, and an
+ * entry is only deserialized when it is {@linkplain #load(Path, byte[], byte[]) loaded}. Entries whose source hash
+ * differs from the current source are stale and are never returned, and so are entries whose types were attributed
+ * while parsing other versions of the sources they depend on.
+ * <p>
+ * The index starts with the {@linkplain ResultCache#classpathFingerprint(List) fingerprint of the classpath} the
+ * entries were attributed with. A snapshot opened with another fingerprint is emptied, as its types may be out of
+ * date with the jars it was parsed against.
+ * <p>
+ * New entries are appended while the snapshot is open, and the index is replaced when it is closed, so a snapshot
+ * that is not closed keeps its previous contents. Entries are never removed, so a snapshot of a frequently changing
+ * tree should be deleted now and then to reclaim space.
+ * <p>
+ * Loads and puts are thread-safe.
+ */
+public class LstSnapshot implements Closeable {
+    private static final int MAGIC = 0x52574c55;
+    private static final String INDEX = "snapshot.idx";
+    private static final String DATA = "snapshot.dat";
+
+    private static final ObjectMapper MAPPER = createMapper();
+
+    private final Path directory;
+    private final byte[] classpathFingerprint;
+    private final FileChannel data;
+    private final Map<String, Entry> index;
+
+    /**
+     * The data file as it was when the snapshot was opened. Entries appended since are read through the channel.
+     */
+    private final MappedByteBuffer mapped;
+
+    private final LongAdder loads = new LongAdder();
+
+    private long size;
+    private boolean changed;
+
+    private LstSnapshot(Path directory, byte[] classpathFingerprint, FileChannel data, Map<String, Entry> index,
+                        MappedByteBuffer mapped, boolean changed) throws IOException {
+        this.directory = directory;
+        this.classpathFingerprint = classpathFingerprint;
+        this.data = data;
+        this.index = index;
+        this.mapped = mapped;
+        this.size = data.size();
+        this.changed = changed;
+    }
+
+    private static ObjectMapper createMapper() {
+        SmileFactory smile = new SmileFactory();
+        // names and string values such as simple names and prefixes repeat a lot within a compilation unit
+        smile.enable(SmileGenerator.Feature.CHECK_SHARED_NAMES);
+        smile.enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
+        return new ObjectMapper(smile)
+                .registerModule(new ParameterNamesModule())
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
+                .setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
+                .setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
+                .setVisibility(PropertyAccessor.CREATOR, JsonAutoDetect.Visibility.ANY);
+    }
+
+    /**
+     * @param classpathFingerprint See {@link ResultCache#classpathFingerprint(List)}.
+     */
+    public static LstSnapshot open(Path directory, String classpathFingerprint) throws IOException {
+        Files.createDirectories(directory);
+        byte[] fingerprint = classpathFingerprint.getBytes(StandardCharsets.UTF_8);
+        Map<String, Entry> index = readIndex(directory.resolve(INDEX), fingerprint);
+        // a snapshot of another classpath is dropped, and the new fingerprint is written even if nothing is added
+        boolean dropped = index == null;
+        if (dropped) {
+            index = new ConcurrentHashMap<>();
+        }
+        FileChannel data = FileChannel.open(directory.resolve(DATA), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long indexed = 0;
+            for (Entry entry : index.values()) {
+                indexed = Math.max(indexed, entry.offset + entry.length);
+            }
+            // anything past the last indexed entry was appended by a run that was not closed
+            if (data.size() > indexed) {
+                data.truncate(indexed);
+            }
+            if (indexed > Integer.MAX_VALUE) {
+                throw new IOException("Snapshots larger than 2 GB are not supported, delete " + directory);
+            }
+            return new LstSnapshot(directory, fingerprint, data, index,
+                    data.map(FileChannel.MapMode.READ_ONLY, 0, indexed), dropped);
+        } catch (IOException | RuntimeException e) {
+            data.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The entries of the index, or {@code null} if it was written by another version or for another
+     * classpath.
+     */
+    @Nullable
+    private static Map<String, Entry> readIndex(Path indexFile, byte[] classpathFingerprint) throws IOException {
+        Map<String, Entry> index = new ConcurrentHashMap<>();
+        if (!Files.exists(indexFile)) {
+            return index;
+        }
+
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC ||
+                buffer.getInt() != classpathFingerprint.length || buffer.remaining() < classpathFingerprint.length + 4) {
+                return null;
+            }
+            byte[] fingerprint = new byte[classpathFingerprint.length];
+            buffer.get(fingerprint);
+            if (!MessageDigest.isEqual(fingerprint, classpathFingerprint)) {
+                return null;
+            }
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                byte[] path = new byte[buffer.getInt()];
+                buffer.get(path);
+                byte[] sourceHash = new byte[buffer.getInt()];
+                buffer.get(sourceHash);
+                byte[] dependencies = new byte[buffer.getInt()];
+                buffer.get(dependencies);
+                long offset = buffer.getLong();
+                int length = buffer.getInt();
+                index.put(new String(path, StandardCharsets.UTF_8), new Entry(sourceHash, dependencies, offset, length));
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @param sourcePath   The path of the source file relative to the root of the source tree.
+     * @param sourceHash   The {@link #hash(byte[])} of the current content of the source file.
+     * @param dependencies The {@linkplain ResultCache#dependencies(Map) digest} of the current content of the sources
+     *                     it is parsed together with.
+     * @return Whether the snapshot has a compilation unit parsed from the same content with the same dependencies.
+     */
+    public boolean contains(Path sourcePath, byte[] sourceHash, byte[] dependencies) {
+        Entry entry = index.get(key(sourcePath));
+        return entry != null && MessageDigest.isEqual(entry.sourceHash, sourceHash) &&
+               MessageDigest.isEqual(entry.dependencies, dependencies);
+    }
+
+    /**
+     * @return The compilation unit parsed from the same content with the same dependencies, or {@code null} if the
+     * snapshot has none. See {@link #contains(Path, byte[], byte[])} for the parameters.
+     */
+    @Nullable
+    public J.CompilationUnit load(Path sourcePath, byte[] sourceHash, byte[] dependencies) throws IOException {
+        if (!contains(sourcePath, sourceHash, dependencies)) {
+            return null;
+        }
+        Entry entry = index.get(key(sourcePath));
+
+        InputStream in;
+        if (entry.offset + entry.length <= mapped.capacity()) {
+            ByteBuffer slice = mapped.duplicate();
+            slice.position((int) entry.offset);
+            slice.limit((int) entry.offset + entry.length);
+            in = new ByteBufferBackedInputStream(slice);
+        } else {
+            ByteBuffer buffer = ByteBuffer.allocate(entry.length);
+            while (buffer.hasRemaining()) {
+                if (data.read(buffer, entry.offset + buffer.position()) < 0) {
+                    return null;
+                }
+            }
+            buffer.flip();
+            in = new ByteBufferBackedInputStream(buffer);
+        }
+        J.CompilationUnit cu = MAPPER.readValue(in, J.CompilationUnit.class);
+        loads.increment();
+        return cu;
+    }
+
+    /**
+     * Adds or replaces the entry for a compilation unit.
+     *
+     * @param sourceHash   The {@link #hash(byte[])} of the content the compilation unit was parsed from.
+     * @param dependencies The {@linkplain ResultCache#dependencies(Map) digest} of the sources it was parsed with.
+     */
+    public void put(J.CompilationUnit cu, byte[] sourceHash, byte[] dependencies) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MAPPER.writeValue(out, cu);
+        ByteBuffer bytes = ByteBuffer.wrap(out.toByteArray());
+
+        long offset;
+        synchronized (this) {
+            offset = size;
+            size += bytes.remaining();
+            changed = true;
+        }
+        while (bytes.hasRemaining()) {
+            data.write(bytes, offset + bytes.position());
+        }
+        index.put(key(cu.getSourcePath()), new Entry(sourceHash.clone(), dependencies.clone(), offset, out.size()));
+    }
+
+    /**
+     * @return The number of compilation units loaded rather than parsed since the snapshot was opened.
+     */
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    public static byte[] hash(byte[] source) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(source);
+        } catch (java.security.NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Writes the index of all entries, replacing the previous one only once it is complete.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!changed) {
+                return;
+            }
+            data.force(false);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ByteBuffer header = ByteBuffer.allocate(12 + classpathFingerprint.length)
+                    .putInt(MAGIC)
+                    .putInt(classpathFingerprint.length)
+                    .put(classpathFingerprint)
+                    .putInt(index.size());
+            out.write(header.array());
+            for (Map.Entry<String, Entry> indexEntry : index.entrySet()) {
+                byte[] path = indexEntry.getKey().getBytes(StandardCharsets.UTF_8);
+                Entry entry = indexEntry.getValue();
+                ByteBuffer record = ByteBuffer.allocate(4 + path.length + 4 + entry.sourceHash.length +
+                                                        4 + entry.dependencies.length + 8 + 4)
+                        .putInt(path.length)
+                        .put(path)
+                        .putInt(entry.sourceHash.length)
+                        .put(entry.sourceHash)
+                        .putInt(entry.dependencies.length)
+                        .put(entry.dependencies)
+                        .putLong(entry.offset)
+                        .putInt(entry.length);
+                out.write(record.array());
+            }
+
+            Path tmp = directory.resolve(INDEX + ".tmp");
+            Files.write(tmp, out.toByteArray());
+            Files.move(tmp, directory.resolve(INDEX), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            data.close();
+        }
+    }
+
+    private static String key(Path sourcePath) {
+        return sourcePath.toString().replace('\\', '/');
+    }
+
+    private static final class Entry {
+        private final byte[] sourceHash;
+        private final byte[] dependencies;
+        private final long offset;
+        private final int length;
+
+        private Entry(byte[] sourceHash, byte[] dependencies, long offset, int length) {
+            this.sourceHash = sourceHash;
+            this.dependencies = dependencies;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
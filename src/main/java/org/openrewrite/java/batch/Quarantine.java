@@ -0,0 +1,132 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.batch;
+
+import lombok.Value;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.budget.FileBudgetExceededException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The source files that went over their {@link org.openrewrite.java.budget.FileBudget} in an earlier run and are
+ * skipped by later ones. The list is kept as a tab-separated text file with one line per source file, holding its
+ * path relative to the root, the recipe and method declaration that ran out of budget and the limit that was hit.
+ * Deleting a line makes the next run try the file again.
+ * <p>
+ * Additions are thread-safe, and the file is rewritten on {@link #close()} if any were made.
+ */
+public class Quarantine implements Closeable {
+    private final Path file;
+    private final Map<Path, Entry> entries = new ConcurrentSkipListMap<>();
+    private final AtomicBoolean changed = new AtomicBoolean();
+
+    private Quarantine(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * @param file The quarantine file, which need not exist yet.
+     */
+    public static Quarantine open(Path file) throws IOException {
+        Quarantine quarantine = new Quarantine(file);
+        if (Files.exists(file)) {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] columns = line.split("\t", -1);
+                Path sourcePath = Paths.get(columns[0]);
+                quarantine.entries.put(sourcePath, new Entry(
+                        sourcePath,
+                        columns.length > 1 ? columns[1] : "",
+                        columns.length > 2 && !columns[2].isEmpty() ? columns[2] : null,
+                        columns.length > 3 ? columns[3] : ""
+                ));
+            }
+        }
+        return quarantine;
+    }
+
+    public boolean contains(Path sourcePath) {
+        return entries.containsKey(sourcePath);
+    }
+
+    public void add(Entry entry) {
+        entries.put(entry.getSourcePath(), entry);
+        changed.set(true);
+    }
+
+    public List<Entry> getEntries() {
+        return new ArrayList<>(entries.values());
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!changed.get()) {
+            return;
+        }
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            writer.write("# source path\trecipe\tmethod\tlimit\n");
+            for (Entry entry : entries.values()) {
+                writer.write(entry.getSourcePath().toString().replace('\\', '/') + '\t' + entry.getRecipe() + '\t' +
+                             (entry.getMethod() == null ? "" : entry.getMethod()) + '\t' + entry.getLimit() + '\n');
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Value
+    public static class Entry {
+        /**
+         * Relative to the root directory of the run.
+         */
+        Path sourcePath;
+
+        /**
+         * The recipe that was running when the budget ran out, or an empty string if none had started yet.
+         */
+        String recipe;
+
+        /**
+         * The method declaration that was being visited, if any.
+         */
+        @Nullable
+        String method;
+
+        String limit;
+
+        static Entry of(Path sourcePath, FileBudgetExceededException exceeded) {
+            return new Entry(sourcePath, exceeded.getRecipe(), exceeded.getMethod(), exceeded.getLimit().name());
+        }
+    }
+}
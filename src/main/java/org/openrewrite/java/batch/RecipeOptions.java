@@ -0,0 +1,90 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.batch;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import org.openrewrite.Option;
+import org.openrewrite.Recipe;
+import org.openrewrite.internal.lang.Nullable;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes the {@link Option} values of a recipe as JSON and recreates the recipe from them, which is how recipes are
+ * passed to the worker JVMs of a {@link ShardCoordinator}. A recipe with options is recreated by its
+ * {@link JsonCreator}, and one without options by its no-argument constructor.
+ */
+final class RecipeOptions {
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .registerModule(new ParameterNamesModule(JsonCreator.Mode.PROPERTIES));
+
+    private RecipeOptions() {
+    }
+
+    /**
+     * @return The options of the recipe by field name, or {@code null} if it declares none.
+     */
+    @Nullable
+    static String write(Recipe recipe) throws IllegalAccessException, IOException {
+        Map<String, Object> options = new LinkedHashMap<>();
+        for (Class<?> c = recipe.getClass(); c != Recipe.class && c != null; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (field.isAnnotationPresent(Option.class) && !Modifier.isStatic(field.getModifiers())) {
+                    field.setAccessible(true);
+                    options.put(field.getName(), field.get(recipe));
+                }
+            }
+        }
+        return options.isEmpty() ? null : MAPPER.writeValueAsString(options);
+    }
+
+    static Recipe read(String className, @Nullable String options) throws ReflectiveOperationException, IOException {
+        Class<?> recipeClass = Class.forName(className);
+        if (!Recipe.class.isAssignableFrom(recipeClass)) {
+            throw new IllegalArgumentException(className + " is not a recipe");
+        }
+        return options == null ?
+                (Recipe) recipeClass.getDeclaredConstructor().newInstance() :
+                (Recipe) MAPPER.readValue(options, recipeClass);
+    }
+
+    /**
+     * @return The options of the recipe, as {@link #write(Recipe)} returns them.
+     * @throws IllegalArgumentException If the recipe cannot be recreated from its options, or the recreated recipe
+     *                                  has other options.
+     */
+    @Nullable
+    static String checkRecreatable(Recipe recipe) {
+        String className = recipe.getClass().getName();
+        try {
+            String options = write(recipe);
+            String recreated = write(read(className, options));
+            if (options != null && !options.equals(recreated)) {
+                throw new IllegalArgumentException(className + " does not keep its options " + options +
+                                                   " when recreated from them, but has " + recreated);
+            }
+            return options;
+        } catch (ReflectiveOperationException | IOException e) {
+            throw new IllegalArgumentException(className + " cannot be recreated in a worker from its options", e);
+        }
+    }
+}
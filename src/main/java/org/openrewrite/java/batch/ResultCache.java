@@ -0,0 +1,370 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.batch;
+
+import lombok.Value;
+import org.openrewrite.Option;
+import org.openrewrite.Recipe;
+import org.openrewrite.internal.lang.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers the outcome of running a recipe list on a source file, keyed by the path and content of the file and
+ * the {@linkplain #dependencies(Map) sources parsed together with it}, so that unchanged files are neither parsed nor
+ * visited again by later runs. A recipe may change a file because of the types declared by another file it is parsed
+ * with, e.g. when it makes a method static that the file calls, so a change to any of them is a change to the file.
+ * <p>
+ * Entries are appended to a single file, preceded by a header holding the fingerprint of everything besides the
+ * sources that the outcome depends on: the recipes and their options, how they are scheduled, the version of the jar
+ * they are loaded from, and the classpath used for type attribution. A cache opened with another fingerprint is
+ * emptied. The index
+ * of entries is rebuilt on open by scanning the memory-mapped file, and a partially written entry at its end, left
+ * behind by an interrupted run, is discarded.
+ * <p>
+ * Lookups and appends are thread-safe.
+ */
+public class ResultCache implements Closeable {
+    /**
+     * Identifies the file format as well as the kind of file, so that caches written in an earlier format are emptied.
+     */
+    private static final int MAGIC = 0x52575244;
+    private static final int KEY_LENGTH = 32;
+    private static final byte UNCHANGED = 0;
+    private static final byte CHANGED = 1;
+
+    private final FileChannel channel;
+    private final Map<ByteBuffer, Long> index = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private long size;
+
+    private ResultCache(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * @param file        The cache file, which is created if it does not exist.
+     * @param fingerprint See {@link #fingerprint(List, BatchOptions)}.
+     */
+    public static ResultCache open(Path file, String fingerprint) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        ResultCache cache = new ResultCache(channel);
+        try {
+            cache.load(fingerprint.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return cache;
+    }
+
+    private void load(byte[] fingerprint) throws IOException {
+        long fileSize = channel.size();
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        if (!hasHeader(mapped, fingerprint)) {
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(8 + fingerprint.length);
+            header.putInt(MAGIC).putInt(fingerprint.length).put(fingerprint).flip();
+            size = write(header, 0);
+            return;
+        }
+
+        while (mapped.remaining() >= KEY_LENGTH + 1 + 8) {
+            int start = mapped.position();
+            byte[] key = new byte[KEY_LENGTH];
+            mapped.get(key);
+            mapped.get();
+            int afterLength = mapped.getInt();
+            if (afterLength > mapped.remaining() - 4) {
+                mapped.position(start);
+                break;
+            }
+            mapped.position(mapped.position() + afterLength);
+            int diffLength = mapped.getInt();
+            if (diffLength > mapped.remaining()) {
+                mapped.position(start);
+                break;
+            }
+            mapped.position(mapped.position() + diffLength);
+            if (mapped.remaining() < 4) {
+                mapped.position(start);
+                break;
+            }
+            int charsetLength = mapped.getInt();
+            if (charsetLength > mapped.remaining()) {
+                mapped.position(start);
+                break;
+            }
+            mapped.position(mapped.position() + charsetLength);
+            index.put(ByteBuffer.wrap(key), (long) start + KEY_LENGTH);
+        }
+
+        size = mapped.position();
+        if (size < fileSize) {
+            channel.truncate(size);
+        }
+    }
+
+    private static boolean hasHeader(ByteBuffer mapped, byte[] fingerprint) {
+        if (mapped.remaining() < 8 + fingerprint.length || mapped.getInt() != MAGIC ||
+            mapped.getInt() != fingerprint.length) {
+            return false;
+        }
+        byte[] stored = new byte[fingerprint.length];
+        mapped.get(stored);
+        return MessageDigest.isEqual(stored, fingerprint);
+    }
+
+    /**
+     * @return The cached outcome for a source file, or {@code null} if it was not run with the same fingerprint yet.
+     */
+    @Nullable
+    public Entry get(byte[] key) throws IOException {
+        Long offset = index.get(ByteBuffer.wrap(key));
+        if (offset == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+
+        ByteBuffer header = read(offset, 5);
+        if (header.get() == UNCHANGED) {
+            return Entry.UNCHANGED;
+        }
+        int afterLength = header.getInt();
+        String after = new String(read(offset + 5, afterLength).array(), StandardCharsets.UTF_8);
+        int diffLength = read(offset + 5 + afterLength, 4).getInt();
+        String diff = new String(read(offset + 9 + afterLength, diffLength).array(), StandardCharsets.UTF_8);
+        int charsetLength = read(offset + 9 + afterLength + diffLength, 4).getInt();
+        String charset = new String(read(offset + 13 + afterLength + diffLength, charsetLength).array(),
+                StandardCharsets.UTF_8);
+        return new Entry(after, diff, charset.isEmpty() ? null : Charset.forName(charset));
+    }
+
+    public void put(byte[] key, Entry entry) throws IOException {
+        byte[] after = entry.getAfter() == null ? new byte[0] : entry.getAfter().getBytes(StandardCharsets.UTF_8);
+        byte[] diff = entry.getDiff() == null ? new byte[0] : entry.getDiff().getBytes(StandardCharsets.UTF_8);
+        byte[] charset = entry.getCharset() == null ? new byte[0] :
+                entry.getCharset().name().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(KEY_LENGTH + 1 + 4 + after.length + 4 + diff.length + 4 + charset.length)
+                .put(key)
+                .put(entry.isChanged() ? CHANGED : UNCHANGED)
+                .putInt(after.length)
+                .put(after)
+                .putInt(diff.length)
+                .put(diff)
+                .putInt(charset.length)
+                .put(charset);
+        record.flip();
+
+        long offset;
+        synchronized (this) {
+            offset = size;
+            size += write(record, offset);
+        }
+        index.put(ByteBuffer.wrap(key.clone()), offset + KEY_LENGTH);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int write(ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of result cache at " + position);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * @param sourcePath   The path of the source file, relative to the root of the run.
+     * @param content      The content of the source file.
+     * @param dependencies The {@linkplain #dependencies(Map) digest} of the sources parsed together with it.
+     * @return The key of the outcome for a source file.
+     */
+    public static byte[] key(Path sourcePath, byte[] content, byte[] dependencies) {
+        MessageDigest digest = sha256();
+        digest.update(sourcePath.toString().replace('\\', '/').getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(dependencies);
+        return digest.digest(content);
+    }
+
+    /**
+     * @param contents The content of every source file parsed together, by path relative to the root of the run.
+     * @return A digest of the paths and contents of the source files, whose types are the only ones besides the
+     * classpath that the recipes may see while visiting any of them.
+     */
+    public static byte[] dependencies(Map<Path, byte[]> contents) {
+        MessageDigest digest = sha256();
+        for (Map.Entry<Path, byte[]> source : new TreeMap<>(contents).entrySet()) {
+            digest.update(source.getKey().toString().replace('\\', '/').getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(sha256().digest(source.getValue()));
+        }
+        return digest.digest();
+    }
+
+    /**
+     * @return A digest of the names and options of the recipes, whether they are fused and in how many cycles they
+     * run, the version of the jar this class is loaded from and the names, sizes and modification times of the
+     * classpath entries.
+     */
+    public static String fingerprint(List<Recipe> recipes, BatchOptions options) {
+        StringBuilder identity = new StringBuilder();
+        for (Recipe recipe : recipes) {
+            identity.append(recipe.getName());
+            for (Field field : recipe.getClass().getDeclaredFields()) {
+                if (field.isAnnotationPresent(Option.class)) {
+                    field.setAccessible(true);
+                    try {
+                        identity.append(':').append(field.getName()).append('=').append(field.get(recipe));
+                    } catch (IllegalAccessException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+            identity.append('\n');
+        }
+        identity.append("fused:").append(options.isFused()).append('\n');
+        identity.append("cycles:").append(options.getCycles()).append('\n');
+        identity.append(classpathFingerprint(options.getClasspath()));
+        return hex(identity);
+    }
+
+    /**
+     * @return A digest of the version of the jar this class is loaded from and the names, sizes and modification
+     * times of the classpath entries, which determine the types attributed to the sources.
+     */
+    public static String classpathFingerprint(List<Path> classpath) {
+        StringBuilder identity = new StringBuilder();
+        identity.append("version:").append(version()).append('\n');
+        for (Path entry : classpath) {
+            identity.append("classpath:").append(entry).append(':');
+            try {
+                identity.append(Files.size(entry)).append(':').append(Files.getLastModifiedTime(entry).toMillis());
+            } catch (IOException e) {
+                identity.append("missing");
+            }
+            identity.append('\n');
+        }
+        return hex(identity);
+    }
+
+    private static String hex(CharSequence identity) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : sha256().digest(identity.toString().getBytes(StandardCharsets.UTF_8))) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * The implementation version of the jar if it declares one, or else its size and modification time, so that
+     * snapshot builds of the recipes invalidate the cache too.
+     */
+    private static String version() {
+        String version = ResultCache.class.getPackage().getImplementationVersion();
+        CodeSource codeSource = ResultCache.class.getProtectionDomain().getCodeSource();
+        if (codeSource == null || codeSource.getLocation() == null) {
+            return String.valueOf(version);
+        }
+        try {
+            Path location = Paths.get(codeSource.getLocation().toURI());
+            return version + ":" + Files.size(location) + ":" + Files.getLastModifiedTime(location).toMillis();
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            return String.valueOf(version);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Value
+    public static class Entry {
+        static final Entry UNCHANGED = new Entry(null, null, null);
+
+        /**
+         * The content of the source file after running the recipes, or {@code null} if they did not change it.
+         */
+        @Nullable
+        String after;
+
+        @Nullable
+        String diff;
+
+        /**
+         * The charset the source file is written in, or {@code null} if the recipes did not change it.
+         */
+        @Nullable
+        Charset charset;
+
+        public boolean isChanged() {
+            return after != null;
+        }
+    }
+}
@@ -0,0 +1,566 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.batch;
+
+import org.openrewrite.Recipe;
+import org.openrewrite.internal.lang.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the recipes in {@link BatchOptions#getWorkers()} worker JVMs (see {@link ShardWorker}) on this machine, so
+ * that the syntax trees held at once are spread over as many heaps. The sources are partitioned into shards of whole
+ * packages, which do not cross module boundaries. A module with more sources than fit a shard is split between
+ * packages, and each shard is parsed on its own, so the types declared in the other shards of a module are only
+ * attributed if its compiled classes are on the {@linkplain BatchOptions#getClasspath() classpath}. There are several
+ * shards per worker, and an idle worker takes the next one, which balances the load.
+ * <p>
+ * Workers stream the outcome of every changed file back, which is applied once the whole shard is done, and all
+ * changes are merged into a single patch or written in place. A worker that dies takes none of its partial results
+ * with it: it is replaced, and its shard is given to the next idle worker, up to {@value #MAX_ATTEMPTS} times. A
+ * worker that reports nothing for {@linkplain BatchOptions#getWorkerTimeout() too long} is considered hung instead:
+ * it is killed and replaced, and its shard is reported as failed, as it would most likely hang the next worker too.
+ * <p>
+ * Recipes are recreated in the workers from their {@link org.openrewrite.Option} values (see {@link RecipeOptions}),
+ * and recipes that cannot be are rejected up front. The {@linkplain BatchOptions#getCacheFile() result cache},
+ * {@linkplain BatchOptions#getSnapshotDirectory() snapshot} and {@linkplain BatchOptions#getMetricsFile() metrics}
+ * are not supported, as they are owned by a single process. The {@linkplain BatchOptions#getQuarantineFile()
+ * quarantine} is kept by the coordinator.
+ */
+public class ShardCoordinator {
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int SHARDS_PER_WORKER = 4;
+    private static final String[] BUILD_FILES = {"pom.xml", "build.gradle", "build.gradle.kts"};
+
+    private final BatchOptions options;
+
+    /**
+     * The {@code --recipe} arguments of the workers.
+     */
+    private final List<String> recipeArguments = new ArrayList<>();
+
+    /**
+     * @throws IllegalArgumentException If a recipe cannot be recreated in a worker from its options.
+     */
+    public ShardCoordinator(List<Recipe> recipes, BatchOptions options) {
+        for (Recipe recipe : recipes) {
+            String recipeOptions = RecipeOptions.checkRecreatable(recipe);
+            recipeArguments.add("--recipe");
+            recipeArguments.add(recipe.getClass().getName());
+            if (recipeOptions != null) {
+                recipeArguments.add("--recipe-options");
+                recipeArguments.add(recipeOptions);
+            }
+        }
+        this.options = options;
+    }
+
+    public BatchSummary run(Path root) throws IOException {
+        long start = System.nanoTime();
+        Path patchFile = options.getPatchFile() == null ? root.resolve("rewrite.patch") : options.getPatchFile();
+        Merge merge = new Merge(root);
+
+        try (Quarantine quarantine = options.getQuarantineFile() == null ? null :
+                Quarantine.open(options.getQuarantineFile())) {
+            List<Path> sources = new ArrayList<>();
+            for (Path source : BatchDriver.findSources(root)) {
+                if (quarantine != null && quarantine.contains(root.relativize(source))) {
+                    merge.skippedFiles.incrementAndGet();
+                } else {
+                    sources.add(source);
+                }
+            }
+
+            List<Shard> shards = shards(root, sources);
+            BlockingQueue<Shard> queue = new LinkedBlockingQueue<>(shards);
+            AtomicInteger remaining = new AtomicInteger(shards.size());
+            int workers = Math.max(1, Math.min(options.getWorkers(), shards.size()));
+            ExecutorService executor = Executors.newFixedThreadPool(workers);
+            ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "shard-worker-watchdog");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                List<Future<?>> drivers = new ArrayList<>(workers);
+                for (int i = 0; i < workers; i++) {
+                    drivers.add(executor.submit(() -> {
+                        drive(root, queue, remaining, merge, watchdog);
+                        return null;
+                    }));
+                }
+                for (Future<?> driver : drivers) {
+                    driver.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for workers", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to drive a worker", e.getCause());
+            } finally {
+                executor.shutdownNow();
+                watchdog.shutdownNow();
+            }
+
+            if (quarantine != null) {
+                for (Quarantine.Entry entry : merge.quarantined) {
+                    quarantine.add(entry);
+                }
+            }
+        }
+
+        if (options.getOutput() == BatchOptions.Output.PATCH) {
+            long writeStart = System.nanoTime();
+            Files.write(patchFile, String.join("", merge.diffs.values()).getBytes(StandardCharsets.UTF_8));
+            merge.writeNanos.add(System.nanoTime() - writeStart);
+        }
+
+        return new BatchSummary(
+                merge.files.get(),
+                merge.changedFiles.get(),
+                options.getWorkers(),
+                Duration.ofNanos(System.nanoTime() - start),
+                Duration.ofNanos(merge.parseNanos.sum()),
+                Duration.ofNanos(merge.recipeNanos.sum()),
+                Duration.ofNanos(merge.writeNanos.sum()),
+                0,
+                0,
+                0,
+                new ArrayList<>(merge.errors),
+                new ArrayList<>(merge.quarantined),
+                merge.skippedFiles.get()
+        );
+    }
+
+    /**
+     * Groups the sources by package and fills shards of about equal size with whole packages, starting a new shard
+     * whenever the next package belongs to another module or would exceed the size of a shard.
+     */
+    List<Shard> shards(Path root, List<Path> sources) {
+        Map<Path, List<Path>> packages = new LinkedHashMap<>();
+        for (Path source : sources) {
+            packages.computeIfAbsent(source.getParent(), p -> new ArrayList<>()).add(root.relativize(source));
+        }
+
+        int targetSize = Math.max(1, (sources.size() + options.getWorkers() * SHARDS_PER_WORKER - 1) /
+                                     Math.max(1, options.getWorkers() * SHARDS_PER_WORKER));
+        Map<Path, Path> modules = new HashMap<>();
+        List<Shard> shards = new ArrayList<>();
+        List<Path> shard = new ArrayList<>();
+        Path shardModule = null;
+        for (Map.Entry<Path, List<Path>> pkg : packages.entrySet()) {
+            Path module = module(root, pkg.getKey(), modules);
+            if (!shard.isEmpty() && (shard.size() + pkg.getValue().size() > targetSize || !module.equals(shardModule))) {
+                shards.add(new Shard(shards.size(), shard));
+                shard = new ArrayList<>();
+            }
+            shard.addAll(pkg.getValue());
+            shardModule = module;
+        }
+        if (!shard.isEmpty()) {
+            shards.add(new Shard(shards.size(), shard));
+        }
+        return shards;
+    }
+
+    /**
+     * @return The closest directory containing a build file, or the root if there is none.
+     */
+    private static Path module(Path root, Path directory, Map<Path, Path> modules) {
+        Path module = modules.get(directory);
+        if (module == null) {
+            module = root;
+            for (String buildFile : BUILD_FILES) {
+                if (Files.isRegularFile(directory.resolve(buildFile))) {
+                    module = directory;
+                    break;
+                }
+            }
+            if (module == root && !directory.equals(root) && directory.getParent() != null) {
+                module = module(root, directory.getParent(), modules);
+            }
+            modules.put(directory, module);
+        }
+        return module;
+    }
+
+    /**
+     * Feeds shards to one worker until all shards are done, replacing the worker whenever it dies.
+     */
+    private void drive(Path root, BlockingQueue<Shard> queue, AtomicInteger remaining, Merge merge,
+                       ScheduledExecutorService watchdog) throws Exception {
+        Worker worker = null;
+        try {
+            while (remaining.get() > 0) {
+                Shard shard = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (shard == null) {
+                    continue;
+                }
+
+                ShardResult result;
+                try {
+                    if (worker == null) {
+                        worker = startWorker(root, watchdog);
+                    }
+                    result = worker.run(shard);
+                } catch (IOException e) {
+                    if (worker != null) {
+                        worker.kill();
+                        worker = null;
+                    }
+                    if (e instanceof WorkerTimeoutException) {
+                        merge.errors.add(new BatchSummary.Error(root.resolve(shard.sources.get(0)), e));
+                        remaining.decrementAndGet();
+                    } else if (++shard.attempts < MAX_ATTEMPTS) {
+                        queue.add(shard);
+                    } else {
+                        merge.errors.add(new BatchSummary.Error(root.resolve(shard.sources.get(0)),
+                                new IOException("Gave up on shard " + shard.id + " of " + shard.sources.size() +
+                                                " files after " + MAX_ATTEMPTS + " workers died on it", e)));
+                        remaining.decrementAndGet();
+                    }
+                    continue;
+                }
+
+                merge.apply(result, options.getOutput());
+                remaining.decrementAndGet();
+            }
+        } finally {
+            if (worker != null) {
+                worker.stop();
+            }
+        }
+    }
+
+    private Worker startWorker(Path root, ScheduledExecutorService watchdog) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(options.getWorkerJvmOptions());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ShardWorker.class.getName());
+        command.add(root.toString());
+        command.add("--batch-size");
+        command.add(Integer.toString(options.getBatchSize()));
+        if (options.isFused()) {
+            command.add("--fused");
+        }
+        if (options.getCycles() > 0) {
+            command.add("--cycles");
+            command.add(Integer.toString(options.getCycles()));
+        }
+        if (!options.getClasspath().isEmpty()) {
+            StringBuilder classpath = new StringBuilder();
+            for (Path entry : options.getClasspath()) {
+                if (classpath.length() > 0) {
+                    classpath.append(File.pathSeparator);
+                }
+                classpath.append(entry);
+            }
+            command.add("--classpath");
+            command.add(classpath.toString());
+        }
+        if (options.getFileTimeBudget() != null) {
+            command.add("--file-time-budget");
+            command.add(Long.toString(options.getFileTimeBudget().toMillis()));
+        }
+        if (options.getFileNodeBudget() > 0) {
+            command.add("--file-node-budget");
+            command.add(Long.toString(options.getFileNodeBudget()));
+        }
+        command.add("--max-cached-types");
+        command.add(Integer.toString(options.getMaxCachedTypes()));
+        command.addAll(recipeArguments);
+
+        Process process = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        return new Worker(process, options.getWorkerTimeout(), watchdog);
+    }
+
+    static class Shard {
+        final int id;
+
+        /**
+         * Relative to the root.
+         */
+        final List<Path> sources;
+
+        int attempts;
+
+        Shard(int id, List<Path> sources) {
+            this.id = id;
+            this.sources = sources;
+        }
+    }
+
+    private static class Worker {
+        private final Process process;
+        private final DataOutputStream in;
+        private final DataInputStream out;
+
+        @Nullable
+        private final Duration timeout;
+
+        private final ScheduledExecutorService watchdog;
+        private volatile boolean hung;
+
+        private Worker(Process process, @Nullable Duration timeout, ScheduledExecutorService watchdog) {
+            this.process = process;
+            this.in = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            this.out = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+            this.timeout = timeout;
+            this.watchdog = watchdog;
+        }
+
+        /**
+         * @throws WorkerTimeoutException If the worker reported nothing within the timeout, in which case it has been
+         *                                killed.
+         * @throws IOException            If the worker died before it completed the shard.
+         */
+        ShardResult run(Shard shard) throws IOException {
+            hung = false;
+            ScheduledFuture<?> kill = watch();
+            try {
+                in.writeInt(shard.id);
+                in.writeInt(shard.sources.size());
+                for (Path source : shard.sources) {
+                    ShardWorker.writeString(in, source.toString().replace('\\', '/'));
+                }
+                in.flush();
+
+                ShardResult result = new ShardResult();
+                while (true) {
+                    byte message = out.readByte();
+                    // the worker is alive as long as it keeps reporting progress
+                    if (kill != null) {
+                        kill.cancel(false);
+                        kill = watch();
+                    }
+                    if (read(message, result)) {
+                        return result;
+                    }
+                }
+            } catch (IOException e) {
+                if (hung) {
+                    throw new WorkerTimeoutException("Killed the worker on shard " + shard.id + " of " +
+                                                     shard.sources.size() + " files after it reported nothing for " +
+                                                     timeout);
+                }
+                throw e;
+            } finally {
+                if (kill != null) {
+                    kill.cancel(false);
+                }
+            }
+        }
+
+        /**
+         * @return A task that kills the worker once the timeout elapses, or {@code null} if there is no timeout.
+         */
+        @Nullable
+        private ScheduledFuture<?> watch() {
+            if (timeout == null) {
+                return null;
+            }
+            return watchdog.schedule(() -> {
+                hung = true;
+                process.destroyForcibly();
+            }, timeout.toNanos(), TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * @return {@code true} once the shard is done.
+         */
+        private boolean read(byte message, ShardResult result) throws IOException {
+            switch (message) {
+                case ShardWorker.FILE:
+                    result.files.add(new FileResult(
+                            Paths.get(ShardWorker.readString(out)),
+                            Charset.forName(ShardWorker.readString(out)),
+                            ShardWorker.readString(out),
+                            ShardWorker.readString(out)
+                    ));
+                    return false;
+                case ShardWorker.ERROR:
+                    result.errors.add(new BatchSummary.Error(
+                            Paths.get(ShardWorker.readString(out)),
+                            new WorkerException(ShardWorker.readString(out))
+                    ));
+                    return false;
+                case ShardWorker.QUARANTINED:
+                    result.quarantined.add(new Quarantine.Entry(
+                            Paths.get(ShardWorker.readString(out)),
+                            ShardWorker.readString(out),
+                            ShardWorker.readString(out),
+                            ShardWorker.readString(out)
+                    ));
+                    return false;
+                case ShardWorker.PROGRESS:
+                    return false;
+                case ShardWorker.DONE:
+                    result.sourceFiles = out.readInt();
+                    result.parseNanos = out.readLong();
+                    result.recipeNanos = out.readLong();
+                    result.writeNanos = out.readLong();
+                    return true;
+                default:
+                    throw new IOException("Unexpected message " + message + " from worker");
+            }
+        }
+
+        /**
+         * Kills the worker and waits a bounded time for it to exit.
+         */
+        void kill() throws InterruptedException {
+            process.destroyForcibly().waitFor(10, TimeUnit.SECONDS);
+        }
+
+        void stop() throws InterruptedException {
+            try {
+                in.writeInt(-1);
+                in.close();
+            } catch (IOException e) {
+                // the worker is gone already
+            }
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static class ShardResult {
+        final List<FileResult> files = new ArrayList<>();
+        final List<BatchSummary.Error> errors = new ArrayList<>();
+        final List<Quarantine.Entry> quarantined = new ArrayList<>();
+        int sourceFiles;
+        long parseNanos;
+        long recipeNanos;
+        long writeNanos;
+    }
+
+    private static class FileResult {
+        final Path sourcePath;
+        final Charset charset;
+
+        @Nullable
+        final String after;
+
+        @Nullable
+        final String diff;
+
+        FileResult(Path sourcePath, Charset charset, @Nullable String after, @Nullable String diff) {
+            this.sourcePath = sourcePath;
+            this.charset = charset;
+            this.after = after;
+            this.diff = diff;
+        }
+    }
+
+    /**
+     * The outcome of all completed shards.
+     */
+    private static class Merge {
+        final Path root;
+        final AtomicInteger files = new AtomicInteger();
+        final AtomicInteger changedFiles = new AtomicInteger();
+        final AtomicInteger skippedFiles = new AtomicInteger();
+        final LongAdder parseNanos = new LongAdder();
+        final LongAdder recipeNanos = new LongAdder();
+        final LongAdder writeNanos = new LongAdder();
+        final Queue<BatchSummary.Error> errors = new ConcurrentLinkedQueue<>();
+        final Queue<Quarantine.Entry> quarantined = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Sorted by path, so that the patch is the same regardless of how the sources were sharded.
+         */
+        final Map<Path, String> diffs = new ConcurrentSkipListMap<>();
+
+        Merge(Path root) {
+            this.root = root;
+        }
+
+        void apply(ShardResult result, BatchOptions.Output output) throws IOException {
+            long writeStart = System.nanoTime();
+            for (FileResult file : result.files) {
+                changedFiles.incrementAndGet();
+                if (output == BatchOptions.Output.PATCH) {
+                    diffs.put(file.sourcePath, file.diff == null ? "" : file.diff);
+                } else if (file.after == null) {
+                    Files.deleteIfExists(root.resolve(file.sourcePath));
+                } else {
+                    Path path = root.resolve(file.sourcePath);
+                    Files.createDirectories(path.getParent());
+                    Files.write(path, file.after.getBytes(file.charset));
+                }
+            }
+            writeNanos.add(System.nanoTime() - writeStart + result.writeNanos);
+            files.addAndGet(result.sourceFiles);
+            parseNanos.add(result.parseNanos);
+            recipeNanos.add(result.recipeNanos);
+            errors.addAll(result.errors);
+            quarantined.addAll(result.quarantined);
+        }
+    }
+
+    /**
+     * A worker that reported nothing for longer than the {@linkplain BatchOptions#getWorkerTimeout() timeout}.
+     */
+    static class WorkerTimeoutException extends IOException {
+        WorkerTimeoutException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * An error reported by a worker, of which only the description crosses the process boundary.
+     */
+    static class WorkerException extends RuntimeException {
+        WorkerException(@Nullable String message) {
+            super(message, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.batch;
+
+import org.openrewrite.Recipe;
+import org.openrewrite.internal.lang.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The process a {@link ShardCoordinator} runs the recipes in. It reads shards from standard input and streams the
+ * outcome of every changed file back on standard output, until it reads a negative shard id or its input is closed.
+ * Anything else printed to standard output is sent to standard error, so that it cannot corrupt the stream.
+ * <p>
+ * A shard is a shard id followed by the number of source files and their paths relative to the root. The worker
+ * answers with a message per changed file, error and quarantined file, followed by {@link #DONE} and the time spent.
+ * It also reports {@link #PROGRESS} after every batch, by which the coordinator tells a busy worker from a hung one.
+ * Strings are written as their length in UTF-8 bytes followed by the bytes, or -1 for {@code null}.
+ */
+class ShardWorker extends BatchDriver {
+    static final byte FILE = 1;
+    static final byte ERROR = 2;
+    static final byte QUARANTINED = 3;
+    static final byte DONE = 4;
+    static final byte PROGRESS = 5;
+
+    private final DataOutputStream out;
+
+    ShardWorker(List<Recipe> recipes, BatchOptions options, DataOutputStream out) {
+        super(recipes, options);
+        this.out = out;
+    }
+
+    void serve(Path root, DataInputStream in) throws IOException {
+        while (true) {
+            int shard;
+            try {
+                shard = in.readInt();
+            } catch (EOFException e) {
+                return;
+            }
+            if (shard < 0) {
+                return;
+            }
+
+            int count = in.readInt();
+            List<Path> sources = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                sources.add(root.resolve(readString(in)));
+            }
+
+            Run run = new Run(root);
+            for (List<Path> batch : batches(sources)) {
+                processBatch(run, batch);
+                synchronized (out) {
+                    out.writeByte(PROGRESS);
+                    out.flush();
+                }
+            }
+
+            synchronized (out) {
+                for (BatchSummary.Error error : run.errors) {
+                    out.writeByte(ERROR);
+                    writeString(out, error.getSourcePath().toString());
+                    writeString(out, String.valueOf(error.getCause()));
+                }
+                for (Quarantine.Entry entry : run.quarantined) {
+                    out.writeByte(QUARANTINED);
+                    writeString(out, entry.getSourcePath().toString());
+                    writeString(out, entry.getRecipe());
+                    writeString(out, entry.getMethod());
+                    writeString(out, entry.getLimit());
+                }
+                out.writeByte(DONE);
+                out.writeInt(run.files.get());
+                out.writeLong(run.parseNanos.sum());
+                out.writeLong(run.recipeNanos.sum());
+                out.writeLong(run.writeNanos.sum());
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * Sends the outcome to the coordinator rather than writing it, which is left to the coordinator.
+     */
+    @Override
+    void write(Run run, Path sourcePath, @Nullable String after, @Nullable String diff, Charset charset) throws IOException {
+        run.changedFiles.incrementAndGet();
+        synchronized (out) {
+            out.writeByte(FILE);
+            writeString(out, sourcePath.toString());
+            writeString(out, charset.name());
+            writeString(out, after);
+            writeString(out, diff);
+        }
+    }
+
+    static void writeString(DataOutputStream out, @Nullable String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @Nullable
+    static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Usage: {@code ShardWorker <root> [BatchDriver options]...}, of which those concerning parsing, the recipes and
+     * the file budget are used.
+     */
+    public static void main(String[] args) throws Exception {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+        System.setOut(System.err);
+
+        Path root = Paths.get(args[0]);
+        BatchOptions.BatchOptionsBuilder options = BatchOptions.builder();
+        List<Recipe> recipes = new ArrayList<>();
+        parseOptions(args, 1, options, recipes);
+
+        new ShardWorker(recipes, options.threads(1).build(), out)
+                .serve(root, new DataInputStream(new BufferedInputStream(System.in)));
+        out.flush();
+    }
+}
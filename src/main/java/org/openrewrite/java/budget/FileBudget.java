@@ -0,0 +1,205 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.budget;
+
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.Tree;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.JavaIsoVisitor;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.JavaType;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Bounds the wall time and the number of tree nodes that the recipes of this module may spend on a single source
+ * file, so that a pathological file, such as a generated one with a huge method, cannot stall a whole run. The
+ * budget of a run is the one {@linkplain #enable(ExecutionContext, Duration, long) enabled} in its execution context,
+ * and {@link #UNLIMITED} otherwise.
+ * <p>
+ * The caller {@linkplain #start(Path) starts} the budget before running the recipes on a file. The visitor of every
+ * recipe is {@linkplain #charge(Tree) charged} the nodes of the file before it runs, and analyses that traverse parts
+ * of it again report the nodes they visit on top of that. A {@link FileBudgetExceededException} is thrown out of the
+ * visitor that goes over the budget, naming the recipe and method declaration it was working on. The clock is only
+ * read every {@value #CLOCK_INTERVAL} nodes and between recipes.
+ * <p>
+ * An instance belongs to one execution context and is not thread-safe.
+ */
+public final class FileBudget {
+    public static final String CONTEXT_KEY = "org.openrewrite.java.budget.FileBudget";
+
+    public static final FileBudget UNLIMITED = new FileBudget(Long.MAX_VALUE, Long.MAX_VALUE);
+
+    private static final int CLOCK_INTERVAL = 1024;
+
+    private final long maxNanos;
+    private final long maxNodes;
+    private final boolean limited;
+
+    @Nullable
+    private Path sourcePath;
+
+    private String recipe = "";
+    private long startNanos;
+    private long nodes;
+
+    @Nullable
+    private FileBudgetExceededException exceeded;
+
+    private FileBudget(long maxNanos, long maxNodes) {
+        this.maxNanos = maxNanos;
+        this.maxNodes = maxNodes;
+        this.limited = maxNanos != Long.MAX_VALUE || maxNodes != Long.MAX_VALUE;
+    }
+
+    public static FileBudget of(ExecutionContext ctx) {
+        FileBudget budget = ctx.getMessage(CONTEXT_KEY);
+        return budget == null ? UNLIMITED : budget;
+    }
+
+    /**
+     * @param maxTime  The wall time allowed per source file, or {@code null} for no limit.
+     * @param maxNodes The number of nodes visited allowed per source file, or zero or less for no limit.
+     * @return The budget now enabled in the execution context.
+     */
+    public static FileBudget enable(ExecutionContext ctx, @Nullable Duration maxTime, long maxNodes) {
+        FileBudget budget = new FileBudget(maxTime == null ? Long.MAX_VALUE : maxTime.toNanos(),
+                maxNodes <= 0 ? Long.MAX_VALUE : maxNodes);
+        ctx.putMessage(CONTEXT_KEY, budget);
+        return budget;
+    }
+
+    /**
+     * @return {@code false} if nothing is counted, in which case callers need not start the budget per file.
+     */
+    public boolean isLimited() {
+        return limited;
+    }
+
+    /**
+     * Resets the budget for the next source file.
+     */
+    public void start(Path sourcePath) {
+        if (!limited) {
+            return;
+        }
+        this.sourcePath = sourcePath;
+        this.recipe = "";
+        this.startNanos = System.nanoTime();
+        this.nodes = 0;
+        this.exceeded = null;
+    }
+
+    /**
+     * Attributes the nodes visited from now on to a recipe. Once the budget of the file is exceeded, every recipe
+     * entering it fails right away, so the rest of the recipe list does not spend time on a file that is left
+     * unchanged anyway.
+     */
+    public void enter(String recipe) {
+        if (!limited) {
+            return;
+        }
+        if (exceeded != null) {
+            throw exceeded;
+        }
+        this.recipe = recipe;
+    }
+
+    /**
+     * Counts a visited node.
+     *
+     * @param method The method declaration the node belongs to, if known, which is reported when the budget is
+     *               exceeded.
+     */
+    public void visited(@Nullable J.MethodDeclaration method) {
+        if (!limited) {
+            return;
+        }
+        if (++nodes > maxNodes) {
+            throw exceed(FileBudgetExceededException.Limit.NODES, method);
+        }
+        if ((nodes & (CLOCK_INTERVAL - 1)) == 0) {
+            checkTime(method);
+        }
+    }
+
+    /**
+     * Counts every node of a tree as visited, which is what a recipe visitor traversing it costs, so that the budget
+     * holds for every recipe whether or not its visitor reports nodes itself.
+     */
+    public void charge(@Nullable Tree tree) {
+        if (limited && tree instanceof J) {
+            new NodeCounter().visit(tree, this);
+        }
+    }
+
+    public void checkTime(@Nullable J.MethodDeclaration method) {
+        if (limited && System.nanoTime() - startNanos > maxNanos) {
+            throw exceed(FileBudgetExceededException.Limit.TIME, method);
+        }
+    }
+
+    /**
+     * @return The failure of the current source file, or {@code null} if it stayed within the budget.
+     */
+    @Nullable
+    public FileBudgetExceededException getExceeded() {
+        return exceeded;
+    }
+
+    private FileBudgetExceededException exceed(FileBudgetExceededException.Limit limit, @Nullable J.MethodDeclaration method) {
+        if (exceeded == null) {
+            exceeded = new FileBudgetExceededException(
+                    sourcePath,
+                    recipe,
+                    method == null ? null : describe(method),
+                    limit,
+                    limit == FileBudgetExceededException.Limit.TIME ? Duration.ofNanos(maxNanos).toString() : Long.toString(maxNodes)
+            );
+        }
+        return exceeded;
+    }
+
+    private static String describe(J.MethodDeclaration method) {
+        JavaType.Method methodType = method.getMethodType();
+        return methodType == null ?
+                method.getSimpleName() :
+                methodType.getDeclaringType().getFullyQualifiedName() + '#' + method.getSimpleName();
+    }
+
+    private static class NodeCounter extends JavaIsoVisitor<FileBudget> {
+        @Nullable
+        private J.MethodDeclaration enclosingMethod;
+
+        @Override
+        public J preVisit(J tree, FileBudget budget) {
+            budget.visited(enclosingMethod);
+            return tree;
+        }
+
+        @Override
+        public J.MethodDeclaration visitMethodDeclaration(J.MethodDeclaration method, FileBudget budget) {
+            J.MethodDeclaration enclosingMethod = this.enclosingMethod;
+            this.enclosingMethod = method;
+            try {
+                return super.visitMethodDeclaration(method, budget);
+            } finally {
+                this.enclosingMethod = enclosingMethod;
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.budget;
+
+import org.openrewrite.internal.lang.Nullable;
+
+import java.nio.file.Path;
+
+/**
+ * Aborts the recipes running on a source file that went over its {@link FileBudget}. The stack trace is not filled
+ * in, as the exception is expected and the location is described by the recipe and method declaration instead.
+ */
+public class FileBudgetExceededException extends RuntimeException {
+    @Nullable
+    private final Path sourcePath;
+
+    private final String recipe;
+
+    @Nullable
+    private final String method;
+
+    private final Limit limit;
+
+    FileBudgetExceededException(@Nullable Path sourcePath, String recipe, @Nullable String method, Limit limit,
+                                String budget) {
+        super(sourcePath + " exceeded the " + limit.name().toLowerCase() + " budget of " + budget +
+              (recipe.isEmpty() ? "" : " in " + recipe) + (method == null ? "" : " at " + method),
+                null, false, false);
+        this.sourcePath = sourcePath;
+        this.recipe = recipe;
+        this.method = method;
+        this.limit = limit;
+    }
+
+    @Nullable
+    public Path getSourcePath() {
+        return sourcePath;
+    }
+
+    /**
+     * @return The name of the recipe that was running, or an empty string if none had started yet.
+     */
+    public String getRecipe() {
+        return recipe;
+    }
+
+    /**
+     * @return The declaring type and name of the method declaration being visited, or {@code null} if the budget ran
+     * out outside any method.
+     */
+    @Nullable
+    public String getMethod() {
+        return method;
+    }
+
+    public Limit getLimit() {
+        return limit;
+    }
+
+    public enum Limit {
+        TIME,
+        NODES
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.metrics;
+
+import org.openrewrite.java.table.RecipeMetricsTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps all metrics in memory, so that they can be {@linkplain RecipeMetricsExporter exported} at the end of a run.
+ * Thread-safe, so one instance can be shared by the execution contexts of all threads.
+ */
+public class InMemoryRecipeMetrics implements RecipeMetrics {
+    private final ConcurrentMap<String, ConcurrentMap<String, LongAdder>> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ConcurrentMap<String, Measure>> measures = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void increment(String name, String counter, long delta) {
+        counters.computeIfAbsent(name, n -> new ConcurrentHashMap<>())
+                .computeIfAbsent(counter, c -> new LongAdder())
+                .add(delta);
+    }
+
+    @Override
+    public void record(String name, String measure, long value) {
+        measures.computeIfAbsent(name, n -> new ConcurrentHashMap<>())
+                .computeIfAbsent(measure, m -> new Measure())
+                .record(value);
+    }
+
+    public long getCount(String name, String counter) {
+        Map<String, LongAdder> byCounter = counters.get(name);
+        LongAdder count = byCounter == null ? null : byCounter.get(counter);
+        return count == null ? 0 : count.sum();
+    }
+
+    /**
+     * @return All counters and measures, sorted by name and metric.
+     */
+    public List<RecipeMetricsTable.Row> getRows() {
+        Map<String, RecipeMetricsTable.Row> rows = new TreeMap<>();
+        counters.forEach((name, byCounter) -> byCounter.forEach((counter, count) ->
+                rows.put(name + '\0' + counter, new RecipeMetricsTable.Row(name, counter, "COUNTER", count.sum(), 0, 0))));
+        measures.forEach((name, byMeasure) -> byMeasure.forEach((measure, observations) ->
+                rows.put(name + '\0' + measure, new RecipeMetricsTable.Row(name, measure, "MEASURE",
+                        observations.count.sum(), observations.total.sum(), observations.max.get()))));
+        return new ArrayList<>(rows.values());
+    }
+
+    private static class Measure {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        void record(long value) {
+            count.increment();
+            total.add(value);
+            max.accumulate(value);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.metrics;
+
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.Tree;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.JavaVisitor;
+import org.openrewrite.java.budget.FileBudget;
+import org.openrewrite.java.tree.J;
+
+/**
+ * Wraps the visitor or applicability test of a recipe to measure each source file it is applied to. The wrapped
+ * visitor traverses the source file as it would on its own, and when metrics are disabled, nothing is measured.
+ * <ul>
+ *     <li>An applicability test counts the source files it passes ({@code applicable}) and fails
+ *     ({@code notApplicable}) and records {@code applicabilityTestNanos}.</li>
+ *     <li>A visitor records {@code visitorNanos} and flushes its {@link Tally}, if it has one.</li>
+ * </ul>
+ * The wrapped visitor also enters the {@link FileBudget} of the source file under the name of the recipe and is
+ * {@linkplain FileBudget#charge(Tree) charged} the nodes of the file, and the time budget is checked once it is done.
+ * Applicability tests are only held to the time budget, as most of them do not traverse the file.
+ * <p>
+ * The metrics and budget are resolved from the execution context once, on the first source file, as a recipe creates
+ * its visitors per run. When metrics are disabled and the budget is unlimited, the wrapper delegates straight to the
+ * wrapped visitor, and its tally does not count. Callers that already hold the execution context can skip the wrapper
+ * altogether with {@link #visitor(String, TreeVisitor, Tally, ExecutionContext)}.
+ */
+public final class MeteredVisitor extends JavaVisitor<ExecutionContext> {
+    private final String name;
+    private final TreeVisitor<?, ExecutionContext> delegate;
+    private final boolean applicabilityTest;
+
+    @Nullable
+    private final Tally tally;
+
+    /**
+     * The execution context that {@link #metrics} and {@link #budget} were resolved from.
+     */
+    @Nullable
+    private ExecutionContext resolvedFrom;
+
+    private RecipeMetrics metrics = RecipeMetrics.NOOP;
+    private FileBudget budget = FileBudget.UNLIMITED;
+
+    private MeteredVisitor(String name, TreeVisitor<?, ExecutionContext> delegate, boolean applicabilityTest,
+                           @Nullable Tally tally) {
+        this.name = name;
+        this.delegate = delegate;
+        this.applicabilityTest = applicabilityTest;
+        this.tally = tally;
+    }
+
+    /**
+     * @param name  The name of the recipe the visitor belongs to.
+     * @param tally The tally the visitor counts hits in, if any.
+     */
+    public static MeteredVisitor visitor(String name, TreeVisitor<?, ExecutionContext> visitor, @Nullable Tally tally) {
+        return new MeteredVisitor(name, visitor, false, tally);
+    }
+
+    /**
+     * Like {@link #visitor(String, TreeVisitor, Tally)}, but returns the visitor itself if the execution context has
+     * neither metrics nor a budget enabled.
+     */
+    public static TreeVisitor<?, ExecutionContext> visitor(String name, TreeVisitor<?, ExecutionContext> visitor,
+                                                           @Nullable Tally tally, ExecutionContext ctx) {
+        if (!RecipeMetrics.of(ctx).isEnabled() && !FileBudget.of(ctx).isLimited()) {
+            return visitor;
+        }
+        return visitor(name, visitor, tally);
+    }
+
+    public static MeteredVisitor applicabilityTest(String name, TreeVisitor<?, ExecutionContext> applicabilityTest) {
+        return new MeteredVisitor(name, applicabilityTest, true, null);
+    }
+
+    @Override
+    public @Nullable J visit(@Nullable Tree tree, ExecutionContext ctx) {
+        if (ctx != resolvedFrom) {
+            resolve(ctx);
+        }
+        if (!metrics.isEnabled() && !budget.isLimited()) {
+            return (J) delegate.visit(tree, ctx);
+        }
+
+        budget.enter(name);
+        if (!applicabilityTest) {
+            budget.charge(tree);
+        }
+        if (!metrics.isEnabled()) {
+            J visited = (J) delegate.visit(tree, ctx);
+            budget.checkTime(null);
+            return visited;
+        }
+
+        if (tally != null) {
+            tally.reset();
+        }
+        long start = System.nanoTime();
+        Tree visited = delegate.visit(tree, ctx);
+        long nanos = System.nanoTime() - start;
+        budget.checkTime(null);
+
+        if (applicabilityTest) {
+            // an applicability test passes by changing the tree, usually by adding a search result marker
+            metrics.increment(name, visited != tree ? "applicable" : "notApplicable", 1);
+            metrics.record(name, "applicabilityTestNanos", nanos);
+        } else {
+            metrics.record(name, "visitorNanos", nanos);
+            if (tally != null) {
+                tally.flushTo(metrics, name);
+            }
+        }
+        return (J) visited;
+    }
+
+    private void resolve(ExecutionContext ctx) {
+        resolvedFrom = ctx;
+        metrics = RecipeMetrics.of(ctx);
+        budget = FileBudget.of(ctx);
+        if (tally != null) {
+            tally.setEnabled(metrics.isEnabled());
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.metrics;
+
+import org.openrewrite.ExecutionContext;
+
+/**
+ * Receives the counts and measurements the recipes of this module make while they run, grouped by the name of the
+ * recipe or analysis that made them. The metrics of a run are those {@linkplain #enable(ExecutionContext, RecipeMetrics)
+ * enabled} in its execution context, and {@link #NOOP}, which discards them, otherwise.
+ * <p>
+ * Hot paths do not call into the metrics directly. Visitors count into a {@link Tally}, which is flushed once per
+ * source file, and timings are only taken when the metrics are {@linkplain #isEnabled() enabled}.
+ */
+public interface RecipeMetrics {
+    String CONTEXT_KEY = "org.openrewrite.java.metrics.RecipeMetrics";
+
+    RecipeMetrics NOOP = new RecipeMetrics() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public void increment(String name, String counter, long delta) {
+        }
+
+        @Override
+        public void record(String name, String measure, long value) {
+        }
+    };
+
+    /**
+     * @return {@code false} if the metrics are discarded, in which case callers need not measure anything.
+     */
+    boolean isEnabled();
+
+    /**
+     * Adds to a counter, such as the number of method invocations visited.
+     */
+    void increment(String name, String counter, long delta);
+
+    /**
+     * Records one observation of a measure, such as the nanoseconds a visitor took on a source file, of which the
+     * number, total and maximum are kept.
+     */
+    void record(String name, String measure, long value);
+
+    static RecipeMetrics of(ExecutionContext ctx) {
+        RecipeMetrics metrics = ctx.getMessage(CONTEXT_KEY);
+        return metrics == null ? NOOP : metrics;
+    }
+
+    static void enable(ExecutionContext ctx, RecipeMetrics metrics) {
+        ctx.putMessage(CONTEXT_KEY, metrics);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.java.table.RecipeMetricsTable;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes the metrics collected during a run as a JSON or CSV report, or into the {@link RecipeMetricsTable} of a
+ * recipe, with one row per counter or measure.
+ */
+public final class RecipeMetricsExporter {
+    private RecipeMetricsExporter() {
+    }
+
+    /**
+     * Writes CSV if the file name ends with {@code .csv}, and JSON otherwise.
+     */
+    public static void write(InMemoryRecipeMetrics metrics, Path report) throws IOException {
+        if (report.getParent() != null) {
+            Files.createDirectories(report.getParent());
+        }
+        if (report.getFileName().toString().endsWith(".csv")) {
+            writeCsv(metrics, report);
+        } else {
+            writeJson(metrics, report);
+        }
+    }
+
+    public static void writeJson(InMemoryRecipeMetrics metrics, Path report) throws IOException {
+        new ObjectMapper()
+                .enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(report.toFile(), metrics.getRows());
+    }
+
+    public static void writeCsv(InMemoryRecipeMetrics metrics, Path report) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+            writer.write("name,metric,type,count,total,max\n");
+            for (RecipeMetricsTable.Row row : metrics.getRows()) {
+                writer.write(csv(row.getName()) + ',' + csv(row.getMetric()) + ',' + row.getType() + ',' +
+                             row.getCount() + ',' + row.getTotal() + ',' + row.getMax() + '\n');
+            }
+        }
+    }
+
+    public static void insertRows(InMemoryRecipeMetrics metrics, RecipeMetricsTable table, ExecutionContext ctx) {
+        for (RecipeMetricsTable.Row row : metrics.getRows()) {
+            table.insertRow(ctx, row);
+        }
+    }
+
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
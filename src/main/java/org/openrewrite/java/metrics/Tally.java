@@ -0,0 +1,69 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Counts hits on the hot paths of a single visitor instance in a plain array, so that counting costs next to nothing.
+ * A tally only counts once a {@link MeteredVisitor} has enabled it for a run with metrics enabled, and the visitor
+ * flushes the counts to the {@link RecipeMetrics} after every source file. Like the visitor that owns it, a tally is
+ * not thread-safe.
+ */
+public final class Tally {
+    private final long[] counts = new long[Counter.values().length];
+    private boolean enabled;
+
+    public void increment(Counter counter) {
+        if (enabled) {
+            counts[counter.ordinal()]++;
+        }
+    }
+
+    void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    void flushTo(RecipeMetrics metrics, String name) {
+        for (Counter counter : Counter.values()) {
+            long count = counts[counter.ordinal()];
+            if (count > 0) {
+                metrics.increment(name, counter.getMetricName(), count);
+                counts[counter.ordinal()] = 0;
+            }
+        }
+    }
+
+    void reset() {
+        Arrays.fill(counts, 0);
+    }
+
+    public enum Counter {
+        METHOD_DECLARATIONS("visitMethodDeclaration"),
+        METHOD_INVOCATIONS("visitMethodInvocation"),
+        TEMPLATE_APPLICATIONS("templateApplications");
+
+        private final String metricName;
+
+        Counter(String metricName) {
+            this.metricName = metricName;
+        }
+
+        public String getMetricName() {
+            return metricName;
+        }
+    }
+}
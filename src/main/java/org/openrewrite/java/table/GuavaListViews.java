@@ -0,0 +1,56 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.table;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreType;
+import lombok.Value;
+import org.openrewrite.Column;
+import org.openrewrite.DataTable;
+import org.openrewrite.Recipe;
+
+@JsonIgnoreType
+public class GuavaListViews extends DataTable<GuavaListViews.Row> {
+
+    public GuavaListViews(Recipe recipe) {
+        super(recipe,
+                "Guava list views",
+                "Uses of Guava's lazy list views, how their result is accessed and how they were migrated.");
+    }
+
+    @Value
+    public static class Row {
+        @Column(displayName = "Source path",
+                description = "The path of the source file containing the view.")
+        String sourcePath;
+
+        @Column(displayName = "Enclosing method",
+                description = "The method declaration the view is created in, if any.")
+        String enclosingMethod;
+
+        @Column(displayName = "View method",
+                description = "The Guava method creating the view, e.g. `transform`.")
+        String viewMethod;
+
+        @Column(displayName = "Access pattern",
+                description = "How the view is used: `SINGLE_PASS`, `REPEATED_ITERATION`, `RANDOM_ACCESS`, " +
+                              "`ESCAPES` or `UNUSED`.")
+        String accessPattern;
+
+        @Column(displayName = "Migration",
+                description = "What the view was replaced with: `STREAM`, `MATERIALIZED` or `UNCHANGED`.")
+        String migration;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.table;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreType;
+import lombok.Value;
+import org.openrewrite.Column;
+import org.openrewrite.DataTable;
+import org.openrewrite.Recipe;
+
+@JsonIgnoreType
+public class IncrementalRecipeCycles extends DataTable<IncrementalRecipeCycles.Row> {
+
+    public IncrementalRecipeCycles(Recipe recipe) {
+        super(recipe,
+                "Incremental recipe cycles",
+                "The source files revisited and changed by each cycle of an incrementally scheduled recipe.");
+    }
+
+    @Value
+    public static class Row {
+        @Column(displayName = "Cycle",
+                description = "The cycle, starting at 1.")
+        int cycle;
+
+        @Column(displayName = "Revisited source files",
+                description = "The number of source files the recipe was run on in the cycle.")
+        int revisitedSourceFiles;
+
+        @Column(displayName = "Changed source files",
+                description = "The number of source files the cycle changed, added or deleted.")
+        int changedSourceFiles;
+    }
+}
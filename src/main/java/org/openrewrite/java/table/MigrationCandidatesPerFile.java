@@ -0,0 +1,51 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.table;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreType;
+import lombok.Value;
+import org.openrewrite.Column;
+import org.openrewrite.DataTable;
+import org.openrewrite.Recipe;
+
+@JsonIgnoreType
+public class MigrationCandidatesPerFile extends DataTable<MigrationCandidatesPerFile.Row> {
+
+    public MigrationCandidatesPerFile(Recipe recipe) {
+        super(recipe,
+                "Migration candidates per file",
+                "The number of sites in each source file that a recipe would change.");
+    }
+
+    @Value
+    public static class Row {
+        @Column(displayName = "Source path",
+                description = "The path of the source file containing the sites.")
+        String sourcePath;
+
+        @Column(displayName = "Package",
+                description = "The package declared by the source file, empty for the default package.")
+        String packageName;
+
+        @Column(displayName = "Recipe",
+                description = "The name of the recipe that would change the sites.")
+        String recipe;
+
+        @Column(displayName = "Candidate sites",
+                description = "The number of invocations or method declarations the recipe would change.")
+        int candidateSites;
+    }
+}
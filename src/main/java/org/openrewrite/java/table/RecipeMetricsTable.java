@@ -0,0 +1,59 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.table;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreType;
+import lombok.Value;
+import org.openrewrite.Column;
+import org.openrewrite.DataTable;
+import org.openrewrite.Recipe;
+
+@JsonIgnoreType
+public class RecipeMetricsTable extends DataTable<RecipeMetricsTable.Row> {
+
+    public RecipeMetricsTable(Recipe recipe) {
+        super(recipe,
+                "Recipe metrics",
+                "Counts and measurements taken while the recipes ran, such as visitor time and hit counts.");
+    }
+
+    @Value
+    public static class Row {
+        @Column(displayName = "Name",
+                description = "The recipe or analysis the metric belongs to.")
+        String name;
+
+        @Column(displayName = "Metric",
+                description = "The name of the counter or measure, e.g. `visitorNanos` or `visitMethodInvocation`.")
+        String metric;
+
+        @Column(displayName = "Type",
+                description = "`COUNTER` or `MEASURE`.")
+        String type;
+
+        @Column(displayName = "Count",
+                description = "The value of a counter, or the number of observations of a measure.")
+        long count;
+
+        @Column(displayName = "Total",
+                description = "The sum of all observations of a measure. Zero for counters.")
+        long total;
+
+        @Column(displayName = "Maximum",
+                description = "The largest observation of a measure. Zero for counters.")
+        long max;
+    }
+}
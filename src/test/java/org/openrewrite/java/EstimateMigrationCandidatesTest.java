@@ -0,0 +1,88 @@
+package org.openrewrite.java;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.java.table.MigrationCandidatesPerFile;
+import org.openrewrite.java.table.MigrationCandidatesPerPackage;
+import org.openrewrite.test.RecipeSpec;
+import org.openrewrite.test.RewriteTest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.openrewrite.java.Assertions.java;
+
+class EstimateMigrationCandidatesTest implements RewriteTest {
+    private static final String NEW_ARRAY_LIST = new NoGuavaListsNewArrayList().getName();
+    private static final String MAKE_STATIC = new MakeNonOverridableMethodsWithoutInstanceDataStatic().getName();
+
+    @Override
+    public void defaults(RecipeSpec spec) {
+        spec.recipe(new EstimateMigrationCandidates())
+            .parser(ParserSession.shared("guava").builder().logCompilationWarningsAndErrors(true));
+    }
+
+    @Test
+    void countsCandidatesPerFileAndPackageWithoutChanges() {
+        rewriteRun(
+            spec -> spec
+                .dataTable(MigrationCandidatesPerFile.Row.class, rows -> assertThat(rows).containsExactlyInAnyOrder(
+                    new MigrationCandidatesPerFile.Row("a/A.java", "a", NEW_ARRAY_LIST, 2),
+                    new MigrationCandidatesPerFile.Row("a/A.java", "a", MAKE_STATIC, 2),
+                    new MigrationCandidatesPerFile.Row("a/B.java", "a", NEW_ARRAY_LIST, 1)
+                ))
+                .dataTable(MigrationCandidatesPerPackage.Row.class, rows -> assertThat(rows).containsExactly(
+                    new MigrationCandidatesPerPackage.Row("a", MAKE_STATIC, 1, 2),
+                    new MigrationCandidatesPerPackage.Row("a", NEW_ARRAY_LIST, 2, 3)
+                )),
+            java("""
+                        package a;
+                        
+                        import com.google.common.collect.Lists;
+                        
+                        import java.util.List;
+                        
+                        class A {
+                            int count;
+                            List<String> names = Lists.newArrayList();
+                        
+                            private List<Integer> numbers(Iterable<Integer> source) {
+                                // a plain Iterable is left to Guava
+                                List<Integer> all = Lists.newArrayList(source);
+                                return Lists.newArrayListWithCapacity(twice(1));
+                            }
+                        
+                            private int twice(int n) {
+                                return n * 2;
+                            }
+                        
+                            private int counted() {
+                                return count;
+                            }
+                        }
+                    """,
+                spec -> spec.path("a/A.java")),
+            java("""
+                        package a;
+                        
+                        import com.google.common.collect.Lists;
+                        
+                        import java.util.List;
+                        
+                        class B {
+                            List<String> names() {
+                                return Lists.newArrayList();
+                            }
+                        }
+                    """,
+                spec -> spec.path("a/B.java")),
+            java("""
+                        package b;
+                        
+                        class C {
+                            public int one() {
+                                return 1;
+                            }
+                        }
+                    """,
+                spec -> spec.path("b/C.java"))
+        );
+    }
+}
@@ -0,0 +1,155 @@
+package org.openrewrite.java;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.Recipe;
+import org.openrewrite.Result;
+import org.openrewrite.SourceFile;
+import org.openrewrite.java.tree.J;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static java.util.Collections.singleton;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FusedRecipeTest {
+    private static final String[] SOURCES = {
+            """
+            import com.google.common.collect.Lists;
+            import com.google.common.collect.Maps;
+            import com.google.common.collect.Sets;
+
+            import java.util.List;
+            import java.util.Map;
+            import java.util.Set;
+
+            class A {
+                List<String> names = Lists.newArrayList();
+                Set<List<String>> groups = Sets.newHashSet(Lists.newArrayList(names));
+                Map<String, Integer> counts = Maps.newHashMapWithExpectedSize(16);
+
+                private int twice(int n) {
+                    return n * 2;
+                }
+            }
+            """,
+            """
+            import com.google.common.collect.Lists;
+
+            import java.util.List;
+
+            class B {
+                private final List<Integer> values = Lists.newArrayListWithCapacity(10);
+
+                private int first() {
+                    return values.get(0);
+                }
+            }
+            """,
+            """
+            class C {
+                private int one() {
+                    return 1;
+                }
+            }
+            """
+    };
+
+    @Test
+    void matchesSequentialRun() {
+        List<Recipe> recipes = Arrays.asList(
+                new NoGuavaListsNewArrayList(),
+                new NoGuavaCollectionFactories(),
+                new MakeNonOverridableMethodsWithoutInstanceDataStatic()
+        );
+
+        Map<String, String> sequential = run(new Sequential(recipes));
+        Map<String, String> fused = run(new FusedRecipe(recipes));
+
+        assertThat(fused).isEqualTo(sequential);
+        assertThat(fused.get("A.java")).contains("new ArrayList<>()", "new HashSet<>(new ArrayList<>(names))",
+                "private static int twice");
+    }
+
+    @Test
+    void dispatchesOnlyDeclaredNodeTypes() {
+        Set<Class<?>> visitedTypes = new HashSet<>();
+        run(new FusedRecipe(Arrays.asList(new NoGuavaListsNewArrayList(), new Recording(visitedTypes))));
+        assertThat(visitedTypes).containsOnly(J.Literal.class);
+    }
+
+    private static Map<String, String> run(Recipe recipe) {
+        ExecutionContext ctx = new InMemoryExecutionContext(t -> {
+            throw new AssertionError(t);
+        });
+        List<J.CompilationUnit> sources = ParserSession.shared("guava").parse(ctx, SOURCES);
+
+        Map<String, String> printed = new TreeMap<>();
+        for (SourceFile source : sources) {
+            printed.put(source.getSourcePath().toString(), source.printAll());
+        }
+        for (Result result : recipe.run(new ArrayList<>(sources), ctx).getResults()) {
+            if (result.getAfter() != null) {
+                printed.put(result.getAfter().getSourcePath().toString(), result.getAfter().printAll());
+            }
+        }
+        return printed;
+    }
+
+    private static class Sequential extends Recipe {
+        Sequential(List<Recipe> recipes) {
+            for (Recipe recipe : recipes) {
+                doNext(recipe);
+            }
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Sequential";
+        }
+    }
+
+    /**
+     * Records the types of tree passed to its visitor without changing them.
+     */
+    private static class Recording extends Recipe implements FusibleRecipe {
+        private final Set<Class<?>> visitedTypes;
+
+        Recording(Set<Class<?>> visitedTypes) {
+            this.visitedTypes = visitedTypes;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Recording";
+        }
+
+        @Override
+        public FusibleJavaVisitor getFusibleVisitor() {
+            return new FusibleJavaVisitor() {
+                @Override
+                public Set<Class<? extends J>> getNodeTypes() {
+                    return singleton(J.Literal.class);
+                }
+
+                @Override
+                public J postVisit(J tree, ExecutionContext executionContext) {
+                    visitedTypes.add(tree.getClass());
+                    return tree;
+                }
+            };
+        }
+
+        @Override
+        public boolean isApplicable(J.CompilationUnit cu) {
+            return true;
+        }
+    }
+}
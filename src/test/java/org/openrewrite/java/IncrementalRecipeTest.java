@@ -0,0 +1,199 @@
+package org.openrewrite.java;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.Recipe;
+import org.openrewrite.Result;
+import org.openrewrite.SourceFile;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.java.tree.J;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IncrementalRecipeTest {
+    private static final int MAX_CYCLES = 10;
+
+    private static final String[] SOURCES = {
+            """
+            import com.google.common.collect.Lists;
+
+            import java.util.List;
+
+            class A {
+                int countdown = 3;
+                List<String> names = Lists.newArrayList();
+
+                private int twice(int n) {
+                    return n * 2;
+                }
+            }
+            """,
+            """
+            class B {
+                A a = new A();
+            }
+            """,
+            """
+            class C {
+                int once = 1;
+            }
+            """,
+            """
+            class D {
+                private String name() {
+                    return "d";
+                }
+            }
+            """
+    };
+
+    @Test
+    void matchesFullReRuns() {
+        List<Recipe> recipes = Arrays.asList(
+                new NoGuavaListsNewArrayList(),
+                new MakeNonOverridableMethodsWithoutInstanceDataStatic(),
+                new Countdown(new ArrayList<>())
+        );
+
+        Map<String, String> full = fullReRuns(new Sequential(recipes));
+        Map<String, String> incremental = run(new IncrementalRecipe(new Sequential(recipes), MAX_CYCLES));
+
+        assertThat(incremental).isEqualTo(full);
+        assertThat(incremental.get("A.java")).contains("int countdown = 0;", "new ArrayList<>()",
+                "private static int twice");
+        assertThat(incremental.get("D.java")).contains("private static String name");
+    }
+
+    @Test
+    void revisitsOnlyChangedSourcesAndTheirDependents() {
+        List<Set<String>> revisited = new ArrayList<>();
+        run(new IncrementalRecipe(new Countdown(revisited), MAX_CYCLES));
+
+        assertThat(revisited).containsExactly(
+                new TreeSet<>(Arrays.asList("A.java", "B.java", "C.java", "D.java")),
+                // B uses A, which changed, whereas nothing uses C
+                new TreeSet<>(Arrays.asList("A.java", "B.java", "C.java")),
+                new TreeSet<>(Arrays.asList("A.java", "B.java")),
+                new TreeSet<>(Arrays.asList("A.java", "B.java"))
+        );
+    }
+
+    private static List<SourceFile> parse(ExecutionContext ctx) {
+        return new ArrayList<>(ParserSession.shared("guava").parse(ctx, SOURCES));
+    }
+
+    private static ExecutionContext ctx() {
+        return new InMemoryExecutionContext(t -> {
+            throw new AssertionError(t);
+        });
+    }
+
+    private static Map<String, String> run(Recipe recipe) {
+        ExecutionContext ctx = ctx();
+        List<SourceFile> sources = parse(ctx);
+        return printed(apply(sources, recipe.run(sources, ctx).getResults()));
+    }
+
+    /**
+     * Runs every cycle on all source files, as the recipe scheduler does.
+     */
+    private static Map<String, String> fullReRuns(Recipe recipe) {
+        ExecutionContext ctx = ctx();
+        List<SourceFile> sources = parse(ctx);
+        for (int cycle = 1; cycle <= MAX_CYCLES; cycle++) {
+            List<Result> results = recipe.run(sources, ctx, 1).getResults();
+            if (results.isEmpty()) {
+                break;
+            }
+            sources = apply(sources, results);
+        }
+        return printed(sources);
+    }
+
+    private static List<SourceFile> apply(List<SourceFile> sources, List<Result> results) {
+        List<SourceFile> after = new ArrayList<>(sources);
+        for (Result result : results) {
+            if (result.getBefore() == null) {
+                after.add(result.getAfter());
+                continue;
+            }
+            int index = after.indexOf(result.getBefore());
+            if (result.getAfter() == null) {
+                after.remove(index);
+            } else {
+                after.set(index, result.getAfter());
+            }
+        }
+        return after;
+    }
+
+    private static Map<String, String> printed(List<SourceFile> sources) {
+        Map<String, String> printed = new TreeMap<>();
+        for (SourceFile source : sources) {
+            printed.put(source.getSourcePath().toString(), source.printAll());
+        }
+        return printed;
+    }
+
+    private static class Sequential extends Recipe {
+        Sequential(List<Recipe> recipes) {
+            for (Recipe recipe : recipes) {
+                doNext(recipe);
+            }
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Sequential";
+        }
+    }
+
+    /**
+     * Decrements every positive integer literal by one per cycle, and records the source files of every cycle.
+     */
+    private static class Countdown extends Recipe {
+        private final List<Set<String>> revisited;
+
+        Countdown(List<Set<String>> revisited) {
+            this.revisited = revisited;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Countdown";
+        }
+
+        @Override
+        protected List<SourceFile> visit(List<SourceFile> before, ExecutionContext ctx) {
+            Set<String> sourcePaths = new TreeSet<>();
+            for (SourceFile sourceFile : before) {
+                sourcePaths.add(sourceFile.getSourcePath().toString());
+            }
+            revisited.add(sourcePaths);
+            return before;
+        }
+
+        @Override
+        protected TreeVisitor<?, ExecutionContext> getVisitor() {
+            return new JavaIsoVisitor<ExecutionContext>() {
+                @Override
+                public J.Literal visitLiteral(J.Literal literal, ExecutionContext executionContext) {
+                    if (literal.getValue() instanceof Integer && (Integer) literal.getValue() > 0) {
+                        int next = (Integer) literal.getValue() - 1;
+                        return literal.withValue(next).withValueSource(Integer.toString(next));
+                    }
+                    return literal;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package org.openrewrite.java;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.test.RecipeSpec;
+import org.openrewrite.test.RewriteTest;
+
+import static org.openrewrite.java.Assertions.java;
+
+class MakeInnerClassesStaticTest implements RewriteTest {
+    @Override
+    public void defaults(RecipeSpec spec) {
+        spec.recipe(new MakeInnerClassesStatic());
+    }
+
+    @Test
+    void innerClassWithoutOuterInstanceUsage() {
+        rewriteRun(
+            java("""
+                        class Outer {
+                            private int count;
+                        
+                            private class Node {
+                                int value;
+                        
+                                int doubled() {
+                                    return value * 2;
+                                }
+                            }
+                        
+                            class Counter {
+                                int next() {
+                                    return ++count;
+                                }
+                            }
+                        }
+                    """,
+                """
+                        class Outer {
+                            private int count;
+                        
+                            private static class Node {
+                                int value;
+                        
+                                int doubled() {
+                                    return value * 2;
+                                }
+                            }
+                        
+                            class Counter {
+                                int next() {
+                                    return ++count;
+                                }
+                            }
+                        }
+                    """)
+        );
+    }
+
+    @Test
+    void qualifiedThisAndOuterMethodsNeedTheInstance() {
+        rewriteRun(
+            java("""
+                        class Outer {
+                            class A {
+                                Outer outer() {
+                                    return Outer.this;
+                                }
+                            }
+                        
+                            class B {
+                                void run() {
+                                    helper();
+                                }
+                            }
+                        
+                            void helper() {
+                            }
+                        }
+                    """)
+        );
+    }
+
+    @Test
+    void creationSitesInOtherFiles() {
+        rewriteRun(
+            java("""
+                        package a;
+                        
+                        public class Outer {
+                            public class Inner {
+                            }
+                        }
+                    """,
+                """
+                        package a;
+                        
+                        public class Outer {
+                            public static class Inner {
+                            }
+                        }
+                    """),
+            java("""
+                        package b;
+                        
+                        class Test {
+                            Object create(a.Outer outer) {
+                                return outer.new Inner();
+                            }
+                        }
+                    """,
+                """
+                        package b;
+                        
+                        import a.Outer;
+                        
+                        class Test {
+                            Object create(a.Outer outer) {
+                                return new Outer.Inner();
+                            }
+                        }
+                    """)
+        );
+    }
+
+    @Test
+    void outerInstanceComputedByAnExpressionIsKept() {
+        rewriteRun(
+            java("""
+                        class Outer {
+                            class Inner {
+                            }
+                        
+                            static Outer next() {
+                                return new Outer();
+                            }
+                        
+                            static Object create() {
+                                return next().new Inner();
+                            }
+                        }
+                    """)
+        );
+    }
+
+    @Test
+    void outerInstanceVariableIsNoLongerCheckedForNull() {
+        rewriteRun(
+            java("""
+                        class Outer {
+                            class Inner {
+                            }
+                        
+                            static Object create(Outer holder) {
+                                return holder.new Inner();
+                            }
+                        }
+                    """,
+                """
+                        class Outer {
+                            static class Inner {
+                            }
+                        
+                            static Object create(Outer holder) {
+                                return new Inner();
+                            }
+                        }
+                    """)
+        );
+    }
+
+    @Test
+    void outerFieldTypedByTypeParameterNeedsTheInstance() {
+        rewriteRun(
+            java("""
+                        class Box<T> {
+                            private T value;
+                        
+                            class Printer {
+                                void print() {
+                                    System.out.println(value);
+                                }
+                            }
+                        }
+                    """)
+        );
+    }
+
+    @Test
+    void serializableAndInterfaceMembersAreUnchanged() {
+        rewriteRun(
+            java("""
+                        import java.io.Serializable;
+                        
+                        class Outer {
+                            class Entry implements Serializable {
+                            }
+                        
+                            interface Visitor {
+                                class Default {
+                                }
+                            }
+                        }
+                    """)
+        );
+    }
+}
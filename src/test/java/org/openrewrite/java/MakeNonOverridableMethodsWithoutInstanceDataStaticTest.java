@@ -4,13 +4,14 @@ import org.junit.jupiter.api.Test;
 import org.openrewrite.test.RecipeSpec;
 import org.openrewrite.test.RewriteTest;
 
+import static java.util.Collections.singletonList;
 import static org.openrewrite.java.Assertions.java;
 
 class MakeNonOverridableMethodsWithoutInstanceDataStaticTest implements RewriteTest {
     @Override
     public void defaults(RecipeSpec spec) {
         spec.recipe(new MakeNonOverridableMethodsWithoutInstanceDataStatic())
-            .parser(JavaParser.fromJavaVersion().logCompilationWarningsAndErrors(true));
+            .parser(ParserSession.shared().builder().logCompilationWarningsAndErrors(true));
     }
 
     @Test
@@ -231,4 +232,457 @@ class MakeNonOverridableMethodsWithoutInstanceDataStaticTest implements RewriteT
                     }
                 """));
     }
-}
\ No newline at end of file
+
+    @Test
+    void localShadowingInstanceFieldIsNotInstanceData() {
+        rewriteRun(
+            java("""
+                    class Test {
+                        private int count;
+                    
+                        private int next(int count) {
+                            return count + 1;
+                        }
+                    }
+                """, """
+                    class Test {
+                        private int count;
+                    
+                        private static int next(int count) {
+                            return count + 1;
+                        }
+                    }
+                """)
+        );
+    }
+
+    @Test
+    void fieldOfAnotherInstanceIsNotInstanceData() {
+        rewriteRun(
+            java("""
+                    class Test {
+                        private int count;
+                    
+                        private int countOf(Test other) {
+                            return other.count;
+                        }
+                    }
+                """, """
+                    class Test {
+                        private int count;
+                    
+                        private static int countOf(Test other) {
+                            return other.count;
+                        }
+                    }
+                """)
+        );
+    }
+
+    @Test
+    void fieldTypedByClassTypeParameterIsInstanceData() {
+        rewriteRun(
+            java("""
+                    class Box<T> {
+                        private T value;
+                    
+                        private void print() {
+                            System.out.println(value);
+                        }
+                    }
+                """)
+        );
+    }
+
+    @Test
+    void instanceDependentReferencesAreNotMadeStatic() {
+        rewriteRun(
+            java("""
+                    class Base {
+                        protected int inherited;
+                    
+                        int instanceMethod() {
+                            return inherited;
+                        }
+                    }
+                    """),
+            java("""
+                    import java.util.ArrayList;
+                    import java.util.List;
+                    
+                    class Test<T> extends Base {
+                        private int count;
+                    
+                        private int qualifiedThis() {
+                            return this.count;
+                        }
+                    
+                        private int inheritedField() {
+                            return inherited;
+                        }
+                    
+                        private int superAccess() {
+                            return super.instanceMethod();
+                        }
+                    
+                        private int callsInstanceMethod() {
+                            return instanceMethod();
+                        }
+                    
+                        private Object passesThis() {
+                            return String.valueOf(this);
+                        }
+                    
+                        private List<T> usesClassTypeParameter() {
+                            return new ArrayList<>();
+                        }
+                    
+                        private Inner createsInnerClass() {
+                            return new Inner();
+                        }
+                    
+                        private Runnable methodReferenceOnThis() {
+                            return this::toString;
+                        }
+                    
+                        class Inner {
+                        }
+                    }
+                    """)
+        );
+    }
+
+    @Test
+    void innerClassMethodsAreNotMadeStatic() {
+        rewriteRun(
+            java("""
+                    class Test {
+                        class Inner {
+                            private int one() {
+                                return 1;
+                            }
+                        }
+                    
+                        void method() {
+                            Runnable r = new Runnable() {
+                                @Override
+                                public void run() {
+                                }
+                    
+                                private int two() {
+                                    return 2;
+                                }
+                            };
+                        }
+                    }
+                    """)
+        );
+    }
+
+    @Test
+    void methodsCallingMethodsThatBecomeStaticAreMadeStaticInOneCycle() {
+        rewriteRun(
+            spec -> spec.expectedCyclesThatMakeChanges(1),
+            java("""
+                    class Test {
+                        private int count;
+                    
+                        private int twice(int n) {
+                            return doubled(n);
+                        }
+                    
+                        private int doubled(int n) {
+                            return n * 2;
+                        }
+                    
+                        private int factorial(int n) {
+                            return n <= 1 ? 1 : n * factorial(n - 1);
+                        }
+                    
+                        private int countTwice() {
+                            return doubledCount();
+                        }
+                    
+                        private int doubledCount() {
+                            return count * 2;
+                        }
+                    }
+                """, """
+                    class Test {
+                        private int count;
+                    
+                        private static int twice(int n) {
+                            return doubled(n);
+                        }
+                    
+                        private static int doubled(int n) {
+                            return n * 2;
+                        }
+                    
+                        private static int factorial(int n) {
+                            return n <= 1 ? 1 : n * factorial(n - 1);
+                        }
+                    
+                        private int countTwice() {
+                            return doubledCount();
+                        }
+                    
+                        private int doubledCount() {
+                            return count * 2;
+                        }
+                    }
+                """)
+        );
+    }
+
+    @Test
+    void generatedSourcesAreSkipped() {
+        rewriteRun(
+            java("""
+                    import javax.annotation.processing.Generated;
+                    
+                    @Generated("test")
+                    class Test {
+                        private int one() {
+                            return 1;
+                        }
+                    }
+                """),
+            java("""
+                    class Test {
+                        private int one() {
+                            return 1;
+                        }
+                    }
+                """,
+                spec -> spec.path("build/generated/sources/annotationProcessor/java/main/Test.java"))
+        );
+    }
+
+    @Test
+    void generatedSourcesCanBeIncluded() {
+        rewriteRun(
+            spec -> spec.recipe(new MakeNonOverridableMethodsWithoutInstanceDataStatic(false)),
+            java("""
+                    import javax.annotation.processing.Generated;
+                    
+                    @Generated("test")
+                    class Test {
+                        private int one() {
+                            return 1;
+                        }
+                    }
+                """, """
+                    import javax.annotation.processing.Generated;
+                    
+                    @Generated("test")
+                    class Test {
+                        private static int one() {
+                            return 1;
+                        }
+                    }
+                """)
+        );
+    }
+
+    @Test
+    void serializationMethodsOfIndirectlySerializableClassesAreExcluded() {
+        rewriteRun(
+            java("""
+                    import java.io.Serializable;
+                    
+                    class Base implements Serializable {
+                    }
+                    """),
+            java("""
+                    import java.io.ObjectStreamException;
+                    
+                    class Test extends Base {
+                        private static final Test INSTANCE = new Test();
+                    
+                        private Object readResolve() throws ObjectStreamException {
+                            return INSTANCE;
+                        }
+                    
+                        private Object writeReplace() throws ObjectStreamException {
+                            return INSTANCE;
+                        }
+                    }
+                    """)
+        );
+    }
+
+    @Test
+    void excludedMethodPatterns() {
+        rewriteRun(
+            spec -> spec.recipe(new MakeNonOverridableMethodsWithoutInstanceDataStatic(null, singletonList("Test one()"))),
+            java("""
+                    class Test {
+                        private int one() {
+                            return 1;
+                        }
+                    
+                        private int two() {
+                            return 2;
+                        }
+                    }
+                """, """
+                    class Test {
+                        private int one() {
+                            return 1;
+                        }
+                    
+                        private static int two() {
+                            return 2;
+                        }
+                    }
+                """)
+        );
+    }
+
+    @Test
+    void methodReferencesThroughThisBecomeNonCapturing() {
+        rewriteRun(
+            spec -> spec.expectedCyclesThatMakeChanges(1),
+            java("""
+                    import java.util.List;
+                    
+                    class Test {
+                        public void printAll(List<String> lines) {
+                            lines.forEach(this::print);
+                            lines.forEach(line -> this.print(line));
+                        }
+                    
+                        private void printTwice(String line) {
+                            this.print(line);
+                            this.print(line);
+                        }
+                    
+                        private void print(String line) {
+                            System.out.println(line);
+                        }
+                    }
+                """, """
+                    import java.util.List;
+                    
+                    class Test {
+                        public void printAll(List<String> lines) {
+                            lines.forEach(Test::print);
+                            lines.forEach(line -> print(line));
+                        }
+                    
+                        private static void printTwice(String line) {
+                            print(line);
+                            print(line);
+                        }
+                    
+                        private static void print(String line) {
+                            System.out.println(line);
+                        }
+                    }
+                """)
+        );
+    }
+
+    @Test
+    void callsThroughThisToAlreadyStaticMethodsAreUnqualified() {
+        rewriteRun(
+            java("""
+                    class Test {
+                        private int doubled(int n) {
+                            return this.twice(n);
+                        }
+                    
+                        private static int twice(int n) {
+                            return n * 2;
+                        }
+                    }
+                """, """
+                    class Test {
+                        private static int doubled(int n) {
+                            return twice(n);
+                        }
+                    
+                        private static int twice(int n) {
+                            return n * 2;
+                        }
+                    }
+                """)
+        );
+    }
+
+    @Test
+    void callsThroughThisToAlreadyStaticMethodsInInstanceMethodsAreLeftAlone() {
+        rewriteRun(
+            java("""
+                    class Test {
+                        private int factor = 3;
+                    
+                        public int scaled(int n) {
+                            return this.twice(n) * factor;
+                        }
+                    
+                        private static int twice(int n) {
+                            return n * 2;
+                        }
+                    }
+                """)
+        );
+    }
+
+    @Test
+    void methodReferencesThroughThisToGenericMethodsBecomeNonCapturing() {
+        rewriteRun(
+            spec -> spec.expectedCyclesThatMakeChanges(1),
+            java("""
+                    import java.util.List;
+                    
+                    class Test {
+                        public void printAll(List<String> lines) {
+                            lines.forEach(this::print);
+                        }
+                    
+                        private <T> void print(T value) {
+                            System.out.println(value);
+                        }
+                    }
+                """, """
+                    import java.util.List;
+                    
+                    class Test {
+                        public void printAll(List<String> lines) {
+                            lines.forEach(Test::print);
+                        }
+                    
+                        private static <T> void print(T value) {
+                            System.out.println(value);
+                        }
+                    }
+                """)
+        );
+    }
+
+    @Test
+    void anonymousSubclassOfInnerClassRequiresInstance() {
+        rewriteRun(
+            java("""
+                    class Test {
+                        private Inner create() {
+                            return new Inner() {
+                                @Override
+                                int value() {
+                                    return 2;
+                                }
+                            };
+                        }
+                    
+                        class Inner {
+                            int value() {
+                                return 1;
+                            }
+                        }
+                    }
+                """)
+        );
+    }
+}
@@ -0,0 +1,174 @@
+package org.openrewrite.java;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.test.RecipeSpec;
+import org.openrewrite.test.RewriteTest;
+
+import static org.openrewrite.java.Assertions.java;
+
+class NoGuavaCollectionFactoriesTest implements RewriteTest {
+    @Override
+    public void defaults(RecipeSpec spec) {
+        spec.recipe(new NoGuavaCollectionFactories())
+            .parser(ParserSession.shared("guava").builder().logCompilationWarningsAndErrors(true));
+    }
+
+    @Test
+    void listsSetsAndMaps() {
+        rewriteRun(
+            java("""
+                        import com.google.common.collect.Lists;
+                        import com.google.common.collect.Maps;
+                        import com.google.common.collect.Sets;
+                        
+                        import java.util.Comparator;
+                        import java.util.List;
+                        import java.util.Map;
+                        import java.util.Set;
+                        
+                        class Test {
+                            List<Integer> a = Lists.newArrayList();
+                            List<Integer> b = Lists.newArrayListWithExpectedSize(10);
+                            Set<String> c = Sets.newHashSet();
+                            Set<String> d = Sets.newTreeSet(Comparator.reverseOrder());
+                            Map<String, Integer> e = Maps.newHashMap();
+                            Map<String, Integer> f = Maps.newLinkedHashMap(e);
+                        }
+                    """,
+                """
+                        import java.util.*;
+                        
+                        class Test {
+                            List<Integer> a = new ArrayList<>();
+                            List<Integer> b = new ArrayList<>(10);
+                            Set<String> c = new HashSet<>();
+                            Set<String> d = new TreeSet<>(Comparator.reverseOrder());
+                            Map<String, Integer> e = new HashMap<>();
+                            Map<String, Integer> f = new LinkedHashMap<>(e);
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void varargs() {
+        rewriteRun(
+            java("""
+                        import com.google.common.collect.Lists;
+                        
+                        import java.util.List;
+                        
+                        class Test {
+                            List<String> l = Lists.newArrayList("a", "b");
+                        }
+                    """,
+                """
+                        import java.util.ArrayList;
+                        import java.util.Arrays;
+                        import java.util.List;
+                        
+                        class Test {
+                            List<String> l = new ArrayList<>(Arrays.asList("a", "b"));
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void expectedSizeIsConvertedToCapacity() {
+        rewriteRun(
+            java("""
+                        import com.google.common.collect.Maps;
+                        
+                        import java.util.Map;
+                        
+                        class Test {
+                            Map<String, Integer> literal = Maps.newHashMapWithExpectedSize(12);
+                        
+                            Map<String, Integer> computed(int size) {
+                                return Maps.newHashMapWithExpectedSize(size);
+                            }
+                        }
+                    """,
+                """
+                        import java.util.HashMap;
+                        import java.util.Map;
+                        
+                        class Test {
+                            Map<String, Integer> literal = new HashMap<>(17);
+                        
+                            Map<String, Integer> computed(int size) {
+                                return new HashMap<>((int) (size / 0.75f) + 1);
+                            }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void plainIterableIsNotCopiedWithConstructor() {
+        rewriteRun(
+            java("""
+                        import com.google.common.collect.Sets;
+                        
+                        import java.util.Set;
+                        
+                        class Test {
+                            Set<String> copy(Iterable<String> strings) {
+                                return Sets.newHashSet(strings);
+                            }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void sortedSetIsNotCopiedWithItsComparator() {
+        rewriteRun(
+            java("""
+                        import com.google.common.collect.Sets;
+                        
+                        import java.util.SortedSet;
+                        import java.util.TreeSet;
+                        
+                        class Test {
+                            TreeSet<String> naturallyOrdered(SortedSet<String> strings) {
+                                return Sets.newTreeSet(strings);
+                            }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void immutableListAssignedToList() {
+        rewriteRun(
+            java("""
+                        import com.google.common.collect.ImmutableList;
+                        
+                        import java.util.List;
+                        
+                        class Test {
+                            List<String> list = ImmutableList.of("a", "b");
+                            ImmutableList<String> immutable = ImmutableList.of("a", "b");
+                        }
+                    """,
+                """
+                        import com.google.common.collect.ImmutableList;
+                        
+                        import java.util.List;
+                        
+                        class Test {
+                            List<String> list = List.of("a", "b");
+                            ImmutableList<String> immutable = ImmutableList.of("a", "b");
+                        }
+                    """
+            )
+        );
+    }
+}
@@ -0,0 +1,277 @@
+package org.openrewrite.java;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.java.table.GuavaListViews;
+import org.openrewrite.test.RecipeSpec;
+import org.openrewrite.test.RewriteTest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.openrewrite.java.Assertions.java;
+
+class NoGuavaListViewsTest implements RewriteTest {
+    @Override
+    public void defaults(RecipeSpec spec) {
+        spec.recipe(new NoGuavaListViews())
+            .parser(ParserSession.shared("guava").builder().logCompilationWarningsAndErrors(true));
+    }
+
+    @Test
+    void singlePassTransformBecomesStream() {
+        rewriteRun(
+            java("""
+                        import com.google.common.collect.Lists;
+                        
+                        import java.util.List;
+                        
+                        class Test {
+                            void print(List<Integer> numbers) {
+                                Lists.transform(numbers, n -> n * 2).forEach(System.out::println);
+                            }
+                        }
+                    """,
+                """
+                        import java.util.List;
+                        
+                        class Test {
+                            void print(List<Integer> numbers) {
+                                numbers.stream().map(n -> n * 2).forEach(System.out::println);
+                            }
+                        }
+                    """)
+        );
+    }
+
+    @Test
+    void randomlyAccessedTransformIsMaterialized() {
+        rewriteRun(
+            java("""
+                        import com.google.common.collect.Lists;
+                        
+                        import java.util.ArrayList;
+                        import java.util.Arrays;
+                        import java.util.List;
+                        
+                        class Test {
+                            int sum(String[] input) {
+                                List<String> words = new ArrayList<>(Arrays.asList(input));
+                                List<Integer> lengths = Lists.transform(words, String::length);
+                                int sum = 0;
+                                for (int i = 0; i < lengths.size(); i++) {
+                                    sum += lengths.get(i);
+                                }
+                                return sum;
+                            }
+                        }
+                    """,
+                """
+                        import java.util.ArrayList;
+                        import java.util.Arrays;
+                        import java.util.List;
+                        import java.util.stream.Collectors;
+                        
+                        class Test {
+                            int sum(String[] input) {
+                                List<String> words = new ArrayList<>(Arrays.asList(input));
+                                List<Integer> lengths = words.stream().map(String::length).collect(Collectors.toList());
+                                int sum = 0;
+                                for (int i = 0; i < lengths.size(); i++) {
+                                    sum += lengths.get(i);
+                                }
+                                return sum;
+                            }
+                        }
+                    """)
+        );
+    }
+
+    @Test
+    void repeatedlyIteratedReverseIsCopied() {
+        rewriteRun(
+            spec -> spec.dataTable(GuavaListViews.Row.class, rows -> assertThat(rows).containsExactly(
+                new GuavaListViews.Row("Test.java", "print", "reverse", "REPEATED_ITERATION", "MATERIALIZED")
+            )),
+            java("""
+                        import com.google.common.collect.Lists;
+                        
+                        import java.util.ArrayList;
+                        import java.util.List;
+                        
+                        class Test {
+                            void print(String first, String second) {
+                                List<String> words = new ArrayList<>();
+                                words.add(first);
+                                words.add(second);
+                                List<String> reversed = Lists.reverse(words);
+                                for (String w : reversed) {
+                                    System.out.println(w);
+                                }
+                                for (String w : reversed) {
+                                    System.out.println(w.length());
+                                }
+                            }
+                        }
+                    """,
+                """
+                        import com.google.common.collect.Lists;
+                        
+                        import java.util.ArrayList;
+                        import java.util.List;
+                        
+                        class Test {
+                            void print(String first, String second) {
+                                List<String> words = new ArrayList<>();
+                                words.add(first);
+                                words.add(second);
+                                List<String> reversed = new ArrayList<>(Lists.reverse(words));
+                                for (String w : reversed) {
+                                    System.out.println(w);
+                                }
+                                for (String w : reversed) {
+                                    System.out.println(w.length());
+                                }
+                            }
+                        }
+                    """)
+        );
+    }
+
+    @Test
+    void viewOverParameterIsKept() {
+        rewriteRun(
+            java("""
+                        import com.google.common.collect.Lists;
+                        
+                        import java.util.List;
+                        
+                        class Test {
+                            int sum(List<String> words) {
+                                List<Integer> lengths = Lists.transform(words, String::length);
+                                int sum = 0;
+                                for (int i = 0; i < lengths.size(); i++) {
+                                    sum += lengths.get(i);
+                                }
+                                return sum;
+                            }
+                        }
+                    """)
+        );
+    }
+
+    @Test
+    void viewOverEscapingLocalIsKept() {
+        rewriteRun(
+            java("""
+                        import com.google.common.collect.Lists;
+                        
+                        import java.util.ArrayList;
+                        import java.util.List;
+                        import java.util.function.Consumer;
+                        
+                        class Test {
+                            int sum(Consumer<List<String>> fill) {
+                                List<String> words = new ArrayList<>();
+                                fill.accept(words);
+                                List<Integer> lengths = Lists.transform(words, String::length);
+                                int sum = 0;
+                                for (int i = 0; i < lengths.size(); i++) {
+                                    sum += lengths.get(i);
+                                }
+                                return sum;
+                            }
+                        }
+                    """)
+        );
+    }
+
+    @Test
+    void forEachLoopInsideAnotherLoopIteratesOnce() {
+        rewriteRun(
+            spec -> spec.dataTable(GuavaListViews.Row.class, rows -> assertThat(rows).containsExactly(
+                new GuavaListViews.Row("Test.java", "print", "reverse", "SINGLE_PASS", "UNCHANGED")
+            )),
+            java("""
+                        import com.google.common.collect.Lists;
+                        
+                        import java.util.ArrayList;
+                        import java.util.List;
+                        
+                        class Test {
+                            void print(int times) {
+                                List<String> words = new ArrayList<>();
+                                words.add("a");
+                                for (int i = 0; i < times; i++) {
+                                    for (String w : Lists.reverse(words)) {
+                                        System.out.println(w);
+                                    }
+                                }
+                            }
+                        }
+                    """)
+        );
+    }
+
+    @Test
+    void sizeInsideLoopIsNotIteration() {
+        rewriteRun(
+            spec -> spec.dataTable(GuavaListViews.Row.class, rows -> assertThat(rows).containsExactly(
+                new GuavaListViews.Row("Test.java", "print", "reverse", "SINGLE_PASS", "UNCHANGED")
+            )),
+            java("""
+                        import com.google.common.collect.Lists;
+                        
+                        import java.util.ArrayList;
+                        import java.util.List;
+                        
+                        class Test {
+                            void print(int limit) {
+                                List<String> words = new ArrayList<>();
+                                words.add("a");
+                                List<String> reversed = Lists.reverse(words);
+                                while (reversed.size() > limit) {
+                                    limit++;
+                                }
+                                for (String w : reversed) {
+                                    System.out.println(w);
+                                }
+                            }
+                        }
+                    """)
+        );
+    }
+
+    @Test
+    void viewOverMutatedListIsKept() {
+        rewriteRun(
+            java("""
+                        import com.google.common.collect.Lists;
+                        
+                        import java.util.List;
+                        
+                        class Test {
+                            int last(List<String> words) {
+                                List<Integer> lengths = Lists.transform(words, String::length);
+                                words.add("more");
+                                return lengths.get(lengths.size() - 1);
+                            }
+                        }
+                    """)
+        );
+    }
+
+    @Test
+    void escapingViewIsKept() {
+        rewriteRun(
+            java("""
+                        import com.google.common.collect.Lists;
+                        
+                        import java.util.List;
+                        
+                        class Test {
+                            List<List<String>> batches(List<String> words) {
+                                return Lists.partition(words, 10);
+                            }
+                        }
+                    """)
+        );
+    }
+}
@@ -14,9 +14,7 @@ class NoGuavaListsNewArrayListTest implements RewriteTest {
     @Override
     public void defaults(RecipeSpec spec) {
         spec.recipe(new NoGuavaListsNewArrayList())
-            .parser(JavaParser.fromJavaVersion()
-                              .logCompilationWarningsAndErrors(true)
-                              .classpath("guava"));
+            .parser(ParserSession.shared("guava").builder().logCompilationWarningsAndErrors(true));
     }
 
     @Test
@@ -25,9 +23,7 @@ class NoGuavaListsNewArrayListTest implements RewriteTest {
             //There is an overloaded version or rewriteRun that allows the RecipeSpec to be customized specifically
             //for a given test. In this case, the parser for this test is configured to not log compilation warnings.
             spec -> spec
-                .parser(JavaParser.fromJavaVersion()
-                                  .logCompilationWarningsAndErrors(false)
-                                  .classpath("guava")),
+                .parser(ParserSession.shared("guava").builder().logCompilationWarningsAndErrors(false)),
             java("""
                         import com.google.common.collect.*;
                         
@@ -100,4 +96,21 @@ class NoGuavaListsNewArrayListTest implements RewriteTest {
                     """)
         );
     }
+
+    @Test
+    void plainIterableIsNotReplaced() {
+        rewriteRun(
+            java("""
+                        import com.google.common.collect.Lists;
+                        
+                        import java.util.List;
+                        
+                        class Test {
+                            List<String> copy(Iterable<String> names) {
+                                return Lists.newArrayList(names);
+                            }
+                        }
+                    """)
+        );
+    }
 }
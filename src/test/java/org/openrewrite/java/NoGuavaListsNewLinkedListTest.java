@@ -0,0 +1,272 @@
+package org.openrewrite.java;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.test.RecipeSpec;
+import org.openrewrite.test.RewriteTest;
+
+import static org.openrewrite.java.Assertions.java;
+
+class NoGuavaListsNewLinkedListTest implements RewriteTest {
+    @Override
+    public void defaults(RecipeSpec spec) {
+        spec.recipe(new NoGuavaListsNewLinkedList())
+            .parser(ParserSession.shared("guava").builder().logCompilationWarningsAndErrors(true));
+    }
+
+    @Test
+    void appendedAndIteratedBecomesArrayList() {
+        rewriteRun(
+            java("""
+                        import com.google.common.collect.Lists;
+                        
+                        import java.util.List;
+                        
+                        class Test {
+                            int totalLength(String[] words) {
+                                List<String> kept = Lists.newLinkedList();
+                                for (String word : words) {
+                                    kept.add(word);
+                                }
+                                int total = 0;
+                                for (String word : kept) {
+                                    total += word.length();
+                                }
+                                return total;
+                            }
+                        }
+                    """,
+                """
+                        import java.util.ArrayList;
+                        import java.util.List;
+                        
+                        class Test {
+                            int totalLength(String[] words) {
+                                List<String> kept = new ArrayList<>();
+                                for (String word : words) {
+                                    kept.add(word);
+                                }
+                                int total = 0;
+                                for (String word : kept) {
+                                    total += word.length();
+                                }
+                                return total;
+                            }
+                        }
+                    """)
+        );
+    }
+
+    @Test
+    void privateFieldUsedAsStackBecomesArrayDeque() {
+        rewriteRun(
+            java("""
+                        import com.google.common.collect.Lists;
+                        
+                        import java.util.LinkedList;
+                        
+                        class Test {
+                            private final LinkedList<Integer> depths = Lists.newLinkedList();
+                        
+                            void enter(int depth) {
+                                depths.push(depth);
+                            }
+                        
+                            int leave() {
+                                return this.depths.pop();
+                            }
+                        }
+                    """,
+                """
+                        import java.util.ArrayDeque;
+                        
+                        class Test {
+                            private final ArrayDeque<Integer> depths = new ArrayDeque<>();
+                        
+                            void enter(int depth) {
+                                depths.push(depth);
+                            }
+                        
+                            int leave() {
+                                return this.depths.pop();
+                            }
+                        }
+                    """)
+        );
+    }
+
+    @Test
+    void queueThatMayHoldNullStaysLinkedList() {
+        rewriteRun(
+            java("""
+                        import com.google.common.collect.Lists;
+                        
+                        import java.util.Queue;
+                        
+                        class Test {
+                            void drain(String first, String second) {
+                                Queue<String> pending = Lists.newLinkedList();
+                                pending.offer(first);
+                                pending.offer(second);
+                                while (!pending.isEmpty()) {
+                                    System.out.println(pending.poll());
+                                }
+                            }
+                        }
+                    """,
+                """
+                        import java.util.LinkedList;
+                        import java.util.Queue;
+                        
+                        class Test {
+                            void drain(String first, String second) {
+                                Queue<String> pending = new LinkedList<>();
+                                pending.offer(first);
+                                pending.offer(second);
+                                while (!pending.isEmpty()) {
+                                    System.out.println(pending.poll());
+                                }
+                            }
+                        }
+                    """)
+        );
+    }
+
+    @Test
+    void indexRemovalStaysLinkedList() {
+        rewriteRun(
+            java("""
+                        import com.google.common.collect.Lists;
+                        
+                        import java.util.LinkedList;
+                        
+                        class Test {
+                            private LinkedList<String> recent = Lists.newLinkedList();
+                        
+                            void remember(String item) {
+                                recent.add(item);
+                                if (recent.size() > 10) {
+                                    recent.remove(0);
+                                }
+                            }
+                        }
+                    """,
+                """
+                        import java.util.LinkedList;
+                        
+                        class Test {
+                            private LinkedList<String> recent = new LinkedList<>();
+                        
+                            void remember(String item) {
+                                recent.add(item);
+                                if (recent.size() > 10) {
+                                    recent.remove(0);
+                                }
+                            }
+                        }
+                    """)
+        );
+    }
+
+    @Test
+    void indexRemovalByShortStaysLinkedList() {
+        rewriteRun(
+            java("""
+                        import com.google.common.collect.Lists;
+                        
+                        import java.util.LinkedList;
+                        
+                        class Test {
+                            private LinkedList<String> recent = Lists.newLinkedList();
+                        
+                            void remember(String item, short oldest) {
+                                recent.add(item);
+                                recent.remove(oldest);
+                            }
+                        }
+                    """,
+                """
+                        import java.util.LinkedList;
+                        
+                        class Test {
+                            private LinkedList<String> recent = new LinkedList<>();
+                        
+                            void remember(String item, short oldest) {
+                                recent.add(item);
+                                recent.remove(oldest);
+                            }
+                        }
+                    """)
+        );
+    }
+
+    @Test
+    void anonymousClassFieldUsedByEarlierMethodStaysLinkedList() {
+        rewriteRun(
+            java("""
+                        import com.google.common.collect.Lists;
+                        
+                        import java.util.LinkedList;
+                        
+                        class Test {
+                            Runnable trimmer() {
+                                return new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        recent.remove(0);
+                                    }
+                        
+                                    private LinkedList<String> recent = Lists.newLinkedList();
+                                };
+                            }
+                        }
+                    """,
+                """
+                        import java.util.LinkedList;
+                        
+                        class Test {
+                            Runnable trimmer() {
+                                return new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        recent.remove(0);
+                                    }
+                        
+                                    private LinkedList<String> recent = new LinkedList<>();
+                                };
+                            }
+                        }
+                    """)
+        );
+    }
+
+    @Test
+    void escapingListStaysLinkedList() {
+        rewriteRun(
+            java("""
+                        import com.google.common.collect.Lists;
+                        
+                        import java.util.List;
+                        
+                        class Test {
+                            List<String> names() {
+                                List<String> names = Lists.newLinkedList();
+                                names.add("a");
+                                return names;
+                            }
+                        }
+                    """,
+                """
+                        import java.util.LinkedList;
+                        import java.util.List;
+                        
+                        class Test {
+                            List<String> names() {
+                                List<String> names = new LinkedList<>();
+                                names.add("a");
+                                return names;
+                            }
+                        }
+                    """)
+        );
+    }
+}
@@ -0,0 +1,77 @@
+package org.openrewrite.java;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.JavaType;
+import org.openrewrite.java.tree.TypeUtils;
+
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParserSessionTest {
+
+    @Test
+    void typesAreReusedAcrossParses() {
+        ParserSession session = new ParserSession(emptyList(), ParserSession.DEFAULT_MAX_TYPES);
+        assertThat(stringType(session, "A")).isSameAs(stringType(session, "B"));
+    }
+
+    @Test
+    void resetDropsCachedTypes() {
+        ParserSession session = new ParserSession(emptyList(), ParserSession.DEFAULT_MAX_TYPES);
+        JavaType.FullyQualified before = stringType(session, "A");
+        session.reset();
+        JavaType.FullyQualified after = stringType(session, "B");
+
+        assertThat(after).isNotSameAs(before);
+        assertThat(after.getFullyQualifiedName()).isEqualTo("java.lang.String");
+    }
+
+    @Test
+    void typeCacheIsBounded() {
+        ParserSession session = new ParserSession(emptyList(), 1);
+        assertThat(stringType(session, "A")).isNotSameAs(stringType(session, "B"));
+    }
+
+    @Test
+    void sourceTypesAreNotReusedAcrossParses() {
+        ParserSession session = new ParserSession(emptyList(), ParserSession.DEFAULT_MAX_TYPES);
+        J.CompilationUnit serializable = parse(session, "class A implements java.io.Serializable { String s; }");
+        J.CompilationUnit plain = parse(session, "class A { String s; }");
+
+        assertThat(TypeUtils.isAssignableTo("java.io.Serializable", serializable.getClasses().get(0).getType())).isTrue();
+        assertThat(TypeUtils.isAssignableTo("java.io.Serializable", plain.getClasses().get(0).getType())).isFalse();
+        assertThat(fieldType(plain)).isSameAs(fieldType(serializable));
+    }
+
+    @Test
+    void classpathTypesAreReusedAcrossParses() {
+        ParserSession session = new ParserSession(ParserSession.shared("guava").getClasspath(),
+                ParserSession.DEFAULT_MAX_TYPES);
+        String source = "class A { com.google.common.base.Joiner joiner; }";
+        assertThat(fieldType(parse(session, source))).isSameAs(fieldType(parse(session, source)));
+    }
+
+    @Test
+    void sharedSessionsAreResolvedOnce() {
+        assertThat(ParserSession.shared("guava")).isSameAs(ParserSession.shared("guava"));
+        assertThat(ParserSession.shared("guava").getClasspath())
+                .anySatisfy(entry -> assertThat(entry.toString()).contains("guava"));
+    }
+
+    private static JavaType.FullyQualified stringType(ParserSession session, String className) {
+        return fieldType(parse(session, "class " + className + " { String s; }"));
+    }
+
+    private static JavaType.FullyQualified fieldType(J.CompilationUnit cu) {
+        J.VariableDeclarations field = (J.VariableDeclarations) cu.getClasses().get(0).getBody().getStatements().get(0);
+        return TypeUtils.asFullyQualified(field.getType());
+    }
+
+    private static J.CompilationUnit parse(ParserSession session, String source) {
+        return session.parse(new InMemoryExecutionContext(t -> {
+            throw new AssertionError(t);
+        }), source).get(0);
+    }
+}
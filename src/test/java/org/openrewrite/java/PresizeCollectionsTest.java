@@ -0,0 +1,142 @@
+package org.openrewrite.java;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.test.RecipeSpec;
+import org.openrewrite.test.RewriteTest;
+
+import static org.openrewrite.java.Assertions.java;
+
+class PresizeCollectionsTest implements RewriteTest {
+    @Override
+    public void defaults(RecipeSpec spec) {
+        spec.recipe(new PresizeCollections());
+    }
+
+    @Test
+    void listFilledFromCollection() {
+        rewriteRun(
+            java("""
+                        import java.util.ArrayList;
+                        import java.util.List;
+                        
+                        class Test {
+                            List<Integer> lengths(List<String> words) {
+                                List<Integer> lengths = new ArrayList<>();
+                                for (String word : words) {
+                                    lengths.add(word.length());
+                                }
+                                return lengths;
+                            }
+                        }
+                    """,
+                """
+                        import java.util.ArrayList;
+                        import java.util.List;
+                        
+                        class Test {
+                            List<Integer> lengths(List<String> words) {
+                                List<Integer> lengths = new ArrayList<>(words.size());
+                                for (String word : words) {
+                                    lengths.add(word.length());
+                                }
+                                return lengths;
+                            }
+                        }
+                    """)
+        );
+    }
+
+    @Test
+    void mapFilledFromArrayUsesLoadFactor() {
+        rewriteRun(
+            java("""
+                        import java.util.HashMap;
+                        import java.util.Map;
+                        
+                        class Test {
+                            Map<String, Integer> index(String[] words) {
+                                Map<String, Integer> index = new HashMap<>();
+                                for (String word : words) {
+                                    index.put(word, word.length());
+                                }
+                                return index;
+                            }
+                        }
+                    """,
+                """
+                        import java.util.HashMap;
+                        import java.util.Map;
+                        
+                        class Test {
+                            Map<String, Integer> index(String[] words) {
+                                Map<String, Integer> index = new HashMap<>((int) (words.length / 0.75f) + 1);
+                                for (String word : words) {
+                                    index.put(word, word.length());
+                                }
+                                return index;
+                            }
+                        }
+                    """)
+        );
+    }
+
+    @Test
+    void mapFilledFromEntrySet() {
+        rewriteRun(
+            java("""
+                        import java.util.HashMap;
+                        import java.util.Map;
+                        
+                        class Test {
+                            Map<Integer, String> invert(Map<String, Integer> source) {
+                                Map<Integer, String> inverted = new HashMap<>();
+                                for (Map.Entry<String, Integer> entry : source.entrySet()) {
+                                    inverted.put(entry.getValue(), entry.getKey());
+                                }
+                                return inverted;
+                            }
+                        }
+                    """,
+                """
+                        import java.util.HashMap;
+                        import java.util.Map;
+                        
+                        class Test {
+                            Map<Integer, String> invert(Map<String, Integer> source) {
+                                Map<Integer, String> inverted = new HashMap<>((int) (source.size() / 0.75f) + 1);
+                                for (Map.Entry<String, Integer> entry : source.entrySet()) {
+                                    inverted.put(entry.getValue(), entry.getKey());
+                                }
+                                return inverted;
+                            }
+                        }
+                    """)
+        );
+    }
+
+    @Test
+    void conditionalOrUnsizedFillIsUnchanged() {
+        rewriteRun(
+            java("""
+                        import java.util.ArrayList;
+                        import java.util.List;
+                        
+                        class Test {
+                            List<String> nonEmpty(List<String> words, Iterable<String> more) {
+                                List<String> nonEmpty = new ArrayList<>();
+                                for (String word : words) {
+                                    if (!word.isEmpty()) {
+                                        nonEmpty.add(word);
+                                    }
+                                }
+                                List<String> all = new ArrayList<>();
+                                for (String word : more) {
+                                    all.add(word);
+                                }
+                                return nonEmpty;
+                            }
+                        }
+                    """)
+        );
+    }
+}
@@ -0,0 +1,318 @@
+package org.openrewrite.java.batch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.java.MakeInnerClassesStatic;
+import org.openrewrite.java.MakeNonOverridableMethodsWithoutInstanceDataStatic;
+import org.openrewrite.java.tree.J;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchDriverTest {
+    private static final String CANDIDATE = """
+            class A%d {
+                private int one() {
+                    return 1;
+                }
+            }
+            """;
+
+    @Test
+    void rewritesInPlaceAcrossBatches(@TempDir Path root) throws IOException {
+        for (int i = 0; i < 7; i++) {
+            Path source = root.resolve("src/p" + (i % 2) + "/A" + i + ".java");
+            Files.createDirectories(source.getParent());
+            Files.write(source, String.format(CANDIDATE, i).getBytes(StandardCharsets.UTF_8));
+        }
+
+        BatchSummary summary = new BatchDriver(
+                singletonList(new MakeNonOverridableMethodsWithoutInstanceDataStatic()),
+                BatchOptions.builder()
+                        .threads(3)
+                        .batchSize(2)
+                        .output(BatchOptions.Output.IN_PLACE)
+                        .build()
+        ).run(root);
+
+        assertThat(summary.getErrors()).isEmpty();
+        assertThat(summary.getFiles()).isEqualTo(7);
+        assertThat(summary.getChangedFiles()).isEqualTo(7);
+        assertThat(new String(Files.readAllBytes(root.resolve("src/p0/A4.java")), StandardCharsets.UTF_8))
+                .contains("private static int one()");
+    }
+
+    @Test
+    void writesSinglePatch(@TempDir Path root) throws IOException {
+        Files.write(root.resolve("A0.java"), String.format(CANDIDATE, 0).getBytes(StandardCharsets.UTF_8));
+        Files.write(root.resolve("B.java"), "class B {}".getBytes(StandardCharsets.UTF_8));
+
+        BatchSummary summary = new BatchDriver(
+                singletonList(new MakeNonOverridableMethodsWithoutInstanceDataStatic()),
+                BatchOptions.builder().build()
+        ).run(root);
+
+        assertThat(summary.getChangedFiles()).isEqualTo(1);
+        assertThat(new String(Files.readAllBytes(root.resolve("rewrite.patch")), StandardCharsets.UTF_8))
+                .contains("+    private static int one() {");
+        assertThat(new String(Files.readAllBytes(root.resolve("A0.java")), StandardCharsets.UTF_8))
+                .doesNotContain("static");
+    }
+
+    @Test
+    void unchangedFilesAreServedFromCache(@TempDir Path root) throws IOException {
+        Files.write(root.resolve("A0.java"), String.format(CANDIDATE, 0).getBytes(StandardCharsets.UTF_8));
+        Files.write(root.resolve("B.java"), "class B {}".getBytes(StandardCharsets.UTF_8));
+        BatchDriver driver = new BatchDriver(
+                singletonList(new MakeNonOverridableMethodsWithoutInstanceDataStatic()),
+                BatchOptions.builder()
+                        .cacheFile(root.resolve(".rewrite/results.cache"))
+                        .build()
+        );
+
+        BatchSummary first = driver.run(root);
+        assertThat(first.getCacheMisses()).isEqualTo(2);
+        String patch = new String(Files.readAllBytes(root.resolve("rewrite.patch")), StandardCharsets.UTF_8);
+
+        Files.delete(root.resolve("rewrite.patch"));
+        BatchSummary second = driver.run(root);
+        assertThat(second.getCacheHits()).isEqualTo(2);
+        assertThat(second.getChangedFiles()).isEqualTo(1);
+        assertThat(second.getParseTime()).isZero();
+        assertThat(new String(Files.readAllBytes(root.resolve("rewrite.patch")), StandardCharsets.UTF_8)).isEqualTo(patch);
+    }
+
+    @Test
+    void cachedOutcomeIsNotUsedOnceAFileParsedWithItChanges(@TempDir Path root) throws IOException {
+        Path outer = root.resolve("a/Outer.java");
+        Files.createDirectories(outer.getParent());
+        Files.write(outer, """
+                package a;
+                
+                public class Outer {
+                    int count;
+                
+                    public class Inner {
+                        int read() {
+                            return count;
+                        }
+                    }
+                }
+                """.getBytes(StandardCharsets.UTF_8));
+        Path creator = root.resolve("a/Creator.java");
+        Files.write(creator, """
+                package a;
+                
+                class Creator {
+                    Object create(Outer outer) {
+                        return outer.new Inner();
+                    }
+                }
+                """.getBytes(StandardCharsets.UTF_8));
+        BatchDriver driver = new BatchDriver(
+                singletonList(new MakeInnerClassesStatic()),
+                BatchOptions.builder()
+                        .output(BatchOptions.Output.IN_PLACE)
+                        .cacheFile(root.resolve(".rewrite/results.cache"))
+                        .build()
+        );
+
+        assertThat(driver.run(root).getChangedFiles()).isZero();
+
+        // Inner no longer uses the outer instance, so its creation in the unchanged Creator changes too
+        Files.write(outer, """
+                package a;
+                
+                public class Outer {
+                    public class Inner {
+                    }
+                }
+                """.getBytes(StandardCharsets.UTF_8));
+        BatchSummary second = driver.run(root);
+        assertThat(second.getCacheHits()).isZero();
+        assertThat(second.getChangedFiles()).isEqualTo(2);
+        assertThat(new String(Files.readAllBytes(creator), StandardCharsets.UTF_8))
+                .contains("return new Outer.Inner();");
+    }
+
+    @Test
+    void filesOverBudgetAreLeftUnchangedAndQuarantined(@TempDir Path root) throws IOException {
+        Files.write(root.resolve("A0.java"), String.format(CANDIDATE, 0).getBytes(StandardCharsets.UTF_8));
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            body.append("        n++;\n");
+        }
+        String huge = "class Huge {\n    private int huge(int n) {\n" + body + "        return n;\n    }\n}\n";
+        Files.write(root.resolve("Huge.java"), huge.getBytes(StandardCharsets.UTF_8));
+        BatchDriver driver = new BatchDriver(
+                singletonList(new MakeNonOverridableMethodsWithoutInstanceDataStatic()),
+                BatchOptions.builder()
+                        .output(BatchOptions.Output.IN_PLACE)
+                        .fileNodeBudget(500)
+                        .quarantineFile(root.resolve(".rewrite/quarantine"))
+                        .build()
+        );
+
+        BatchSummary first = driver.run(root);
+        assertThat(first.getErrors()).isEmpty();
+        assertThat(first.getChangedFiles()).isEqualTo(1);
+        assertThat(first.getQuarantined()).singleElement().satisfies(entry -> {
+            assertThat(entry.getSourcePath()).isEqualTo(Paths.get("Huge.java"));
+            assertThat(entry.getRecipe()).isEqualTo(new MakeNonOverridableMethodsWithoutInstanceDataStatic().getName());
+            assertThat(entry.getMethod()).isEqualTo("Huge#huge");
+            assertThat(entry.getLimit()).isEqualTo("NODES");
+        });
+        assertThat(new String(Files.readAllBytes(root.resolve("Huge.java")), StandardCharsets.UTF_8)).isEqualTo(huge);
+        assertThat(new String(Files.readAllBytes(root.resolve("A0.java")), StandardCharsets.UTF_8))
+                .contains("private static int one()");
+        assertThat(new String(Files.readAllBytes(root.resolve(".rewrite/quarantine")), StandardCharsets.UTF_8))
+                .contains("Huge.java\t");
+
+        BatchSummary second = driver.run(root);
+        assertThat(second.getSkippedFiles()).isEqualTo(1);
+        assertThat(second.getFiles()).isEqualTo(1);
+        assertThat(second.getQuarantined()).isEmpty();
+    }
+
+    @Test
+    void everyRecipeIsHeldToTheNodeBudget(@TempDir Path root) throws IOException {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            body.append("        n++;\n");
+        }
+        String huge = "class Huge {\n    int huge(int n) {\n" + body + "        return n;\n    }\n\n    class Inner {\n    }\n}\n";
+        Files.write(root.resolve("Huge.java"), huge.getBytes(StandardCharsets.UTF_8));
+
+        BatchSummary summary = new BatchDriver(
+                singletonList(new MakeInnerClassesStatic()),
+                BatchOptions.builder()
+                        .output(BatchOptions.Output.IN_PLACE)
+                        .fileNodeBudget(500)
+                        .build()
+        ).run(root);
+
+        assertThat(summary.getErrors()).isEmpty();
+        assertThat(summary.getQuarantined()).singleElement().satisfies(entry -> {
+            assertThat(entry.getRecipe()).isEqualTo(new MakeInnerClassesStatic().getName());
+            assertThat(entry.getMethod()).isEqualTo("Huge#huge");
+            assertThat(entry.getLimit()).isEqualTo("NODES");
+        });
+        assertThat(new String(Files.readAllBytes(root.resolve("Huge.java")), StandardCharsets.UTF_8)).isEqualTo(huge);
+    }
+
+    /**
+     * Counts the files held by batches being processed, which are all the parsed files there are, and slows batches
+     * down so that the walk of the directory gets ahead of them if it is not held back.
+     */
+    @Test
+    void streamingBoundsFilesInFlight(@TempDir Path root) throws Exception {
+        int files = 60;
+        for (int i = 0; i < files; i++) {
+            Path source = root.resolve("src/p" + (i / 20) + "/A" + i + ".java");
+            Files.createDirectories(source.getParent());
+            Files.write(source, String.format(CANDIDATE, i).getBytes(StandardCharsets.UTF_8));
+        }
+
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peakInFlight = new AtomicInteger();
+        BatchSummary summary = new BatchDriver(
+                singletonList(new MakeNonOverridableMethodsWithoutInstanceDataStatic()),
+                BatchOptions.builder()
+                        .streaming(true)
+                        .maxInFlight(4)
+                        .batchSize(2)
+                        .threads(4)
+                        .output(BatchOptions.Output.IN_PLACE)
+                        .build()
+        ) {
+            @Override
+            void processBatch(Run run, List<Path> batch) {
+                peakInFlight.accumulateAndGet(inFlight.addAndGet(batch.size()), Math::max);
+                try {
+                    Thread.sleep(10);
+                    super.processBatch(run, batch);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    inFlight.addAndGet(-batch.size());
+                }
+            }
+        }.run(root);
+
+        assertThat(summary.getErrors()).isEmpty();
+        assertThat(summary.getChangedFiles()).isEqualTo(files);
+        assertThat(peakInFlight.get()).isBetween(1, 4);
+        assertThat(new String(Files.readAllBytes(root.resolve("src/p2/A59.java")), StandardCharsets.UTF_8))
+                .contains("private static int one()");
+    }
+
+    /**
+     * Records every parsed tree weakly, and checks before each parse how many of them are still reachable, which is
+     * the memory that syntax trees take at that point.
+     */
+    @Test
+    void processedTreesAreReleased(@TempDir Path root) throws Exception {
+        int files = 60;
+        for (int i = 0; i < files; i++) {
+            Path source = root.resolve("src/p" + (i / 20) + "/A" + i + ".java");
+            Files.createDirectories(source.getParent());
+            Files.write(source, String.format(CANDIDATE, i).getBytes(StandardCharsets.UTF_8));
+        }
+
+        Queue<WeakReference<J.CompilationUnit>> parsed = new ConcurrentLinkedQueue<>();
+        AtomicInteger peakReachable = new AtomicInteger();
+        BatchSummary summary = new BatchDriver(
+                singletonList(new MakeNonOverridableMethodsWithoutInstanceDataStatic()),
+                BatchOptions.builder()
+                        .streaming(true)
+                        .maxInFlight(4)
+                        .batchSize(2)
+                        .threads(4)
+                        .output(BatchOptions.Output.PATCH)
+                        .build()
+        ) {
+            @Override
+            List<J.CompilationUnit> parse(Run run, List<Path> sources, ExecutionContext ctx) throws IOException {
+                peakReachable.accumulateAndGet(reachable(parsed), Math::max);
+                List<J.CompilationUnit> compilationUnits = super.parse(run, sources, ctx);
+                for (J.CompilationUnit cu : compilationUnits) {
+                    parsed.add(new WeakReference<>(cu));
+                }
+                return compilationUnits;
+            }
+        }.run(root);
+
+        assertThat(summary.getErrors()).isEmpty();
+        assertThat(summary.getChangedFiles()).isEqualTo(files);
+        assertThat(parsed).hasSize(files);
+        // only the trees of batches in flight are reachable, allowing for batches releasing their permits meanwhile
+        assertThat(peakReachable.get()).isLessThanOrEqualTo(2 * 4);
+        assertThat(reachable(parsed)).isZero();
+    }
+
+    private static int reachable(Queue<WeakReference<J.CompilationUnit>> trees) {
+        int reachable = trees.size();
+        for (int attempt = 0; attempt < 10 && reachable > 0; attempt++) {
+            System.gc();
+            reachable = 0;
+            for (WeakReference<J.CompilationUnit> tree : trees) {
+                if (tree.get() != null) {
+                    reachable++;
+                }
+            }
+        }
+        return reachable;
+    }
+}
@@ -0,0 +1,165 @@
+package org.openrewrite.java.batch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.java.MakeNonOverridableMethodsWithoutInstanceDataStatic;
+import org.openrewrite.java.NoGuavaListsNewArrayList;
+import org.openrewrite.java.ParserSession;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.JavaType;
+import org.openrewrite.java.tree.TypeUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LstSnapshotTest {
+    private static final String SOURCE = """
+            import java.util.ArrayList;
+            import java.util.List;
+
+            class A {
+                List<String> names = new ArrayList<>();
+
+                private int one() {
+                    return 1;
+                }
+            }
+            """;
+
+    private static final byte[] DEPENDENCIES = ResultCache.dependencies(
+            singletonMap(Paths.get("A.java"), SOURCE.getBytes(StandardCharsets.UTF_8)));
+
+    private static final String CLASSPATH = ResultCache.classpathFingerprint(emptyList());
+
+    @Test
+    void loadsTypeAttributedCompilationUnit(@TempDir Path dir) throws IOException {
+        byte[] content = SOURCE.getBytes(StandardCharsets.UTF_8);
+        J.CompilationUnit parsed = parse(dir, content);
+
+        try (LstSnapshot snapshot = LstSnapshot.open(dir.resolve("snapshot"), CLASSPATH)) {
+            snapshot.put(parsed, LstSnapshot.hash(content), DEPENDENCIES);
+        }
+
+        try (LstSnapshot snapshot = LstSnapshot.open(dir.resolve("snapshot"), CLASSPATH)) {
+            J.CompilationUnit loaded = snapshot.load(parsed.getSourcePath(), LstSnapshot.hash(content), DEPENDENCIES);
+            assertThat(loaded).isNotNull();
+            assertThat(loaded.printAll()).isEqualTo(SOURCE);
+            J.VariableDeclarations names = (J.VariableDeclarations) loaded.getClasses().get(0).getBody().getStatements().get(0);
+            JavaType.FullyQualified type = TypeUtils.asFullyQualified(names.getType());
+            assertThat(type).isNotNull();
+            assertThat(type.getFullyQualifiedName()).isEqualTo("java.util.List");
+        }
+    }
+
+    @Test
+    void staleEntryIsNotLoaded(@TempDir Path dir) throws IOException {
+        byte[] content = SOURCE.getBytes(StandardCharsets.UTF_8);
+        J.CompilationUnit parsed = parse(dir, content);
+
+        try (LstSnapshot snapshot = LstSnapshot.open(dir.resolve("snapshot"), CLASSPATH)) {
+            snapshot.put(parsed, LstSnapshot.hash(content), DEPENDENCIES);
+            byte[] edited = SOURCE.replace("return 1", "return 2").getBytes(StandardCharsets.UTF_8);
+            assertThat(snapshot.load(parsed.getSourcePath(), LstSnapshot.hash(edited), DEPENDENCIES)).isNull();
+        }
+    }
+
+    @Test
+    void entryParsedWithOtherDependenciesIsNotLoaded(@TempDir Path dir) throws IOException {
+        byte[] content = SOURCE.getBytes(StandardCharsets.UTF_8);
+        J.CompilationUnit parsed = parse(dir, content);
+
+        try (LstSnapshot snapshot = LstSnapshot.open(dir.resolve("snapshot"), CLASSPATH)) {
+            snapshot.put(parsed, LstSnapshot.hash(content), DEPENDENCIES);
+            Map<Path, byte[]> sources = new HashMap<>();
+            sources.put(Paths.get("A.java"), content);
+            sources.put(Paths.get("B.java"), "class B {}".getBytes(StandardCharsets.UTF_8));
+            assertThat(snapshot.load(parsed.getSourcePath(), LstSnapshot.hash(content),
+                    ResultCache.dependencies(sources))).isNull();
+            assertThat(snapshot.getLoads()).isZero();
+        }
+    }
+
+    @Test
+    void unclosedSnapshotKeepsPreviousEntries(@TempDir Path dir) throws IOException {
+        byte[] content = SOURCE.getBytes(StandardCharsets.UTF_8);
+        J.CompilationUnit parsed = parse(dir, content);
+        try (LstSnapshot snapshot = LstSnapshot.open(dir.resolve("snapshot"), CLASSPATH)) {
+            snapshot.put(parsed, LstSnapshot.hash(content), DEPENDENCIES);
+        }
+
+        // entries appended without closing are not indexed, and are discarded on the next open
+        LstSnapshot unclosed = LstSnapshot.open(dir.resolve("snapshot"), CLASSPATH);
+        unclosed.put(parsed.withSourcePath(Paths.get("B.java")), LstSnapshot.hash(content), DEPENDENCIES);
+
+        try (LstSnapshot snapshot = LstSnapshot.open(dir.resolve("snapshot"), CLASSPATH)) {
+            assertThat(snapshot.load(parsed.getSourcePath(), LstSnapshot.hash(content), DEPENDENCIES)).isNotNull();
+            assertThat(snapshot.load(Paths.get("B.java"), LstSnapshot.hash(content), DEPENDENCIES)).isNull();
+        }
+        unclosed.close();
+    }
+
+    @Test
+    void snapshotOfAnotherClasspathIsDropped(@TempDir Path dir) throws IOException {
+        byte[] content = SOURCE.getBytes(StandardCharsets.UTF_8);
+        J.CompilationUnit parsed = parse(dir, content);
+        Path jar = dir.resolve("dependency.jar");
+        Files.write(jar, new byte[]{1});
+        String classpath = ResultCache.classpathFingerprint(singletonList(jar));
+        try (LstSnapshot snapshot = LstSnapshot.open(dir.resolve("snapshot"), classpath)) {
+            snapshot.put(parsed, LstSnapshot.hash(content), DEPENDENCIES);
+        }
+
+        Files.write(jar, new byte[]{1, 2});
+        String upgraded = ResultCache.classpathFingerprint(singletonList(jar));
+        assertThat(upgraded).isNotEqualTo(classpath);
+        try (LstSnapshot snapshot = LstSnapshot.open(dir.resolve("snapshot"), upgraded)) {
+            assertThat(snapshot.load(parsed.getSourcePath(), LstSnapshot.hash(content), DEPENDENCIES)).isNull();
+        }
+        try (LstSnapshot snapshot = LstSnapshot.open(dir.resolve("snapshot"), classpath)) {
+            assertThat(snapshot.load(parsed.getSourcePath(), LstSnapshot.hash(content), DEPENDENCIES)).isNull();
+        }
+    }
+
+    @Test
+    void differentRecipesRunOnSnapshot(@TempDir Path root) throws IOException {
+        Files.write(root.resolve("A.java"), SOURCE.getBytes(StandardCharsets.UTF_8));
+        Path snapshot = root.resolve(".rewrite/snapshot");
+
+        BatchSummary first = new BatchDriver(
+                singletonList(new NoGuavaListsNewArrayList()),
+                BatchOptions.builder().snapshotDirectory(snapshot).build()
+        ).run(root);
+        assertThat(first.getChangedFiles()).isZero();
+        assertThat(first.getSnapshotLoads()).isZero();
+
+        BatchSummary second = new BatchDriver(
+                Arrays.asList(new MakeNonOverridableMethodsWithoutInstanceDataStatic(), new NoGuavaListsNewArrayList()),
+                BatchOptions.builder().snapshotDirectory(snapshot).build()
+        ).run(root);
+        assertThat(second.getErrors()).isEmpty();
+        assertThat(second.getSnapshotLoads()).isEqualTo(1);
+        assertThat(second.getChangedFiles()).isEqualTo(1);
+        assertThat(new String(Files.readAllBytes(root.resolve("rewrite.patch")), StandardCharsets.UTF_8))
+                .contains("+    private static int one() {");
+    }
+
+    private static J.CompilationUnit parse(Path dir, byte[] content) throws IOException {
+        Path source = dir.resolve("A.java");
+        Files.write(source, content);
+        return ParserSession.shared()
+                .parse(singletonList(source), dir, new InMemoryExecutionContext(Throwable::printStackTrace))
+                .get(0);
+    }
+}
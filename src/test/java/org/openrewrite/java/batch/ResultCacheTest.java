@@ -0,0 +1,95 @@
+package org.openrewrite.java.batch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openrewrite.Recipe;
+import org.openrewrite.java.MakeNonOverridableMethodsWithoutInstanceDataStatic;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResultCacheTest {
+    private static final byte[] DEPENDENCIES = ResultCache.dependencies(Collections.emptyMap());
+    private static final byte[] UNCHANGED_KEY = ResultCache.key(Paths.get("A.java"), "class A {}".getBytes(StandardCharsets.UTF_8), DEPENDENCIES);
+    private static final byte[] CHANGED_KEY = ResultCache.key(Paths.get("B.java"), "class B {}".getBytes(StandardCharsets.UTF_8), DEPENDENCIES);
+
+    @Test
+    void entriesSurviveReopening(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("results.cache");
+        try (ResultCache cache = ResultCache.open(file, "v1")) {
+            cache.put(UNCHANGED_KEY, ResultCache.Entry.UNCHANGED);
+            cache.put(CHANGED_KEY, new ResultCache.Entry("class B { }", "diff", StandardCharsets.ISO_8859_1));
+        }
+
+        try (ResultCache cache = ResultCache.open(file, "v1")) {
+            assertThat(cache.get(UNCHANGED_KEY)).isEqualTo(ResultCache.Entry.UNCHANGED);
+            assertThat(cache.get(CHANGED_KEY)).isEqualTo(new ResultCache.Entry("class B { }", "diff", StandardCharsets.ISO_8859_1));
+            assertThat(cache.get(ResultCache.key(Paths.get("C.java"), new byte[0], DEPENDENCIES))).isNull();
+            assertThat(cache.getHits()).isEqualTo(2);
+            assertThat(cache.getMisses()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void anotherFingerprintInvalidatesEntries(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("results.cache");
+        try (ResultCache cache = ResultCache.open(file, "v1")) {
+            cache.put(UNCHANGED_KEY, ResultCache.Entry.UNCHANGED);
+        }
+
+        try (ResultCache cache = ResultCache.open(file, "v2")) {
+            assertThat(cache.get(UNCHANGED_KEY)).isNull();
+        }
+    }
+
+    @Test
+    void keyDependsOnTheSourcesParsedTogether() {
+        byte[] content = "class A {}".getBytes(StandardCharsets.UTF_8);
+        Map<Path, byte[]> sources = new HashMap<>();
+        sources.put(Paths.get("A.java"), content);
+        sources.put(Paths.get("B.java"), "class B {}".getBytes(StandardCharsets.UTF_8));
+        byte[] before = ResultCache.key(Paths.get("A.java"), content, ResultCache.dependencies(sources));
+
+        sources.put(Paths.get("B.java"), "class B { void b() {} }".getBytes(StandardCharsets.UTF_8));
+        assertThat(ResultCache.key(Paths.get("A.java"), content, ResultCache.dependencies(sources))).isNotEqualTo(before);
+    }
+
+    @Test
+    void fingerprintDependsOnScheduling() {
+        List<Recipe> recipes = Collections.singletonList(new MakeNonOverridableMethodsWithoutInstanceDataStatic());
+        String fingerprint = ResultCache.fingerprint(recipes, BatchOptions.builder().build());
+
+        assertThat(ResultCache.fingerprint(recipes, BatchOptions.builder().build())).isEqualTo(fingerprint);
+        assertThat(ResultCache.fingerprint(recipes, BatchOptions.builder().fused(true).build())).isNotEqualTo(fingerprint);
+        assertThat(ResultCache.fingerprint(recipes, BatchOptions.builder().cycles(3).build())).isNotEqualTo(fingerprint);
+    }
+
+    @Test
+    void partiallyWrittenEntryIsDiscarded(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("results.cache");
+        try (ResultCache cache = ResultCache.open(file, "v1")) {
+            cache.put(UNCHANGED_KEY, ResultCache.Entry.UNCHANGED);
+            cache.put(CHANGED_KEY, new ResultCache.Entry("class B { }", "diff", StandardCharsets.UTF_8));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 2);
+        }
+
+        try (ResultCache cache = ResultCache.open(file, "v1")) {
+            assertThat(cache.get(UNCHANGED_KEY)).isEqualTo(ResultCache.Entry.UNCHANGED);
+            assertThat(cache.get(CHANGED_KEY)).isNull();
+            cache.put(CHANGED_KEY, new ResultCache.Entry("class B { }", "diff", StandardCharsets.UTF_8));
+            assertThat(cache.get(CHANGED_KEY)).isNotNull();
+        }
+    }
+}
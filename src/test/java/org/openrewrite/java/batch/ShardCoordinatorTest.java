@@ -0,0 +1,195 @@
+package org.openrewrite.java.batch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.Recipe;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.java.JavaIsoVisitor;
+import org.openrewrite.java.MakeNonOverridableMethodsWithoutInstanceDataStatic;
+import org.openrewrite.java.tree.J;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShardCoordinatorTest {
+    private static final String CANDIDATE = """
+            package %s;
+            
+            class A%d {
+                private int one() {
+                    return 1;
+                }
+            }
+            """;
+
+    @Test
+    void shardsByModuleAndPackage(@TempDir Path root) throws IOException {
+        writeSources(root);
+        ShardCoordinator coordinator = new ShardCoordinator(
+                singletonList(new MakeNonOverridableMethodsWithoutInstanceDataStatic()),
+                BatchOptions.builder().workers(2).build());
+
+        List<Path> sources = BatchDriver.findSources(root);
+        List<ShardCoordinator.Shard> shards = coordinator.shards(root, sources);
+
+        assertThat(shards).hasSizeGreaterThan(1);
+        assertThat(shards).flatExtracting(shard -> shard.sources).hasSize(sources.size());
+        for (ShardCoordinator.Shard shard : shards) {
+            assertThat(shard.sources).extracting(source -> source.getName(0).toString()).containsOnly(
+                    shard.sources.get(0).getName(0).toString());
+        }
+    }
+
+    @Test
+    void mergesWorkerResultsIntoOnePatch(@TempDir Path root) throws IOException {
+        writeSources(root);
+
+        BatchSummary summary = new ShardCoordinator(
+                singletonList(new MakeNonOverridableMethodsWithoutInstanceDataStatic()),
+                BatchOptions.builder().workers(2).build()
+        ).run(root);
+
+        assertThat(summary.getErrors()).isEmpty();
+        assertThat(summary.getFiles()).isEqualTo(12);
+        assertThat(summary.getChangedFiles()).isEqualTo(12);
+        String patch = new String(Files.readAllBytes(root.resolve("rewrite.patch")), StandardCharsets.UTF_8);
+        assertThat(patch.split("\\+    private static int one\\(\\)", -1)).hasSize(13);
+        assertThat(patch.indexOf("api/src/p0/A0.java")).isLessThan(patch.indexOf("impl/src/p0/A0.java"));
+    }
+
+    @Test
+    void reassignsShardOfCrashedWorker(@TempDir Path root) throws IOException {
+        writeSources(root);
+        Files.write(root.resolve("impl/src/p1/Halt.java"), "class Halt {}".getBytes(StandardCharsets.UTF_8));
+
+        BatchSummary summary = new ShardCoordinator(
+                Arrays.asList(new HaltOnce(), new MakeNonOverridableMethodsWithoutInstanceDataStatic()),
+                BatchOptions.builder()
+                        .workers(2)
+                        .output(BatchOptions.Output.IN_PLACE)
+                        .workerJvmOptions(singletonList("-DhaltOnce.marker=" + root.resolve("halted")))
+                        .build()
+        ).run(root);
+
+        assertThat(root.resolve("halted")).exists();
+        assertThat(summary.getErrors()).isEmpty();
+        assertThat(summary.getFiles()).isEqualTo(13);
+        assertThat(new String(Files.readAllBytes(root.resolve("impl/src/p1/A1.java")), StandardCharsets.UTF_8))
+                .contains("private static int one()");
+    }
+
+    @Test
+    void recipeOptionsAreCarriedToWorkers(@TempDir Path root) throws IOException {
+        writeSources(root);
+
+        BatchSummary summary = new ShardCoordinator(
+                singletonList(new MakeNonOverridableMethodsWithoutInstanceDataStatic(null, singletonList("*..* one()"))),
+                BatchOptions.builder().workers(2).build()
+        ).run(root);
+
+        assertThat(summary.getErrors()).isEmpty();
+        assertThat(summary.getFiles()).isEqualTo(12);
+        assertThat(summary.getChangedFiles()).isZero();
+    }
+
+    @Test
+    void hungWorkerIsKilledAndItsShardReportedAsFailed(@TempDir Path root) throws IOException {
+        writeSources(root);
+        Files.write(root.resolve("impl/src/p1/Hang.java"), "class Hang {}".getBytes(StandardCharsets.UTF_8));
+
+        BatchSummary summary = new ShardCoordinator(
+                Arrays.asList(new Hang(), new MakeNonOverridableMethodsWithoutInstanceDataStatic()),
+                BatchOptions.builder()
+                        .workers(2)
+                        .output(BatchOptions.Output.IN_PLACE)
+                        .workerTimeout(Duration.ofSeconds(5))
+                        .build()
+        ).run(root);
+
+        assertThat(summary.getErrors()).singleElement().satisfies(error ->
+                assertThat(error.getCause()).isInstanceOf(ShardCoordinator.WorkerTimeoutException.class));
+        assertThat(new String(Files.readAllBytes(root.resolve("api/src/p1/A1.java")), StandardCharsets.UTF_8))
+                .contains("private static int one()");
+    }
+
+    private static void writeSources(Path root) throws IOException {
+        for (String module : Arrays.asList("api", "impl")) {
+            Files.createDirectories(root.resolve(module));
+            Files.write(root.resolve(module).resolve("build.gradle"), new byte[0]);
+            for (int i = 0; i < 6; i++) {
+                Path source = root.resolve(module + "/src/p" + (i % 3) + "/A" + i + ".java");
+                Files.createDirectories(source.getParent());
+                Files.write(source, String.format(CANDIDATE, "p" + (i % 3), i).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * Never returns from {@code Hang.java}.
+     */
+    public static class Hang extends Recipe {
+        @Override
+        public String getDisplayName() {
+            return "Hang";
+        }
+
+        @Override
+        protected TreeVisitor<?, ExecutionContext> getVisitor() {
+            return new JavaIsoVisitor<ExecutionContext>() {
+                @Override
+                public J.CompilationUnit visitCompilationUnit(J.CompilationUnit cu, ExecutionContext executionContext) {
+                    while (cu.getSourcePath().endsWith("Hang.java")) {
+                        try {
+                            Thread.sleep(Long.MAX_VALUE);
+                        } catch (InterruptedException e) {
+                            // keep hanging
+                        }
+                    }
+                    return cu;
+                }
+            };
+        }
+    }
+
+    /**
+     * Kills the worker JVM the first time it visits {@code Halt.java}.
+     */
+    public static class HaltOnce extends Recipe {
+        @Override
+        public String getDisplayName() {
+            return "Halt the JVM once";
+        }
+
+        @Override
+        protected TreeVisitor<?, ExecutionContext> getVisitor() {
+            return new JavaIsoVisitor<ExecutionContext>() {
+                @Override
+                public J.CompilationUnit visitCompilationUnit(J.CompilationUnit cu, ExecutionContext executionContext) {
+                    if (cu.getSourcePath().endsWith("Halt.java")) {
+                        try {
+                            Files.createFile(Paths.get(System.getProperty("haltOnce.marker")));
+                            Runtime.getRuntime().halt(3);
+                        } catch (FileAlreadyExistsException e) {
+                            // halted before, so the shard now runs to completion
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                    return cu;
+                }
+            };
+        }
+    }
+}
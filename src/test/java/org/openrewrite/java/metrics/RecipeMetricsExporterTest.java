@@ -0,0 +1,94 @@
+package org.openrewrite.java.metrics;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.java.MakeNonOverridableMethodsWithoutInstanceDataStatic;
+import org.openrewrite.java.NoGuavaListsNewArrayList;
+import org.openrewrite.java.ParserSession;
+import org.openrewrite.java.tree.J;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecipeMetricsExporterTest {
+    private static final String[] SOURCES = {
+            """
+            import com.google.common.collect.Lists;
+
+            import java.util.List;
+
+            class A {
+                List<String> names = Lists.newArrayList();
+
+                private int twice(int n) {
+                    return Math.abs(n) * 2;
+                }
+            }
+            """,
+            """
+            class B {
+                int count;
+            }
+            """
+    };
+
+    @Test
+    void collectsAndExportsMetrics(@TempDir Path dir) throws IOException {
+        InMemoryRecipeMetrics metrics = new InMemoryRecipeMetrics();
+        run(metrics);
+
+        String newArrayList = new NoGuavaListsNewArrayList().getName();
+        String makeStatic = new MakeNonOverridableMethodsWithoutInstanceDataStatic().getName();
+        assertThat(metrics.getCount(newArrayList, "applicable")).isEqualTo(1);
+        assertThat(metrics.getCount(newArrayList, "notApplicable")).isEqualTo(1);
+        assertThat(metrics.getCount(newArrayList, "visitMethodInvocation")).isEqualTo(2);
+        assertThat(metrics.getCount(makeStatic, "visitMethodDeclaration")).isEqualTo(1);
+        assertThat(metrics.getRows()).anySatisfy(row -> {
+            assertThat(row.getName()).isEqualTo("InstanceDataAnalysis");
+            assertThat(row.getMetric()).isEqualTo("identifierChecksPerMethod");
+            assertThat(row.getCount()).isEqualTo(1);
+            assertThat(row.getTotal()).isPositive();
+        });
+        assertThat(metrics.getRows()).anySatisfy(row -> {
+            assertThat(row.getName()).isEqualTo(newArrayList);
+            assertThat(row.getMetric()).isEqualTo("visitorNanos");
+            assertThat(row.getType()).isEqualTo("MEASURE");
+        });
+
+        Path csv = dir.resolve("metrics.csv");
+        RecipeMetricsExporter.write(metrics, csv);
+        List<String> lines = Files.readAllLines(csv, StandardCharsets.UTF_8);
+        assertThat(lines.get(0)).isEqualTo("name,metric,type,count,total,max");
+        assertThat(lines).contains(newArrayList + ",visitMethodInvocation,COUNTER,2,0,0");
+
+        Path json = dir.resolve("metrics.json");
+        RecipeMetricsExporter.write(metrics, json);
+        assertThat(new String(Files.readAllBytes(json), StandardCharsets.UTF_8))
+                .contains("\"metric\" : \"identifierChecksPerMethod\"");
+    }
+
+    @Test
+    void disabledMetricsAreNotCollected() {
+        ExecutionContext ctx = new InMemoryExecutionContext();
+        assertThat(RecipeMetrics.of(ctx)).isSameAs(RecipeMetrics.NOOP);
+        assertThat(RecipeMetrics.of(ctx).isEnabled()).isFalse();
+    }
+
+    private static void run(InMemoryRecipeMetrics metrics) {
+        ExecutionContext ctx = new InMemoryExecutionContext(t -> {
+            throw new AssertionError(t);
+        });
+        RecipeMetrics.enable(ctx, metrics);
+        List<J.CompilationUnit> sources = ParserSession.shared("guava").parse(ctx, SOURCES);
+        new NoGuavaListsNewArrayList().run(new ArrayList<>(sources), ctx);
+        new MakeNonOverridableMethodsWithoutInstanceDataStatic().run(new ArrayList<>(sources), ctx);
+    }
+}